@@ -30,9 +30,22 @@ import org.apache.http.impl.conn.SystemDefaultDnsResolver;
 import org.apache.http.message.BasicHeader;
 
 import edu.uci.ics.crawlerbykc.crawler.authentication.AuthInfo;
+import edu.uci.ics.crawlerbykc.util.VirtualThreads;
 
 public class CrawlConfig {
 
+    /**
+     * How durable the commits of the underlying sleepycat DB are when crawling is resumable.
+     */
+    public enum DbDurability {
+        /** Commits are written and flushed to disk; survives an operating system crash */
+        SYNC,
+        /** Commits are written to the file system but not flushed; survives a JVM crash */
+        WRITE_NO_SYNC,
+        /** Commits are neither written nor flushed synchronously; fastest but least durable */
+        NO_SYNC
+    }
+
     /**
      * The folder which will be used by crawler for storing the intermediate
      * crawl data. The content of this folder should not be modified manually.
@@ -50,6 +63,22 @@ public class CrawlConfig {
      */
     private long dbLockTimeout = 500;
 
+    /**
+     * The durability of the commits of the underlying sleepycat DB
+     */
+    private DbDurability dbDurability = DbDurability.SYNC;
+
+    /**
+     * Number of seconds a crawler may hold a page before it is given to another crawler.
+     * Zero means pages are held until they are processed.
+     */
+    private int inProcessLeaseSeconds = 1800;
+
+    /**
+     * Number of seconds between two writes of the counters to the DB when crawling is resumable
+     */
+    private int counterFlushIntervalSeconds = 10;
+
     /**
      * Maximum depth of crawling For unlimited depth this parameter should be
      * set to -1
@@ -79,6 +108,12 @@ public class CrawlConfig {
      */
     private int politenessDelay = 200;
 
+    /**
+     * Should the politeness delay be applied per registered domain (e.g. example.com)
+     * instead of per host name (e.g. www.example.com)?
+     */
+    private boolean politenessPerRegisteredDomain = false;
+
     /**
      * Should we also crawl https pages?
      */
@@ -114,6 +149,11 @@ public class CrawlConfig {
      */
     private int connectionTimeout = 30000;
 
+    /**
+     * Number of I/O threads of the non-blocking http client of the AsyncPageFetcher
+     */
+    private int asyncIoThreadCount = 2;
+
     /**
      * Max number of outgoing links which are processed from a page
      */
@@ -235,6 +275,149 @@ public class CrawlConfig {
      */
     private int batchReadSize = 50;
 
+    /**
+     * Should the frontier keep one queue per host and only hand out urls of hosts which
+     * are ready to be fetched according to the politeness delay?
+     */
+    private boolean hostPartitionedFrontier = false;
+
+    /**
+     * Number of urls the Bloom filter in front of the DocIDs database is sized for.
+     * Zero disables the filter.
+     */
+    private int docIdFilterSize = 1000000;
+
+    /**
+     * Number of url to docid mappings kept in an LRU cache in front of the DocIDs database.
+     * Zero disables the cache.
+     */
+    private int docIdCacheSize = 0;
+
+    /**
+     * Should the DocIDs database be keyed by 64 bit fingerprints of the urls instead of the
+     * urls themselves?
+     */
+    private boolean docIdFingerprintKeys = false;
+
+    /**
+     * Should the frontier and the doc ids be kept in memory instead of in the sleepycat DB?
+     */
+    private boolean inMemoryStorage = false;
+
+    /**
+     * Maximum number of urls at the head of the frontier which are kept in memory
+     */
+    private int frontierBufferSize = 0;
+
+    /**
+     * Should the crawlers run on virtual threads instead of platform threads?
+     */
+    private boolean virtualCrawlerThreads = false;
+
+    /**
+     * Should the fetched pages be parsed, mined for links and visited by separate pools of
+     * threads, rather than by the crawler threads?
+     */
+    private boolean pipelinedProcessing = false;
+
+    /**
+     * Number of threads parsing the fetched pages when the processing is pipelined
+     */
+    private int parserThreads = 2;
+
+    /**
+     * Number of threads processing the outgoing links of the pages when the processing is
+     * pipelined
+     */
+    private int linkProcessorThreads = 2;
+
+    /**
+     * Number of threads visiting the pages when the processing is pipelined
+     */
+    private int visitorThreads = 1;
+
+    /**
+     * Maximum number of pages waiting for each stage when the processing is pipelined
+     */
+    private int pipelineQueueSize = 100;
+
+    /**
+     * Should pages be fetched again only if they changed since a previous crawl fetched them?
+     */
+    private boolean conditionalFetching = false;
+
+    /**
+     * Should visited pages be visited again, at intervals adapted to how often they change?
+     */
+    private boolean recrawling = false;
+
+    /**
+     * Minimum time before a page is visited again when recrawling, in seconds
+     */
+    private int minRecrawlIntervalSeconds = 3600;
+
+    /**
+     * Maximum time before a page is visited again when recrawling, in seconds
+     */
+    private int maxRecrawlIntervalSeconds = 7 * 24 * 3600;
+
+    /**
+     * Should the delay between requests to a host adapt to how fast and healthy its responses are?
+     */
+    private boolean adaptivePoliteness = false;
+
+    /**
+     * Minimum delay between requests to a host with adaptive politeness, in milliseconds
+     */
+    private int minPolitenessDelay = 50;
+
+    /**
+     * Maximum delay between requests to a host with adaptive politeness, in milliseconds
+     */
+    private int maxPolitenessDelay = 60000;
+
+    /**
+     * Maximum time a server may ask to wait with its Retry-After header, in seconds, for the page
+     * to be retried with adaptive politeness
+     */
+    private int maxRetryAfterSeconds = 3600;
+
+    /**
+     * Maximum number of times a page whose fetch failed transiently is fetched again
+     */
+    private int maxFetchRetries = 0;
+
+    /**
+     * Delay before the first retry of a page, in milliseconds, doubled for every further retry
+     */
+    private int retryDelayMillis = 1000;
+
+    /**
+     * Maximum number of retries of the pages of a host
+     */
+    private int maxRetriesPerHost = 100;
+
+    /**
+     * Should the content of pages be read into pooled buffers, which are reused once a page was
+     * processed?
+     */
+    private boolean pooledPageBuffers = false;
+
+    /**
+     * Should HTML pages be parsed while their content is received, without loading it?
+     */
+    private boolean streamingParsing = false;
+
+    /**
+     * Should HTML pages be parsed for their links, title and meta tags only?
+     */
+    private boolean linkOnlyParsing = false;
+
+    /**
+     * Should the language of HTML pages be identified?
+     */
+    private boolean languageDetection = true;
+
     /**
      * Validates the configs specified by this instance.
      *
@@ -244,6 +427,54 @@ public class CrawlConfig {
         if (crawlStorageFolder == null) {
             throw new Exception("Crawl storage folder is not set in the CrawlConfig.");
         }
+        if (inMemoryStorage && resumableCrawling) {
+            throw new Exception("In memory storage can not be used for resumable crawling.");
+        }
+        if (frontierBufferSize < 0) {
+            throw new Exception("Invalid value for frontier buffer size: " + frontierBufferSize);
+        }
+        if (dbDurability == null) {
+            throw new Exception("DB durability is not set in the CrawlConfig.");
+        }
+        if (inProcessLeaseSeconds < 0) {
+            throw new Exception("Invalid value for in process lease: " + inProcessLeaseSeconds);
+        }
+        if (counterFlushIntervalSeconds < 0) {
+            throw new Exception("Invalid value for counter flush interval: " + counterFlushIntervalSeconds);
+        }
+        if (docIdFilterSize < 0) {
+            throw new Exception("Invalid value for doc id filter size: " + docIdFilterSize);
+        }
+        if (docIdCacheSize < 0) {
+            throw new Exception("Invalid value for doc id cache size: " + docIdCacheSize);
+        }
+        if (asyncIoThreadCount < 1) {
+            throw new Exception("Invalid value for async I/O thread count: " + asyncIoThreadCount);
+        }
+        if (virtualCrawlerThreads && !VirtualThreads.isSupported()) {
+            throw new Exception("Virtual crawler threads require Java 21 or later.");
+        }
+        if (parserThreads < 1 || linkProcessorThreads < 1 || visitorThreads < 1) {
+            throw new Exception("Each pipeline stage needs at least one thread.");
+        }
+        if (pipelineQueueSize < 1) {
+            throw new Exception("Invalid value for pipeline queue size: " + pipelineQueueSize);
+        }
+        if (minRecrawlIntervalSeconds < 1 || maxRecrawlIntervalSeconds < minRecrawlIntervalSeconds) {
+            throw new Exception("Invalid recrawl intervals: " + minRecrawlIntervalSeconds + " to " +
+                                maxRecrawlIntervalSeconds + " seconds");
+        }
+        if (minPolitenessDelay < 0 || maxPolitenessDelay < minPolitenessDelay) {
+            throw new Exception("Invalid adaptive politeness delays: " + minPolitenessDelay + " to " +
+                                maxPolitenessDelay + " ms");
+        }
+        if (maxRetryAfterSeconds < 0) {
+            throw new Exception("Invalid value for max retry after: " + maxRetryAfterSeconds);
+        }
+        if (maxFetchRetries < 0 || retryDelayMillis < 0 || maxRetriesPerHost < 0) {
+            throw new Exception("Invalid fetch retries: " + maxFetchRetries + " after " + retryDelayMillis +
+                                " ms, " + maxRetriesPerHost + " per host");
+        }
         if (politenessDelay < 0) {
             throw new Exception("Invalid value for politeness delay: " + politenessDelay);
         }
@@ -299,6 +530,56 @@ public class CrawlConfig {
         return this.dbLockTimeout;
     }
 
+    /**
+     * Set the durability of the commits of the underlying sleepycat DB. This only matters
+     * when crawling is resumable. Relaxing it to {@link DbDurability#WRITE_NO_SYNC} or
+     * {@link DbDurability#NO_SYNC} lets the DB group many commits into one disk flush, at
+     * the risk of losing the most recent changes on a crash. Default is
+     * {@link DbDurability#SYNC}.
+     *
+     * @see com.sleepycat.je.EnvironmentConfig#setDurability(com.sleepycat.je.Durability)
+     * @param dbDurability the commit durability
+     */
+    public void setDbDurability(DbDurability dbDurability) {
+        this.dbDurability = dbDurability;
+    }
+
+    public DbDurability getDbDurability() {
+        return dbDurability;
+    }
+
+    public int getInProcessLeaseSeconds() {
+        return inProcessLeaseSeconds;
+    }
+
+    /**
+     * Set the number of seconds a crawler may hold a page it was handed out before the page
+     * is put back in the queue and given to another crawler. This only matters when crawling
+     * is resumable, and protects the crawl from pages held by crashed or hung crawlers. Zero
+     * means pages are held until they are processed. Default is 1800.
+     *
+     * @param inProcessLeaseSeconds the lease duration in seconds
+     */
+    public void setInProcessLeaseSeconds(int inProcessLeaseSeconds) {
+        this.inProcessLeaseSeconds = inProcessLeaseSeconds;
+    }
+
+    public int getCounterFlushIntervalSeconds() {
+        return counterFlushIntervalSeconds;
+    }
+
+    /**
+     * Set the number of seconds between two writes of the counters to the DB when crawling
+     * is resumable. Counters are also written when the crawl ends. Increments since the last
+     * write are lost if the crawler crashes. Zero means they are only written at the end.
+     * Default is 10.
+     *
+     * @param counterFlushIntervalSeconds the flush interval in seconds
+     */
+    public void setCounterFlushIntervalSeconds(int counterFlushIntervalSeconds) {
+        this.counterFlushIntervalSeconds = counterFlushIntervalSeconds;
+    }
+
     public int getMaxDepthOfCrawling() {
         return maxDepthOfCrawling;
     }
@@ -377,6 +658,21 @@ public class CrawlConfig {
         this.politenessDelay = politenessDelay;
     }
 
+    public boolean isPolitenessPerRegisteredDomain() {
+        return politenessPerRegisteredDomain;
+    }
+
+    /**
+     * Should the politeness delay be applied per registered domain (e.g. example.com)
+     * instead of per host name (e.g. www.example.com)? Default is {@code false}.
+     *
+     * @param politenessPerRegisteredDomain
+     *            {@code true} if all hosts of a registered domain share one politeness delay
+     */
+    public void setPolitenessPerRegisteredDomain(boolean politenessPerRegisteredDomain) {
+        this.politenessPerRegisteredDomain = politenessPerRegisteredDomain;
+    }
+
     public boolean isIncludeHttpsPages() {
         return includeHttpsPages;
     }
@@ -456,6 +752,18 @@ public class CrawlConfig {
         this.connectionTimeout = connectionTimeout;
     }
 
+    public int getAsyncIoThreadCount() {
+        return asyncIoThreadCount;
+    }
+
+    /**
+     * @param asyncIoThreadCount Number of I/O threads of the non-blocking http client of the
+     * AsyncPageFetcher. A few of them can serve thousands of requests in flight. Default is 2.
+     */
+    public void setAsyncIoThreadCount(int asyncIoThreadCount) {
+        this.asyncIoThreadCount = asyncIoThreadCount;
+    }
+
     public int getMaxOutgoingLinksToFollow() {
         return maxOutgoingLinksToFollow;
     }
@@ -732,20 +1040,442 @@ public class CrawlConfig {
         this.batchReadSize = batchReadSize;
     }
 
+    public boolean isHostPartitionedFrontier() {
+        return hostPartitionedFrontier;
+    }
+
+    /**
+     * Should the frontier keep one queue per host and only hand out urls of hosts which
+     * are ready to be fetched according to the politeness delay? This spreads the crawler
+     * threads over many hosts instead of letting them wait on the politeness delay of a
+     * single one. The queues are held in memory. Default is {@code false}.
+     *
+     * @param hostPartitionedFrontier {@code true} to use a host partitioned frontier
+     */
+    public void setHostPartitionedFrontier(boolean hostPartitionedFrontier) {
+        this.hostPartitionedFrontier = hostPartitionedFrontier;
+    }
+
+    public int getDocIdFilterSize() {
+        return docIdFilterSize;
+    }
+
+    /**
+     * Set the number of urls the Bloom filter in front of the DocIDs database is sized for.
+     * Lookups of urls which were never seen, which are most lookups of outgoing links, are
+     * then answered without reading the database. The filter takes about 10 bits per url
+     * and keeps working beyond this size, with more lookups going to the database. Zero
+     * disables the filter. Default is 1000000.
+     *
+     * @param docIdFilterSize the expected number of urls
+     */
+    public void setDocIdFilterSize(int docIdFilterSize) {
+        this.docIdFilterSize = docIdFilterSize;
+    }
+
+    public int getDocIdCacheSize() {
+        return docIdCacheSize;
+    }
+
+    /**
+     * Set the number of url to docid mappings of recently seen urls which are kept in memory,
+     * so that lookups of frequently linked urls do not read the DocIDs database. Zero
+     * disables the cache. Default is 0.
+     *
+     * @param docIdCacheSize the maximum number of cached mappings
+     */
+    public void setDocIdCacheSize(int docIdCacheSize) {
+        this.docIdCacheSize = docIdCacheSize;
+    }
+
+    public boolean isDocIdFingerprintKeys() {
+        return docIdFingerprintKeys;
+    }
+
+    /**
+     * Should the DocIDs database be keyed by 64 bit fingerprints of the urls instead of the
+     * urls themselves? This makes the database and its cache footprint much smaller on large
+     * crawls. Resuming a crawl which used url keys migrates its database to fingerprint keys,
+     * which can not be undone. Default is {@code false}.
+     *
+     * @param docIdFingerprintKeys {@code true} to key doc ids by url fingerprints
+     */
+    public void setDocIdFingerprintKeys(boolean docIdFingerprintKeys) {
+        this.docIdFingerprintKeys = docIdFingerprintKeys;
+    }
+
+    public boolean isInMemoryStorage() {
+        return inMemoryStorage;
+    }
+
+    /**
+     * Should the frontier and the doc ids be kept in memory instead of in the sleepycat DB?
+     * This avoids all database overhead for short crawls which are not resumable, at the cost
+     * of heap space for every seen and every queued url. It can not be combined with
+     * resumable crawling. Default is {@code false}.
+     *
+     * @param inMemoryStorage {@code true} to keep the frontier and the doc ids in memory
+     */
+    public void setInMemoryStorage(boolean inMemoryStorage) {
+        this.inMemoryStorage = inMemoryStorage;
+    }
+
+    public int getFrontierBufferSize() {
+        return frontierBufferSize;
+    }
+
+    /**
+     * @param frontierBufferSize Maximum number of urls at the head of the frontier which are
+     * kept in memory. The DB is read when they run out, in batches of this size. Zero (default)
+     * disables the buffer. No effect with in memory storage or a host partitioned frontier.
+     */
+    public void setFrontierBufferSize(int frontierBufferSize) {
+        this.frontierBufferSize = frontierBufferSize;
+    }
+
+    public boolean isVirtualCrawlerThreads() {
+        return virtualCrawlerThreads;
+    }
+
+    /**
+     * Should the crawlers run on virtual threads instead of platform threads? A blocked
+     * virtual thread only costs some heap, so the number of crawlers can be raised to the
+     * number of fetches which should be in flight, in the thousands. Requires Java 21 or later.
+     * Default is {@code false}.
+     *
+     * @param virtualCrawlerThreads {@code true} to run the crawlers on virtual threads
+     */
+    public void setVirtualCrawlerThreads(boolean virtualCrawlerThreads) {
+        this.virtualCrawlerThreads = virtualCrawlerThreads;
+    }
+
+    public boolean isPipelinedProcessing() {
+        return pipelinedProcessing;
+    }
+
+    /**
+     * Should the fetched pages be parsed, mined for links and visited by separate pools of
+     * threads, rather than by the crawler threads? The crawler threads then only fetch, and
+     * hand the pages on through bounded queues, so that slow parsing or a slow
+     * {@link WebCrawler#visit} no longer holds a connection, and each stage can be sized on its
+     * own. {@link WebCrawler#shouldVisit}, {@link WebCrawler#visit} and the other callbacks of
+     * a crawler are then called from the stage threads, concurrently with its own thread, so
+     * they must be thread safe. Default is {@code false}.
+     *
+     * @param pipelinedProcessing {@code true} to process the fetched pages in a pipeline
+     */
+    public void setPipelinedProcessing(boolean pipelinedProcessing) {
+        this.pipelinedProcessing = pipelinedProcessing;
+    }
+
+    public int getParserThreads() {
+        return parserThreads;
+    }
+
+    /**
+     * @param parserThreads Number of threads parsing the fetched pages when the processing is
+     * pipelined. Parsing is CPU bound, so about the number of cores. Default is 2.
+     */
+    public void setParserThreads(int parserThreads) {
+        this.parserThreads = parserThreads;
+    }
+
+    public int getLinkProcessorThreads() {
+        return linkProcessorThreads;
+    }
+
+    /**
+     * @param linkProcessorThreads Number of threads looking up the doc ids and checking the
+     * robots.txt of the outgoing links and scheduling them, when the processing is pipelined.
+     * Default is 2.
+     */
+    public void setLinkProcessorThreads(int linkProcessorThreads) {
+        this.linkProcessorThreads = linkProcessorThreads;
+    }
+
+    public int getVisitorThreads() {
+        return visitorThreads;
+    }
+
+    /**
+     * @param visitorThreads Number of threads calling {@link WebCrawler#visit} when the
+     * processing is pipelined. Default is 1, which also keeps visit from being called
+     * concurrently.
+     */
+    public void setVisitorThreads(int visitorThreads) {
+        this.visitorThreads = visitorThreads;
+    }
+
+    public int getPipelineQueueSize() {
+        return pipelineQueueSize;
+    }
+
+    /**
+     * @param pipelineQueueSize Maximum number of pages waiting for each stage when the
+     * processing is pipelined. Threads handing on pages to a full queue block. Default is 100.
+     */
+    public void setPipelineQueueSize(int pipelineQueueSize) {
+        this.pipelineQueueSize = pipelineQueueSize;
+    }
+
+    public boolean isConditionalFetching() {
+        return conditionalFetching;
+    }
+
+    /**
+     * Should pages be fetched again only if they changed since a previous crawl fetched them?
+     * The ETag and Last-Modified headers, a content hash and the links of every fetched page
+     * are kept in the validators folder of the crawl storage folder, which outlives the crawl.
+     * Later fetches of the page send them as If-None-Match and If-Modified-Since, and a page
+     * which the server reports as not modified goes to {@link WebCrawler#onNotModified} instead
+     * of being parsed and visited. Its stored links are followed. Default is {@code false}.
+     *
+     * @param conditionalFetching {@code true} to fetch pages conditionally
+     */
+    public void setConditionalFetching(boolean conditionalFetching) {
+        this.conditionalFetching = conditionalFetching;
+    }
+
+    public boolean isRecrawling() {
+        return recrawling;
+    }
+
+    /**
+     * Should visited pages be visited again, at intervals adapted to how often they change?
+     * Every successfully fetched page is queued for a revisit, first after the minimum
+     * interval. Its next intervals are estimated from how many of its revisits found its
+     * content changed, so that pages which rarely change are fetched less often. The crawl
+     * then keeps running until it is shut down. The revisit schedule is kept in memory only.
+     * Default is {@code false}.
+     *
+     * @param recrawling {@code true} to visit pages again
+     */
+    public void setRecrawling(boolean recrawling) {
+        this.recrawling = recrawling;
+    }
+
+    public int getMinRecrawlIntervalSeconds() {
+        return minRecrawlIntervalSeconds;
+    }
+
+    /**
+     * @param minRecrawlIntervalSeconds Minimum time before a page is visited again when
+     * recrawling, in seconds. Default is an hour.
+     */
+    public void setMinRecrawlIntervalSeconds(int minRecrawlIntervalSeconds) {
+        this.minRecrawlIntervalSeconds = minRecrawlIntervalSeconds;
+    }
+
+    public int getMaxRecrawlIntervalSeconds() {
+        return maxRecrawlIntervalSeconds;
+    }
+
+    /**
+     * @param maxRecrawlIntervalSeconds Maximum time before a page is visited again when
+     * recrawling, in seconds. Default is a week.
+     */
+    public void setMaxRecrawlIntervalSeconds(int maxRecrawlIntervalSeconds) {
+        this.maxRecrawlIntervalSeconds = maxRecrawlIntervalSeconds;
+    }
+
+    public boolean isAdaptivePoliteness() {
+        return adaptivePoliteness;
+    }
+
+    /**
+     * Should the delay between requests to a host adapt to how fast and healthy its responses
+     * are? The rate of requests to a host starts at the one of the politeness delay, grows a
+     * little after every healthy response and is halved after a 429 or 5xx response, a failed
+     * request or a response much slower than usual for the host, within the minimum and maximum
+     * politeness delays. A page answered with 429 or 503 and a Retry-After header is fetched
+     * again once that time has passed, and no other page of its host is fetched before. The
+     * Crawl-delay of robots.txt still applies. Default is {@code false}.
+     *
+     * @param adaptivePoliteness {@code true} to adapt the delays to the responses
+     */
+    public void setAdaptivePoliteness(boolean adaptivePoliteness) {
+        this.adaptivePoliteness = adaptivePoliteness;
+    }
+
+    public int getMinPolitenessDelay() {
+        return minPolitenessDelay;
+    }
+
+    /**
+     * @param minPolitenessDelay Minimum delay between requests to a host with adaptive
+     * politeness, in milliseconds. Default is 50.
+     */
+    public void setMinPolitenessDelay(int minPolitenessDelay) {
+        this.minPolitenessDelay = minPolitenessDelay;
+    }
+
+    public int getMaxPolitenessDelay() {
+        return maxPolitenessDelay;
+    }
+
+    /**
+     * @param maxPolitenessDelay Maximum delay between requests to a host with adaptive
+     * politeness, in milliseconds. Default is a minute.
+     */
+    public void setMaxPolitenessDelay(int maxPolitenessDelay) {
+        this.maxPolitenessDelay = maxPolitenessDelay;
+    }
+
+    public int getMaxRetryAfterSeconds() {
+        return maxRetryAfterSeconds;
+    }
+
+    /**
+     * @param maxRetryAfterSeconds Maximum time a server may ask to wait with its Retry-After
+     * header for the page to be retried with adaptive politeness, in seconds. Pages whose
+     * server asks for longer are given up. Default is an hour.
+     */
+    public void setMaxRetryAfterSeconds(int maxRetryAfterSeconds) {
+        this.maxRetryAfterSeconds = maxRetryAfterSeconds;
+    }
+
+    public int getMaxFetchRetries() {
+        return maxFetchRetries;
+    }
+
+    /**
+     * Sets how often a page whose fetch failed transiently is fetched again: on a socket timeout,
+     * a reset or refused connection, a failure to read the content or a 5xx status. Retries
+     * wait in the frontier with exponential backoff and jitter, and the attempts of each page
+     * are stored along with the frontier when crawling is resumable. Default is 0, pages are
+     * not retried.
+     *
+     * @param maxFetchRetries the maximum number of retries of a page
+     */
+    public void setMaxFetchRetries(int maxFetchRetries) {
+        this.maxFetchRetries = maxFetchRetries;
+    }
+
+    public int getRetryDelayMillis() {
+        return retryDelayMillis;
+    }
+
+    /**
+     * @param retryDelayMillis Delay before the first retry of a page, in milliseconds. It is
+     * doubled for every further retry, and randomly shortened by up to half. Default is a second.
+     */
+    public void setRetryDelayMillis(int retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    public int getMaxRetriesPerHost() {
+        return maxRetriesPerHost;
+    }
+
+    /**
+     * @param maxRetriesPerHost Maximum number of retries of the pages of a host over the
+     * crawl, so that a host which is down does not keep the crawl busy. Default is 100.
+     */
+    public void setMaxRetriesPerHost(int maxRetriesPerHost) {
+        this.maxRetriesPerHost = maxRetriesPerHost;
+    }
+
+    public boolean isPooledPageBuffers() {
+        return pooledPageBuffers;
+    }
+
+    /**
+     * Should the content of pages be read into buffers from a pool, which are reused once a page
+     * was processed? This saves allocating the content of every page. The content of a page is
+     * then only available until it was processed, unless {@link Page#getContentData()} copied
+     * it out before. Default is {@code false}.
+     *
+     * @param pooledPageBuffers {@code true} to pool the buffers of the content of pages
+     */
+    public void setPooledPageBuffers(boolean pooledPageBuffers) {
+        this.pooledPageBuffers = pooledPageBuffers;
+    }
+
+    public boolean isStreamingParsing() {
+        return streamingParsing;
+    }
+
+    /**
+     * Should HTML pages be parsed while their content is received? Their content is then not
+     * loaded into the page, see {@link WebCrawler#openContentTee(Page)} to keep it. Pages are
+     * still loaded when pipelined, fetched conditionally or recrawled. Default is {@code false}.
+     *
+     * @param streamingParsing {@code true} to parse HTML pages from the response stream
+     */
+    public void setStreamingParsing(boolean streamingParsing) {
+        this.streamingParsing = streamingParsing;
+    }
+
+    public boolean isLinkOnlyParsing() {
+        return linkOnlyParsing;
+    }
+
+    /**
+     * Should HTML pages be parsed for their links, title and meta tags only, with the
+     * {@link edu.uci.ics.crawlerbykc.parser.LinkOnlyHtmlParser} instead of Tika? Their text is
+     * then empty. Default is {@code false}.
+     *
+     * @param linkOnlyParsing {@code true} to only extract the links of HTML pages
+     */
+    public void setLinkOnlyParsing(boolean linkOnlyParsing) {
+        this.linkOnlyParsing = linkOnlyParsing;
+    }
+
+    public boolean isLanguageDetection() {
+        return languageDetection;
+    }
+
+    /**
+     * @param languageDetection Should the language of HTML pages be identified? It is only done
+     * when {@link Page#getLanguage()} is first called. Default is {@code true}.
+     */
+    public void setLanguageDetection(boolean languageDetection) {
+        this.languageDetection = languageDetection;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("Crawl storage folder: " + getCrawlStorageFolder() + "\n");
         sb.append("Resumable crawling: " + isResumableCrawling() + "\n");
+        sb.append("In memory storage: " + isInMemoryStorage() + "\n");
+        sb.append("Frontier buffer size: " + getFrontierBufferSize() + "\n");
+        sb.append("DB durability: " + getDbDurability() + "\n");
+        sb.append("In process lease seconds: " + getInProcessLeaseSeconds() + "\n");
+        sb.append("Counter flush interval seconds: " + getCounterFlushIntervalSeconds() + "\n");
         sb.append("Max depth of crawl: " + getMaxDepthOfCrawling() + "\n");
         sb.append("Max pages to fetch: " + getMaxPagesToFetch() + "\n");
         sb.append("User agent string: " + getUserAgentString() + "\n");
+        sb.append("Politeness delay: " + getPolitenessDelay() + "\n");
+        sb.append("Politeness per registered domain: " + isPolitenessPerRegisteredDomain() + "\n");
         sb.append("Include https pages: " + isIncludeHttpsPages() + "\n");
         sb.append("Include binary content: " + isIncludeBinaryContentInCrawling() + "\n");
         sb.append("Max connections per host: " + getMaxConnectionsPerHost() + "\n");
         sb.append("Max total connections: " + getMaxTotalConnections() + "\n");
         sb.append("Socket timeout: " + getSocketTimeout() + "\n");
         sb.append("Max total connections: " + getMaxTotalConnections() + "\n");
+        sb.append("Async I/O thread count: " + getAsyncIoThreadCount() + "\n");
+        sb.append("Virtual crawler threads: " + isVirtualCrawlerThreads() + "\n");
+        sb.append("Pipelined processing: " + isPipelinedProcessing() + "\n");
+        sb.append("Parser threads: " + getParserThreads() + "\n");
+        sb.append("Link processor threads: " + getLinkProcessorThreads() + "\n");
+        sb.append("Visitor threads: " + getVisitorThreads() + "\n");
+        sb.append("Pipeline queue size: " + getPipelineQueueSize() + "\n");
+        sb.append("Conditional fetching: " + isConditionalFetching() + "\n");
+        sb.append("Recrawling: " + isRecrawling() + "\n");
+        sb.append("Min recrawl interval seconds: " + getMinRecrawlIntervalSeconds() + "\n");
+        sb.append("Max recrawl interval seconds: " + getMaxRecrawlIntervalSeconds() + "\n");
+        sb.append("Adaptive politeness: " + isAdaptivePoliteness() + "\n");
+        sb.append("Min politeness delay: " + getMinPolitenessDelay() + "\n");
+        sb.append("Max politeness delay: " + getMaxPolitenessDelay() + "\n");
+        sb.append("Max retry after seconds: " + getMaxRetryAfterSeconds() + "\n");
+        sb.append("Max fetch retries: " + getMaxFetchRetries() + "\n");
+        sb.append("Retry delay millis: " + getRetryDelayMillis() + "\n");
+        sb.append("Max retries per host: " + getMaxRetriesPerHost() + "\n");
+        sb.append("Pooled page buffers: " + isPooledPageBuffers() + "\n");
+        sb.append("Streaming parsing: " + isStreamingParsing() + "\n");
+        sb.append("Link only parsing: " + isLinkOnlyParsing() + "\n");
+        sb.append("Language detection: " + isLanguageDetection() + "\n");
         sb.append("Max outgoing links to follow: " + getMaxOutgoingLinksToFollow() + "\n");
         sb.append("Max download size: " + getMaxDownloadSize() + "\n");
         sb.append("Should follow redirects?: " + isFollowRedirects() + "\n");
@@ -761,6 +1491,10 @@ public class CrawlConfig {
         sb.append("Halt on error: " + isHaltOnError() + "\n");
         sb.append("Allow single level domain:" + isAllowSingleLevelDomain() + "\n");
         sb.append("Batch read size: " + getBatchReadSize() + "\n");
+        sb.append("Host partitioned frontier: " + isHostPartitionedFrontier() + "\n");
+        sb.append("Doc id filter size: " + getDocIdFilterSize() + "\n");
+        sb.append("Doc id cache size: " + getDocIdCacheSize() + "\n");
+        sb.append("Doc id fingerprint keys: " + isDocIdFingerprintKeys() + "\n");
         return sb.toString();
     }
 }
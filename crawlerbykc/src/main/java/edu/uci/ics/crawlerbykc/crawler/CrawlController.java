@@ -22,23 +22,31 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sleepycat.je.Durability;
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.EnvironmentConfig;
 
 import edu.uci.ics.crawlerbykc.fetcher.PageFetcher;
+import edu.uci.ics.crawlerbykc.fetcher.ValidatorStore;
 import edu.uci.ics.crawlerbykc.frontier.DocIDServer;
 import edu.uci.ics.crawlerbykc.frontier.Frontier;
+import edu.uci.ics.crawlerbykc.frontier.HostPartitionedFrontier;
+import edu.uci.ics.crawlerbykc.frontier.InMemoryDocIDServer;
 import edu.uci.ics.crawlerbykc.parser.Parser;
 import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtServer;
 import edu.uci.ics.crawlerbykc.url.TLDList;
 import edu.uci.ics.crawlerbykc.url.URLCanonicalizer;
 import edu.uci.ics.crawlerbykc.url.WebURL;
+import edu.uci.ics.crawlerbykc.util.BufferPool;
 import edu.uci.ics.crawlerbykc.util.IO;
+import edu.uci.ics.crawlerbykc.util.VirtualThreads;
 
 /**
  * The controller that manages a crawling session. This class creates the
@@ -49,6 +57,9 @@ import edu.uci.ics.crawlerbykc.util.IO;
 public class CrawlController {
 
     static final Logger logger = LoggerFactory.getLogger(CrawlController.class);
+
+    /** The most bytes of page buffers of each size kept for reuse */
+    private static final long MAX_POOLED_BYTES_PER_SIZE = 8 * 1024 * 1024;
     private final CrawlConfig config;
 
     /**
@@ -86,6 +97,18 @@ public class CrawlController {
 
     protected Parser parser;
 
+    /**
+     * Processes the fetched pages when the config asks for pipelined processing, otherwise
+     * {@code null}
+     */
+    protected CrawlPipeline pipeline;
+
+    /** The validators of the fetched pages when fetching conditionally, otherwise {@code null} */
+    protected ValidatorStore validatorStore;
+
+    /** The buffers of the content of pages when they are pooled, otherwise {@code null} */
+    protected BufferPool pageBufferPool;
+
     public CrawlController(CrawlConfig config, PageFetcher pageFetcher,
                            RobotstxtServer robotstxtServer) throws Exception {
         this(config, pageFetcher, null, robotstxtServer, null);
@@ -122,26 +145,47 @@ public class CrawlController {
         envConfig.setTransactional(resumable);
         envConfig.setLocking(resumable);
         envConfig.setLockTimeout(config.getDbLockTimeout(), TimeUnit.MILLISECONDS);
+        if (resumable) {
+            envConfig.setDurability(getDurability(config.getDbDurability()));
+        }
 
-        File envHome = new File(config.getCrawlStorageFolder() + "/frontier");
-        if (!envHome.exists()) {
-            if (envHome.mkdir()) {
-                logger.debug("Created folder: " + envHome.getAbsolutePath());
-            } else {
-                throw new Exception(
-                    "Failed creating the frontier folder: " + envHome.getAbsolutePath());
+        if (config.isInMemoryStorage()) {
+            env = null;
+            docIdServer = new InMemoryDocIDServer(config);
+        } else {
+            File envHome = new File(config.getCrawlStorageFolder() + "/frontier");
+            if (!envHome.exists()) {
+                if (envHome.mkdir()) {
+                    logger.debug("Created folder: " + envHome.getAbsolutePath());
+                } else {
+                    throw new Exception(
+                        "Failed creating the frontier folder: " + envHome.getAbsolutePath());
+                }
+            }
+
+            if (!resumable) {
+                IO.deleteFolderContents(envHome);
+                logger.info("Deleted contents of: " + envHome +
+                            " ( as you have configured resumable crawling to false )");
             }
+
+            env = new Environment(envHome, envConfig);
+            docIdServer = new DocIDServer(env, config);
+        }
+        if (config.isHostPartitionedFrontier()) {
+            frontier = new HostPartitionedFrontier(env, config, pageFetcher.getPolitenessScheduler());
+        } else {
+            frontier = new Frontier(env, config);
         }
 
-        if (!resumable) {
-            IO.deleteFolderContents(envHome);
-            logger.info("Deleted contents of: " + envHome +
-                        " ( as you have configured resumable crawling to false )");
+        if (config.isConditionalFetching()) {
+            validatorStore = new ValidatorStore(new File(config.getCrawlStorageFolder(), "validators"));
+            pageFetcher.setValidatorStore(validatorStore);
         }
 
-        env = new Environment(envHome, envConfig);
-        docIdServer = new DocIDServer(env, config);
-        frontier = new Frontier(env, config);
+        if (config.isPooledPageBuffers()) {
+            pageBufferPool = new BufferPool(config.getMaxDownloadSize(), MAX_POOLED_BYTES_PER_SIZE);
+        }
 
         this.pageFetcher = pageFetcher;
         this.parser = parser == null ? new Parser(config, tldList) : parser;
@@ -153,6 +197,17 @@ public class CrawlController {
         robotstxtServer.setCrawlConfig(config);
     }
 
+    private static Durability getDurability(CrawlConfig.DbDurability dbDurability) {
+        switch (dbDurability) {
+            case WRITE_NO_SYNC:
+                return Durability.COMMIT_WRITE_NO_SYNC;
+            case NO_SYNC:
+                return Durability.COMMIT_NO_SYNC;
+            default:
+                return Durability.COMMIT_SYNC;
+        }
+    }
+
     public Parser getParser() {
         return parser;
     }
@@ -266,6 +321,21 @@ public class CrawlController {
         start(new DefaultWebCrawlerFactory<>(clazz), numberOfCrawlers, false);
     }
 
+    /**
+     * Creates the unstarted thread of a crawler, a virtual one if the config asks for
+     * virtual crawler threads.
+     *
+     * @param crawler the crawler to be run by the thread
+     * @param crawlerId the id of the crawler
+     * @return the thread
+     */
+    protected Thread newCrawlerThread(WebCrawler crawler, int crawlerId) {
+        Thread thread = config.isVirtualCrawlerThreads() ? VirtualThreads.factory().newThread(crawler) :
+                        new Thread(crawler);
+        thread.setName("Crawler " + crawlerId);
+        return thread;
+    }
+
     protected <T extends WebCrawler> void start(final WebCrawlerFactory<T> crawlerFactory,
                                                 final int numberOfCrawlers, boolean isBlocking) {
         try {
@@ -275,9 +345,14 @@ public class CrawlController {
             final List<Thread> threads = new ArrayList<>();
             final List<T> crawlers = new ArrayList<>();
 
+            if (config.isPipelinedProcessing()) {
+                pipeline = new CrawlPipeline(config, frontier);
+                pipeline.start();
+            }
+
             for (int i = 1; i <= numberOfCrawlers; i++) {
                 T crawler = crawlerFactory.newInstance();
-                Thread thread = new Thread(crawler, "Crawler " + i);
+                Thread thread = newCrawlerThread(crawler, i);
                 crawler.setThread(thread);
                 crawler.init(i, this);
                 thread.start();
@@ -296,6 +371,8 @@ public class CrawlController {
 
                             while (true) {
                                 sleep(config.getThreadMonitoringDelaySeconds());
+                                frontier.requeueExpiredLeases();
+                                frontier.scheduleDueRevisits();
                                 boolean someoneIsWorking = false;
                                 for (int i = 0; i < threads.size(); i++) {
                                     Thread thread = threads.get(i);
@@ -303,7 +380,7 @@ public class CrawlController {
                                         if (!shuttingDown && !config.isHaltOnError()) {
                                             logger.info("Thread {} was dead, I'll recreate it", i);
                                             T crawler = crawlerFactory.newInstance();
-                                            thread = new Thread(crawler, "Crawler " + (i + 1));
+                                            thread = newCrawlerThread(crawler, i + 1);
                                             threads.remove(i);
                                             threads.add(i, thread);
                                             crawler.setThread(thread);
@@ -321,6 +398,13 @@ public class CrawlController {
                                                 "error on thread [" + threads.get(i).getName() + "]", t);
                                     }
                                 }
+                                if (pipeline != null && !pipeline.isIdle()) {
+                                    someoneIsWorking = true;
+                                }
+                                if (hasDeferredURLs()) {
+                                    // Recrawling goes on until the crawl is shut down
+                                    someoneIsWorking = true;
+                                }
                                 boolean shutOnEmpty = config.isShutdownOnEmptyQueue();
                                 if (!someoneIsWorking && shutOnEmpty) {
                                     // Make sure again that none of the threads
@@ -340,6 +424,12 @@ public class CrawlController {
                                             someoneIsWorking = true;
                                         }
                                     }
+                                    if (pipeline != null && !pipeline.isIdle()) {
+                                        someoneIsWorking = true;
+                                    }
+                                    if (hasDeferredURLs()) {
+                                        someoneIsWorking = true;
+                                    }
                                     if (!someoneIsWorking) {
                                         if (!shuttingDown) {
                                             long queueLength = frontier.getQueueLength();
@@ -353,7 +443,7 @@ public class CrawlController {
                                                 " seconds to make sure...");
                                             sleep(config.getThreadShutdownDelaySeconds());
                                             queueLength = frontier.getQueueLength();
-                                            if (queueLength > 0) {
+                                            if (queueLength > 0 || hasDeferredURLs()) {
                                                 continue;
                                             }
                                         }
@@ -364,6 +454,9 @@ public class CrawlController {
                                         // At this step, frontier notifies the threads that were
                                         // waiting for new URLs and they should stop
                                         frontier.finish();
+                                        if (pipeline != null) {
+                                            pipeline.shutDown();
+                                        }
                                         for (T crawler : crawlers) {
                                             crawler.onBeforeExit();
                                             crawlersLocalData.add(crawler.getMyLocalData());
@@ -377,10 +470,15 @@ public class CrawlController {
                                         frontier.close();
                                         docIdServer.close();
                                         pageFetcher.shutDown();
+                                        if (validatorStore != null) {
+                                            validatorStore.close();
+                                        }
 
                                         finished = true;
                                         waitingLock.notifyAll();
-                                        env.close();
+                                        if (env != null) {
+                                            env.close();
+                                        }
 
                                         return;
                                     }
@@ -392,11 +490,19 @@ public class CrawlController {
                             setError(e);
                             synchronized (waitingLock) {
                                 frontier.finish();
+                                if (pipeline != null) {
+                                    pipeline.shutDown();
+                                }
                                 frontier.close();
                                 docIdServer.close();
                                 pageFetcher.shutDown();
+                                if (validatorStore != null) {
+                                    validatorStore.close();
+                                }
                                 waitingLock.notifyAll();
-                                env.close();
+                                if (env != null) {
+                                    env.close();
+                                }
                             }
                         } else {
                             logger.error("Unexpected Error", e);
@@ -467,6 +573,18 @@ public class CrawlController {
         return crawlersLocalData;
     }
 
+    /**
+     * @return whether urls are waiting to be fetched later, deferred urls or visited pages
+     *         waiting for their revisit, which keep the crawl going until it is shut down
+     */
+    private boolean hasDeferredURLs() {
+        if (shuttingDown) {
+            return false;
+        }
+        return frontier.getNumberOfDelayedURLs() > 0 || (frontier.getRecrawlScheduler() != null &&
+                                                         frontier.getRecrawlScheduler().getPendingCount() > 0);
+    }
+
     protected static void sleep(int seconds) {
         try {
             Thread.sleep(seconds * 1000);
@@ -602,14 +720,57 @@ public class CrawlController {
         return frontier;
     }
 
+    /**
+     * @return the pipeline processing the fetched pages, whose stage metrics show which stage
+     *         holds the crawl back, or {@code null} if the processing is not pipelined
+     */
+    public CrawlPipeline getPipeline() {
+        return pipeline;
+    }
+
     public void setFrontier(Frontier frontier) {
         this.frontier = frontier;
     }
 
+    /**
+     * Registers a counter which is kept together with the counters of the crawl, and persisted
+     * with them when crawling is resumable. Crawlers can increment the returned adder
+     * concurrently at little cost. Registering a name again returns the same counter.
+     *
+     * @param name the name of the counter
+     * @return the counter
+     */
+    public LongAdder registerCounter(String name) {
+        return frontier.getCounters().register(name);
+    }
+
+    /**
+     * @return the current values of all counters of the crawl, including the registered ones
+     */
+    public Map<String, Long> getCounterValues() {
+        return frontier.getCounters().getValues();
+    }
+
     public DocIDServer getDocIdServer() {
         return docIdServer;
     }
 
+    /**
+     * @return the validators of the fetched pages, or {@code null} if pages are not fetched
+     *         conditionally
+     */
+    public ValidatorStore getValidatorStore() {
+        return validatorStore;
+    }
+
+    /**
+     * @return the pool of the buffers of the content of pages, or {@code null} if they are not
+     *         pooled
+     */
+    public BufferPool getPageBufferPool() {
+        return pageBufferPool;
+    }
+
     public void setDocIdServer(DocIDServer docIdServer) {
         this.docIdServer = docIdServer;
     }
@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.crawler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.uci.ics.crawlerbykc.frontier.Frontier;
+
+/**
+ * Processes the fetched pages in stages, parsing, link processing and visiting, each with its
+ * own pool of threads and fed through a bounded queue. The crawler threads then only fetch,
+ * and block while the parse queue is full, so that a slow stage holds back the fetching
+ * instead of piling up pages in memory. Pages are marked as processed in the frontier once
+ * they leave the last stage.
+ */
+public class CrawlPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrawlPipeline.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * The stages of the pipeline, in the order in which pages pass them.
+     */
+    public enum Stage {
+        PARSE("Parser"),
+        LINKS("Link processor"),
+        VISIT("Visitor");
+
+        private final String threadName;
+
+        Stage(String threadName) {
+            this.threadName = threadName;
+        }
+    }
+
+    private final Frontier frontier;
+    private final StageWorkers[] stages = new StageWorkers[Stage.values().length];
+
+    /** Pages which were submitted and did not leave the pipeline yet */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile boolean stopped;
+
+    public CrawlPipeline(CrawlConfig config, Frontier frontier) {
+        this.frontier = frontier;
+        stages[Stage.PARSE.ordinal()] = new StageWorkers(Stage.PARSE, config.getParserThreads(),
+                                                         config.getPipelineQueueSize());
+        stages[Stage.LINKS.ordinal()] = new StageWorkers(Stage.LINKS, config.getLinkProcessorThreads(),
+                                                         config.getPipelineQueueSize());
+        stages[Stage.VISIT.ordinal()] = new StageWorkers(Stage.VISIT, config.getVisitorThreads(),
+                                                         config.getPipelineQueueSize());
+    }
+
+    public void start() {
+        for (StageWorkers stage : stages) {
+            for (int i = 1; i <= stage.threads.length; i++) {
+                Thread thread = new Thread(() -> work(stage), stage.stage.threadName + " " + i);
+                thread.setDaemon(true);
+                stage.threads[i - 1] = thread;
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Hands a fetched page on to the first stage, blocking while its queue is full.
+     *
+     * @param crawler the crawler which fetched the page, whose callbacks process it
+     * @param page the page with its content
+     * @return {@code false} if the pipeline was shut down and dropped the page
+     */
+    boolean submit(WebCrawler crawler, Page page) throws InterruptedException {
+        inFlight.incrementAndGet();
+        if (!stages[0].put(new Task(crawler, page))) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return whether no page is queued for or being processed by any stage
+     */
+    public boolean isIdle() {
+        return inFlight.get() == 0;
+    }
+
+    /**
+     * Stops the stage threads once they are done with their current pages, dropping the
+     * queued ones.
+     */
+    public void shutDown() {
+        stopped = true;
+        for (StageWorkers stage : stages) {
+            for (Thread thread : stage.threads) {
+                if (thread != null) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            stage.queue.clear();
+        }
+    }
+
+    /**
+     * @return the current metrics of the given stage
+     */
+    public StageStats getStats(Stage stage) {
+        StageWorkers workers = stages[stage.ordinal()];
+        return new StageStats(stage, workers.threads.length, workers.queue.size(),
+                              workers.queue.remainingCapacity() + workers.queue.size(),
+                              workers.processed.sum(), workers.queueNanos.sum(), workers.processingNanos.sum());
+    }
+
+    /**
+     * @return the current metrics of all stages, in pipeline order
+     */
+    public List<StageStats> getStats() {
+        List<StageStats> stats = new ArrayList<>(stages.length);
+        for (Stage stage : Stage.values()) {
+            stats.add(getStats(stage));
+        }
+        return stats;
+    }
+
+    private void work(StageWorkers stage) {
+        StageWorkers next = stage.stage.ordinal() + 1 < stages.length ? stages[stage.stage.ordinal() + 1] : null;
+        try {
+            while (!stopped) {
+                Task task = stage.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (task == null) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                stage.queueNanos.add(start - task.queuedAt);
+                boolean passOn = task.crawler.processStage(stage.stage, task.page);
+                long end = System.nanoTime();
+                stage.processingNanos.add(end - start);
+                stage.processed.increment();
+
+                if (passOn && next != null) {
+                    task.queuedAt = end;
+                    if (!next.put(task)) {
+                        task.page.releaseContent();
+                        inFlight.decrementAndGet();
+                    }
+                } else {
+                    task.page.releaseContent();
+                    frontier.setProcessed(task.page.getWebURL());
+                    inFlight.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.debug("{} thread interrupted", stage.stage.threadName);
+        }
+    }
+
+    private static class Task {
+        final WebCrawler crawler;
+        final Page page;
+        long queuedAt = System.nanoTime();
+
+        Task(WebCrawler crawler, Page page) {
+            this.crawler = crawler;
+            this.page = page;
+        }
+    }
+
+    private class StageWorkers {
+        final Stage stage;
+        final Thread[] threads;
+        final BlockingQueue<Task> queue;
+        final LongAdder processed = new LongAdder();
+        final LongAdder queueNanos = new LongAdder();
+        final LongAdder processingNanos = new LongAdder();
+
+        StageWorkers(Stage stage, int threads, int queueSize) {
+            this.stage = stage;
+            this.threads = new Thread[threads];
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        /**
+         * Blocks until the task is queued, or the pipeline is shut down.
+         *
+         * @return whether the task was queued
+         */
+        boolean put(Task task) throws InterruptedException {
+            while (!stopped) {
+                if (queue.offer(task, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A snapshot of the metrics of a stage: the depth of its queue, the number of pages it
+     * processed and how long they waited in the queue and were processed on average. A queue
+     * which stays full points at the stage which needs more threads.
+     */
+    public static class StageStats {
+        private final Stage stage;
+        private final int threads;
+        private final int queueDepth;
+        private final int queueCapacity;
+        private final long processedPages;
+        private final long queueNanos;
+        private final long processingNanos;
+
+        StageStats(Stage stage, int threads, int queueDepth, int queueCapacity, long processedPages,
+                   long queueNanos, long processingNanos) {
+            this.stage = stage;
+            this.threads = threads;
+            this.queueDepth = queueDepth;
+            this.queueCapacity = queueCapacity;
+            this.processedPages = processedPages;
+            this.queueNanos = queueNanos;
+            this.processingNanos = processingNanos;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public long getProcessedPages() {
+            return processedPages;
+        }
+
+        /**
+         * @return the average time the pages waited in the queue of the stage, in milliseconds
+         */
+        public double getAverageQueueMillis() {
+            return processedPages == 0 ? 0 : queueNanos / 1e6 / processedPages;
+        }
+
+        /**
+         * @return the average time the stage took to process a page, in milliseconds
+         */
+        public double getAverageProcessingMillis() {
+            return processedPages == 0 ? 0 : processingNanos / 1e6 / processedPages;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d threads, queue %d/%d, %d pages, %.1f ms queued, %.1f ms processing",
+                                 stage, threads, queueDepth, queueCapacity, processedPages,
+                                 getAverageQueueMillis(), getAverageProcessingMillis());
+        }
+    }
+}
@@ -17,19 +17,24 @@
 
 package edu.uci.ics.crawlerbykc.crawler;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.function.Supplier;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.util.ByteArrayBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.uci.ics.crawlerbykc.parser.ParseData;
 import edu.uci.ics.crawlerbykc.url.WebURL;
+import edu.uci.ics.crawlerbykc.util.BufferPool;
 
 /**
  * This class contains the data for a fetched and parsed page.
@@ -65,6 +70,19 @@ public class Page {
      */
     protected byte[] contentData;
 
+    /**
+     * The array holding the content, which is longer than the content if it was taken from
+     * the buffer pool. Then contentData is only copied from it when asked for.
+     */
+    private byte[] contentBuffer;
+
+    private int contentLength;
+
+    /**
+     * The pool the content buffer is taken from, or {@code null} to allocate it
+     */
+    private BufferPool bufferPool;
+
     /**
      * The ContentType of this page.
      * For example: "text/html; charset=UTF-8"
@@ -88,6 +106,11 @@ public class Page {
      */
     private String language;
 
+    /**
+     * Identifies the language when it is first asked for, or {@code null}
+     */
+    private Supplier<String> languageSupplier;
+
     /**
      * Headers which were present in the response of the fetch request
      */
@@ -121,35 +144,57 @@ public class Page {
         if (entity == null) {
             return new byte[0];
         }
-        try (InputStream is = entity.getContent()) {
-            int size = (int) entity.getContentLength();
-            int readBufferLength = size;
-
-            if (readBufferLength <= 0) {
-                readBufferLength = 4096;
-            }
-            // in case when the maxBytes is less than the actual page size
-            readBufferLength = Math.min(readBufferLength, maxBytes);
+        byte[] buffer = readContent(entity, maxBytes, null);
+        return buffer.length == contentLength ? buffer : Arrays.copyOf(buffer, contentLength);
+    }
 
+    /**
+     * Reads the content of an entity straight into an array sized by its Content-Length, which
+     * is only grown when the entity is longer or has no Content-Length. Sets contentLength and
+     * truncated.
+     *
+     * @param pool the pool to take the arrays from, or {@code null} to allocate them
+     * @return the array holding the content, which may be longer than it
+     */
+    private byte[] readContent(HttpEntity entity, int maxBytes, BufferPool pool) throws IOException {
+        try (InputStream is = entity.getContent()) {
+            long size = entity.getContentLength();
+            int limit = maxBytes > 0 ? maxBytes : Integer.MAX_VALUE - 8;
             // We allocate the buffer with either the actual size of the entity (if available)
             // or with the default 4KiB if the server did not return a value to avoid allocating
             // the full maxBytes (for the cases when the actual size will be smaller than maxBytes).
-            ByteArrayBuffer buffer = new ByteArrayBuffer(readBufferLength);
-
-            byte[] tmpBuff = new byte[4096];
-            int dataLength;
-
-            while ((dataLength = is.read(tmpBuff)) != -1) {
-                if (maxBytes > 0 && (buffer.length() + dataLength) > maxBytes) {
-                    truncated = true;
-                    dataLength = maxBytes - buffer.length();
+            int initialLength = (int) Math.min(size > 0 ? size : BufferPool.MIN_BUFFER_SIZE, limit);
+            byte[] buffer = pool == null ? new byte[initialLength] : pool.acquire(initialLength);
+            int length = 0;
+            truncated = false;
+            while (true) {
+                if (length == Math.min(buffer.length, limit)) {
+                    // Only grow the buffer if there is more, which is usually not the case when
+                    // it was sized by the Content-Length
+                    int next = is.read();
+                    if (next == -1) {
+                        break;
+                    } else if (length == limit) {
+                        truncated = true;
+                        break;
+                    }
+                    int newLength = (int) Math.min(limit, Math.max(BufferPool.MIN_BUFFER_SIZE, 2L * length));
+                    byte[] grown = pool == null ? new byte[newLength] : pool.acquire(newLength);
+                    System.arraycopy(buffer, 0, grown, 0, length);
+                    if (pool != null) {
+                        pool.release(buffer);
+                    }
+                    buffer = grown;
+                    buffer[length++] = (byte) next;
                 }
-                buffer.append(tmpBuff, 0, dataLength);
-                if (truncated) {
+                int read = is.read(buffer, length, Math.min(buffer.length, limit) - length);
+                if (read == -1) {
                     break;
                 }
+                length += read;
             }
-            return buffer.toByteArray();
+            contentLength = length;
+            return buffer;
         }
     }
 
@@ -161,7 +206,25 @@ public class Page {
      * @throws IOException when load fails
      */
     public void load(HttpEntity entity, int maxBytes) throws IOException {
+        loadContentType(entity);
+
+        releaseContent();
+        if (bufferPool == null) {
+            contentData = toByteArray(entity, maxBytes);
+            contentBuffer = contentData;
+        } else {
+            contentData = null;
+            contentBuffer = readContent(entity, maxBytes, bufferPool);
+        }
+    }
 
+    /**
+     * Loads the content type, encoding and charset of this page from a fetched HttpEntity,
+     * without its content.
+     *
+     * @param entity HttpEntity
+     */
+    public void loadContentType(HttpEntity entity) {
         contentType = null;
         Header type = entity.getContentType();
         if (type != null) {
@@ -185,8 +248,31 @@ public class Page {
         if (charset != null) {
             contentCharset = charset.displayName();
         }
+    }
+
+    /**
+     * Has the content of this page read into arrays taken from the given pool. The content is
+     * then only available until {@link #releaseContent()} is called, unless it was copied out
+     * with {@link #getContentData()} before.
+     *
+     * @param bufferPool the pool, or {@code null} to allocate the arrays
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
 
-        contentData = toByteArray(entity, maxBytes);
+    /**
+     * Returns the array holding the content to the buffer pool, if it was taken from one. The
+     * views of the content from {@link #getContentBuffer()} and {@link #getContentStream()} must
+     * not be used anymore. The content is still available if {@link #getContentData()} was
+     * called before, otherwise it is gone.
+     */
+    public void releaseContent() {
+        if (bufferPool != null && contentBuffer != null && contentBuffer != contentData) {
+            bufferPool.release(contentBuffer);
+        }
+        contentBuffer = contentData;
+        contentLength = contentData == null ? 0 : contentData.length;
     }
 
     public WebURL getWebURL() {
@@ -246,14 +332,61 @@ public class Page {
     }
 
     /**
-     * @return content of this page in binary format.
+     * @return content of this page in binary format. With a buffer pool, a copy of the content
+     * which stays available after the page was processed.
      */
     public byte[] getContentData() {
+        if (contentData == null && contentBuffer != null) {
+            contentData = Arrays.copyOf(contentBuffer, contentLength);
+        }
         return contentData;
     }
 
     public void setContentData(byte[] contentData) {
+        releaseContent();
         this.contentData = contentData;
+        this.contentBuffer = contentData;
+        this.contentLength = contentData == null ? 0 : contentData.length;
+    }
+
+    /**
+     * @return the length of the content of this page in bytes
+     */
+    public int getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * @return a read-only view of the content of this page, without copying it, or
+     * {@code null} if there is none
+     */
+    public ByteBuffer getContentBuffer() {
+        return contentBuffer == null ? null : ByteBuffer.wrap(contentBuffer, 0, contentLength).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a stream over the content of this page, without copying it, or {@code null} if
+     * there is none
+     */
+    public InputStream getContentStream() {
+        return contentBuffer == null ? null : new ByteArrayInputStream(contentBuffer, 0, contentLength);
+    }
+
+    /**
+     * Decodes the content of this page without copying it first.
+     *
+     * @param charsetName the charset of the content, or {@code null} for the platform default
+     * @return the content as a string, or {@code null} if there is none
+     * @throws UnsupportedEncodingException if the charset is not supported
+     */
+    public String getContentString(String charsetName) throws UnsupportedEncodingException {
+        if (contentBuffer == null) {
+            return null;
+        }
+        if (charsetName == null) {
+            return new String(contentBuffer, 0, contentLength, Charset.defaultCharset());
+        }
+        return new String(contentBuffer, 0, contentLength, charsetName);
     }
 
     /**
@@ -296,15 +429,32 @@ public class Page {
      * @return Language
      */
     public String getLanguage() {
+        if (languageSupplier != null) {
+            language = languageSupplier.get();
+            languageSupplier = null;
+        }
         return language;
     }
 
     public void setLanguage(String language) {
         this.language = language;
+        this.languageSupplier = null;
+    }
+
+    /**
+     * @param languageSupplier identifies the language when it is first asked for
+     */
+    public void setLanguageSupplier(Supplier<String> languageSupplier) {
+        this.language = null;
+        this.languageSupplier = languageSupplier;
     }
 
     public boolean isTruncated() {
         return truncated;
     }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
 }
 
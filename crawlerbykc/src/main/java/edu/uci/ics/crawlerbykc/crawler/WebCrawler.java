@@ -18,12 +18,27 @@
 package edu.uci.ics.crawlerbykc.crawler;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.http.Header;
 import org.apache.http.HttpStatus;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.impl.EnglishReasonPhraseCatalog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,16 +46,22 @@ import org.slf4j.LoggerFactory;
 import edu.uci.ics.crawlerbykc.crawler.exceptions.ContentFetchException;
 import edu.uci.ics.crawlerbykc.crawler.exceptions.PageBiggerThanMaxSizeException;
 import edu.uci.ics.crawlerbykc.crawler.exceptions.ParseException;
+import edu.uci.ics.crawlerbykc.fetcher.AsyncPageFetcher;
 import edu.uci.ics.crawlerbykc.fetcher.PageFetchResult;
 import edu.uci.ics.crawlerbykc.fetcher.PageFetcher;
+import edu.uci.ics.crawlerbykc.fetcher.PageValidators;
+import edu.uci.ics.crawlerbykc.fetcher.ValidatorStore;
 import edu.uci.ics.crawlerbykc.frontier.DocIDServer;
 import edu.uci.ics.crawlerbykc.frontier.Frontier;
+import edu.uci.ics.crawlerbykc.frontier.RecrawlScheduler;
 import edu.uci.ics.crawlerbykc.parser.HtmlParseData;
 import edu.uci.ics.crawlerbykc.parser.NotAllowedContentException;
 import edu.uci.ics.crawlerbykc.parser.ParseData;
 import edu.uci.ics.crawlerbykc.parser.Parser;
 import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtServer;
 import edu.uci.ics.crawlerbykc.url.WebURL;
+import edu.uci.ics.crawlerbykc.util.BufferPool;
+import edu.uci.ics.crawlerbykc.util.LimitedInputStream;
 
 /**
  * WebCrawler class in the Runnable class that is executed by each crawler thread.
@@ -100,12 +121,29 @@ public class WebCrawler implements Runnable {
      * instances are waiting for new URLs and therefore there is no more work
      * and crawling can be stopped.
      */
-    private boolean isWaitingForNewURLs;
+    private volatile boolean isWaitingForNewURLs;
 
     private Throwable error;
 
     private int batchReadSize;
 
+    /**
+     * The pipeline which parses, mines and visits the pages fetched by this crawler, or
+     * {@code null} if this crawler processes them itself.
+     */
+    private CrawlPipeline pipeline;
+
+    /**
+     * The validators of the fetched pages, or {@code null} if pages are not fetched
+     * conditionally.
+     */
+    private ValidatorStore validatorStore;
+
+    /**
+     * The pool of the buffers of the content of pages, or {@code null} if they are not pooled.
+     */
+    private BufferPool pageBufferPool;
+
     /**
      * Initializes the current instance of the crawler
      *
@@ -127,6 +165,9 @@ public class WebCrawler implements Runnable {
         this.myController = crawlController;
         this.isWaitingForNewURLs = false;
         this.batchReadSize = crawlController.getConfig().getBatchReadSize();
+        this.pipeline = crawlController.getPipeline();
+        this.validatorStore = crawlController.getValidatorStore();
+        this.pageBufferPool = crawlController.getPageBufferPool();
     }
 
     /**
@@ -188,6 +229,18 @@ public class WebCrawler implements Runnable {
         return curURL;
     }
 
+    /**
+     * This function is called if the page at a url has not been modified since a previous
+     * crawl fetched it, as the server answered its conditional fetch with 304 Not Modified.
+     * The page is neither parsed nor visited, but the links it had last time are followed again.
+     *
+     * @param webUrl the url of the page
+     */
+    protected void onNotModified(WebURL webUrl) {
+        logger.debug("Skipping URL: {}, not modified since it was fetched last", webUrl.getURL());
+        // Sub-classed can override this to add their custom functionality
+    }
+
     /**
      * This function is called if the content of a url is bigger than allowed size.
      *
@@ -296,6 +349,21 @@ public class WebCrawler implements Runnable {
         // Sub-classed can override this to add their custom functionality
     }
 
+    /**
+     * This function is called in streaming mode before an HTML page is parsed while its content
+     * is received, as the content is not loaded into the page then. The returned stream gets a
+     * copy of the raw content, e.g. to store it on disk, and is closed once the page was parsed.
+     *
+     * @param page Partial page object, with its headers but without its content
+     * @return the stream to copy the content to, or {@code null} to not keep it
+     * @throws IOException if the stream could not be opened, which fails the page
+     */
+    protected OutputStream openContentTee(Page page) throws IOException {
+        // Do nothing by default
+        // Sub-classed can override this to add their custom functionality
+        return null;
+    }
+
     /**
      * The CrawlController instance that has created this crawler instance will
      * call this function just before terminating this crawler thread. Classes
@@ -321,13 +389,14 @@ public class WebCrawler implements Runnable {
                 frontier.getNextURLs(batchReadSize, assignedURLs);
                 isWaitingForNewURLs = false;
                 if (assignedURLs.isEmpty()) {
+                    // The frontier only returns no urls once the crawl is finished
                     if (frontier.isFinished()) {
                         return;
                     }
-                    try {
-                        Thread.sleep(3000);
-                    } catch (InterruptedException e) {
-                        logger.error("Error occurred", e);
+                } else if (pageFetcher instanceof AsyncPageFetcher) {
+                    if (!processPagesAsync(assignedURLs)) {
+                        logger.info("Exiting because of controller shutdown.");
+                        return;
                     }
                 } else {
                     for (WebURL curURL : assignedURLs) {
@@ -337,8 +406,9 @@ public class WebCrawler implements Runnable {
                         }
                         if (curURL != null) {
                             curURL = handleUrlBeforeProcess(curURL);
-                            processPage(curURL);
-                            frontier.setProcessed(curURL);
+                            if (processPage(curURL, null)) {
+                                frontier.setProcessed(curURL);
+                            }
                         }
                     }
                 }
@@ -410,15 +480,132 @@ public class WebCrawler implements Runnable {
         // Sub-classed should override this to add their custom functionality
     }
 
-    private void processPage(WebURL curURL) throws IOException, InterruptedException, ParseException {
+    /**
+     * Starts fetching all of the given urls at once through the {@link AsyncPageFetcher}, and
+     * processes the pages on this thread in the order in which their fetches complete.
+     *
+     * @return {@code false} if processing stopped because the controller is shutting down
+     */
+    private boolean processPagesAsync(List<WebURL> assignedURLs)
+        throws IOException, InterruptedException, ParseException {
+        List<WebURL> urls = new ArrayList<>(assignedURLs.size());
+        List<CompletableFuture<PageFetchResult>> fetches = new ArrayList<>(assignedURLs.size());
+        BlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
+        for (WebURL curURL : assignedURLs) {
+            if (curURL != null) {
+                curURL = handleUrlBeforeProcess(curURL);
+                int index = urls.size();
+                urls.add(curURL);
+                CompletableFuture<PageFetchResult> fetch =
+                    ((AsyncPageFetcher) pageFetcher).fetchPageAsync(curURL);
+                fetches.add(fetch);
+                fetch.whenComplete((result, e) -> completed.add(index));
+            }
+        }
+        for (int i = 0; i < urls.size(); i++) {
+            int index = completed.take();
+            if (myController.isShuttingDown()) {
+                return false;
+            }
+            if (processPage(urls.get(index), fetches.get(index))) {
+                frontier.setProcessed(urls.get(index));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the result of a completed asynchronous fetch, or the exception it failed with
+     */
+    private static PageFetchResult getFetchResult(Future<PageFetchResult> fetch)
+        throws IOException, InterruptedException, PageBiggerThanMaxSizeException {
+        try {
+            return fetch.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof PageBiggerThanMaxSizeException) {
+                throw (PageBiggerThanMaxSizeException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Queues a url again for after its Retry-After when its server is overloaded or rate limits
+     * the crawler, with adaptive politeness enabled.
+     *
+     * @return whether the url was deferred
+     */
+    private boolean deferOnRetryAfter(WebURL curURL, PageFetchResult fetchResult) {
+        CrawlConfig config = myController.getConfig();
+        int statusCode = fetchResult.getStatusCode();
+        if (!config.isAdaptivePoliteness() ||
+            (statusCode != 429 && statusCode != HttpStatus.SC_SERVICE_UNAVAILABLE)) {
+            return false;
+        }
+        long retryAfter = fetchResult.getRetryAfterMillis();
+        if (retryAfter < 0 || retryAfter > config.getMaxRetryAfterSeconds() * 1000L) {
+            return false;
+        }
+        return frontier.defer(curURL, System.currentTimeMillis() + retryAfter);
+    }
+
+    /**
+     * Queues a url whose fetch failed transiently to be fetched again later, if fetch retries
+     * are enabled.
+     *
+     * @param cause what went wrong, for the log
+     * @return whether the url will be retried
+     */
+    private boolean retryLater(WebURL curURL, Object cause) {
+        if (myController.getConfig().getMaxFetchRetries() == 0 ||
+            !frontier.retry(curURL, pageFetcher.getPolitenessScheduler().getHostKey(curURL))) {
+            return false;
+        }
+        logger.debug("Retrying: {} later after {}", curURL.getURL(), cause);
+        return true;
+    }
+
+    /**
+     * Keeps a page whose revisit failed on the recrawl schedule, or drops it from the schedule if
+     * it is gone. Does nothing for pages which are not being recrawled.
+     *
+     * @param gone whether the page will not be there at a later revisit either
+     */
+    private void onFailedRevisit(WebURL curURL, boolean gone) {
+        RecrawlScheduler recrawlScheduler = frontier.getRecrawlScheduler();
+        if (recrawlScheduler == null) {
+            return;
+        }
+        if (gone) {
+            recrawlScheduler.forget(curURL);
+        } else {
+            recrawlScheduler.recordFailedVisit(curURL, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @param pendingFetch the asynchronous fetch of the url, or {@code null} to fetch it now
+     * @return {@code false} if the page was handed on to the pipeline, which marks it as
+     *         processed once it is done with it, or if it was queued again to be fetched later
+     */
+    private boolean processPage(WebURL curURL, Future<PageFetchResult> pendingFetch)
+        throws IOException, InterruptedException, ParseException {
         PageFetchResult fetchResult = null;
         Page page = new Page(curURL);
+        page.setBufferPool(pageBufferPool);
+        boolean handedOn = false;
+        boolean requeued = false;
         try {
             if (curURL == null) {
-                return;
+                return true;
             }
 
-            fetchResult = pageFetcher.fetchPage(curURL);
+            fetchResult = pendingFetch == null ? pageFetcher.fetchPage(curURL) : getFetchResult(pendingFetch);
             int statusCode = fetchResult.getStatusCode();
             handlePageStatusCode(curURL, statusCode,
                                  EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode,
@@ -438,11 +625,12 @@ public class WebCrawler implements Runnable {
                     // follow https://issues.apache.org/jira/browse/HTTPCORE-389
 
                     page.setRedirect(true);
+                    onFailedRevisit(curURL, true);
 
                     String movedToUrl = fetchResult.getMovedToUrl();
                     if (movedToUrl == null) {
                         onRedirectedToInvalidUrl(page);
-                        return;
+                        return true;
                     }
                     page.setRedirectedToUrl(movedToUrl);
                     onRedirectedStatusCode(page);
@@ -451,7 +639,7 @@ public class WebCrawler implements Runnable {
                         int newDocId = docIdServer.getDocId(movedToUrl);
                         if (newDocId > 0) {
                             logger.debug("Redirect page: {} is already seen", curURL);
-                            return;
+                            return true;
                         }
 
                         WebURL webURL = new WebURL();
@@ -476,7 +664,33 @@ public class WebCrawler implements Runnable {
                                          webURL.getURL());
                         }
                     }
-                } else { // All other http codes other than 3xx & 200
+                } else if (statusCode == HttpStatus.SC_NOT_MODIFIED && validatorStore != null) {
+                    PageValidators validators = validatorStore.get(curURL.getURL());
+                    RecrawlScheduler recrawlScheduler = frontier.getRecrawlScheduler();
+                    if (recrawlScheduler != null) {
+                        recrawlScheduler.recordVisit(curURL, validators == null ? 0 : validators.getContentHash(),
+                                                     System.currentTimeMillis());
+                    }
+                    if (validators != null) {
+                        // The links of an unchanged page lead on to pages which may have changed
+                        for (WebURL webURL : validators.getOutgoingUrls()) {
+                            webURL.setTldList(myController.getTldList());
+                            webURL.setURL(webURL.getURL());
+                        }
+                        scheduleLinks(page, validators.getOutgoingUrls());
+                    }
+                    onNotModified(curURL);
+                } else if (deferOnRetryAfter(curURL, fetchResult)) {
+                    logger.debug("Deferred: {} as asked by its server with status {}", curURL.getURL(),
+                                 statusCode);
+                    requeued = true;
+                } else if (statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR &&
+                           retryLater(curURL, "status " + statusCode)) {
+                    requeued = true;
+                } else {
+                    // All other http codes other than 3xx & 200
+                    onFailedRevisit(curURL, statusCode < HttpStatus.SC_INTERNAL_SERVER_ERROR && statusCode != 429 &&
+                                            statusCode != HttpStatus.SC_REQUEST_TIMEOUT);
                     String description =
                         EnglishReasonPhraseCatalog.INSTANCE.getReason(fetchResult.getStatusCode(),
                                                                       Locale.ENGLISH); // Finds
@@ -490,98 +704,272 @@ public class WebCrawler implements Runnable {
 
             } else { // if status code is 200
                 if (!curURL.getURL().equals(fetchResult.getFetchedUrl())) {
+                    onFailedRevisit(curURL, true);
                     if (docIdServer.isSeenBefore(fetchResult.getFetchedUrl())) {
                         logger.debug("Redirect page: {} has already been seen", curURL);
-                        return;
+                        return true;
                     }
                     curURL.setURL(fetchResult.getFetchedUrl());
                     curURL.setDocid(docIdServer.getNewDocID(fetchResult.getFetchedUrl()));
                 }
 
-                if (!fetchResult.fetchContent(page,
-                                              myController.getConfig().getMaxDownloadSize())) {
-                    throw new ContentFetchException();
-                }
+                if (isStreamed(fetchResult)) {
+                    parseStreamed(page, fetchResult);
+                } else {
+                    if (!fetchResult.fetchContent(page,
+                                                  myController.getConfig().getMaxDownloadSize())) {
+                        throw new ContentFetchException();
+                    }
 
-                if (page.isTruncated()) {
-                    logger.warn(
-                        "Warning: unknown page size exceeded max-download-size, truncated to: " +
-                        "({}), at URL: {}",
-                        myController.getConfig().getMaxDownloadSize(), curURL.getURL());
-                }
+                    if (page.isTruncated()) {
+                        logger.warn(
+                            "Warning: unknown page size exceeded max-download-size, truncated to: " +
+                            "({}), at URL: {}",
+                            myController.getConfig().getMaxDownloadSize(), curURL.getURL());
+                    }
 
-                parser.parse(page, curURL.getURL());
-
-                if (shouldFollowLinksIn(page.getWebURL())) {
-                    ParseData parseData = page.getParseData();
-                    List<WebURL> toSchedule = new ArrayList<>();
-                    int maxCrawlDepth = myController.getConfig().getMaxDepthOfCrawling();
-                    for (WebURL webURL : parseData.getOutgoingUrls()) {
-                        webURL.setParentDocid(curURL.getDocid());
-                        webURL.setParentUrl(curURL.getURL());
-                        int newdocid = docIdServer.getDocId(webURL.getURL());
-                        if (newdocid > 0) {
-                            // This is not the first time that this Url is visited. So, we set the
-                            // depth to a negative number.
-                            webURL.setDepth((short) -1);
-                            webURL.setDocid(newdocid);
-                        } else {
-                            webURL.setDocid(-1);
-                            webURL.setDepth((short) (curURL.getDepth() + 1));
-                            if ((maxCrawlDepth == -1) || (curURL.getDepth() < maxCrawlDepth)) {
-                                if (shouldVisit(page, webURL)) {
-                                    if (robotstxtServer.allows(webURL)) {
-                                        webURL.setDocid(docIdServer.getNewDocID(webURL.getURL()));
-                                        toSchedule.add(webURL);
-                                    } else {
-                                        logger.debug(
-                                            "Not visiting: {} as per the server's \"robots.txt\" " +
-                                            "policy", webURL.getURL());
-                                    }
-                                } else {
-                                    logger.debug(
-                                        "Not visiting: {} as per your \"shouldVisit\" policy",
-                                        webURL.getURL());
-                                }
-                            }
-                        }
+                    if (frontier.getRecrawlScheduler() != null) {
+                        frontier.getRecrawlScheduler().recordVisit(
+                            curURL, PageValidators.hashContent(page.getContentBuffer()), System.currentTimeMillis());
                     }
-                    frontier.scheduleAll(toSchedule);
-                } else {
-                    logger.debug("Not looking for links in page {}, "
-                                 + "as per your \"shouldFollowLinksInPage\" policy",
-                                 page.getWebURL().getURL());
-                }
 
-                boolean noIndex = myController.getConfig().isRespectNoIndex() &&
-                    page.getContentType() != null &&
-                    page.getContentType().contains("html") &&
-                    ((HtmlParseData)page.getParseData())
-                        .getMetaTagValue("robots").
-                        contains("noindex");
+                    if (pipeline != null && pipeline.submit(this, page)) {
+                        handedOn = true;
+                        return false;
+                    }
 
-                if (!noIndex) {
-                    visit(page);
+                    parser.parse(page, curURL.getURL());
                 }
+                scheduleOutgoingLinks(page);
+                visitUnlessNoIndex(page);
             }
         } catch (PageBiggerThanMaxSizeException e) {
+            onFailedRevisit(curURL, true);
             onPageBiggerThanMaxSize(curURL.getURL(), e.getPageSize());
         } catch (ParseException pe) {
             onParseError(curURL, pe);
         } catch (ContentFetchException | SocketTimeoutException cfe) {
-            onContentFetchError(curURL);
-            onContentFetchError(page);
+            requeued = retryLater(curURL, cfe);
+            if (!requeued) {
+                onFailedRevisit(curURL, false);
+                onContentFetchError(curURL);
+                onContentFetchError(page);
+            }
         } catch (NotAllowedContentException nace) {
+            onFailedRevisit(curURL, true);
             logger.debug(
                 "Skipping: {} as it contains binary content which you configured not to crawl",
                 curURL.getURL());
+        } catch (SocketException | NoHttpResponseException | ConnectTimeoutException e) {
+            // The connection was refused, reset or timed out, or closed without a response
+            requeued = retryLater(curURL, e);
+            if (!requeued) {
+                onFailedRevisit(curURL, false);
+                onUnhandledException(curURL, e);
+            }
         } catch (IOException | InterruptedException | RuntimeException e) {
+            onFailedRevisit(curURL, false);
             onUnhandledException(curURL, e);
         } finally {
             if (fetchResult != null) {
                 fetchResult.discardContentIfNotConsumed();
             }
+            if (!handedOn) {
+                page.releaseContent();
+            }
+        }
+        return !requeued;
+    }
+
+    /**
+     * HTML pages are parsed while their content is received in streaming mode, unless the content
+     * is needed as a whole: for the pipeline, or for the hash of conditional fetching and
+     * recrawling.
+     */
+    private boolean isStreamed(PageFetchResult fetchResult) {
+        if (!myController.getConfig().isStreamingParsing() || pipeline != null || validatorStore != null ||
+            frontier.getRecrawlScheduler() != null || fetchResult.getEntity() == null) {
+            return false;
+        }
+        Header type = fetchResult.getEntity().getContentType();
+        return parser.isHtml(type == null ? null : type.getValue());
+    }
+
+    /**
+     * Parses an HTML page while its content is received, up to the maximum download size. A
+     * failure to receive the content is reported like when it is loaded.
+     */
+    private void parseStreamed(Page page, PageFetchResult fetchResult)
+        throws IOException, ParseException, ContentFetchException {
+        WebURL curURL = page.getWebURL();
+        int maxDownloadSize = myController.getConfig().getMaxDownloadSize();
+        InputStream content = fetchResult.openContent(page);
+        try (OutputStream tee = openContentTee(page)) {
+            LimitedInputStream limited = new LimitedInputStream(content, maxDownloadSize, tee);
+            try {
+                parser.parse(page, limited, curURL.getURL());
+            } catch (ParseException e) {
+                if (e.getCause() instanceof SocketTimeoutException) {
+                    throw (SocketTimeoutException) e.getCause();
+                } else if (e.getCause() instanceof IOException) {
+                    logger.info("Exception while fetching content for: {} [{}]", curURL.getURL(),
+                                e.getCause().getMessage());
+                    throw new ContentFetchException();
+                }
+                throw e;
+            }
+            page.setTruncated(limited.isTruncated());
+            if (page.isTruncated()) {
+                logger.warn("Warning: page size exceeded max-download-size, parsed up to: ({}), at URL: {}",
+                            maxDownloadSize, curURL.getURL());
+            }
+        } finally {
+            content.close();
+        }
+    }
+
+    /**
+     * Looks up the outgoing links of a parsed page and schedules the ones which should be
+     * visited. With conditional fetching, the validators of the page are stored along with
+     * the links, once they are known.
+     */
+    private void scheduleOutgoingLinks(Page page) throws IOException, InterruptedException {
+        ParseData parseData = page.getParseData();
+        if (validatorStore != null) {
+            // The links of a page whose robots meta tag says nofollow are not followed later
+            boolean noFollow = myController.getConfig().isRespectNoFollow() && parseData instanceof HtmlParseData &&
+                               ((HtmlParseData) parseData).getMetaTagValue("robots").contains("nofollow");
+            validatorStore.put(page.getWebURL().getURL(), PageValidators.of(
+                page, noFollow ? Collections.emptyList() : parseData.getOutgoingUrls()));
+        }
+        scheduleLinks(page, parseData.getOutgoingUrls());
+    }
+
+    /** Schedules the links of a page which should be visited. */
+    private void scheduleLinks(Page page, Collection<WebURL> outgoingUrls) throws IOException, InterruptedException {
+        WebURL curURL = page.getWebURL();
+        if (shouldFollowLinksIn(curURL)) {
+            List<WebURL> toSchedule = new ArrayList<>();
+            int maxCrawlDepth = myController.getConfig().getMaxDepthOfCrawling();
+            List<String> urls = new ArrayList<>(outgoingUrls.size());
+            for (WebURL webURL : outgoingUrls) {
+                urls.add(webURL.getURL());
+            }
+            Map<String, Integer> docIds = docIdServer.getDocIds(urls);
+            for (WebURL webURL : outgoingUrls) {
+                webURL.setParentDocid(curURL.getDocid());
+                webURL.setParentUrl(curURL.getURL());
+                int newdocid = docIds.get(webURL.getURL());
+                if (newdocid > 0) {
+                    // This is not the first time that this Url is visited. So, we set the
+                    // depth to a negative number.
+                    webURL.setDepth((short) -1);
+                    webURL.setDocid(newdocid);
+                } else {
+                    webURL.setDocid(-1);
+                    webURL.setDepth((short) (curURL.getDepth() + 1));
+                    if ((maxCrawlDepth == -1) || (curURL.getDepth() < maxCrawlDepth)) {
+                        if (shouldVisit(page, webURL)) {
+                            if (robotstxtServer.allows(webURL)) {
+                                toSchedule.add(webURL);
+                            } else {
+                                logger.debug(
+                                    "Not visiting: {} as per the server's \"robots.txt\" " +
+                                    "policy", webURL.getURL());
+                            }
+                        } else {
+                            logger.debug(
+                                "Not visiting: {} as per your \"shouldVisit\" policy",
+                                webURL.getURL());
+                        }
+                    }
+                }
+            }
+            if (!toSchedule.isEmpty()) {
+                List<String> newUrls = new ArrayList<>(toSchedule.size());
+                for (WebURL webURL : toSchedule) {
+                    newUrls.add(webURL.getURL());
+                }
+                // Urls which another crawler found meanwhile, or which are linked twice, are
+                // only scheduled once
+                Map<String, Integer> newDocIds = docIdServer.createDocIds(newUrls);
+                Iterator<WebURL> iterator = toSchedule.iterator();
+                while (iterator.hasNext()) {
+                    WebURL webURL = iterator.next();
+                    Integer docId = newDocIds.remove(webURL.getURL());
+                    if (docId == null) {
+                        iterator.remove();
+                    } else {
+                        webURL.setDocid(docId);
+                    }
+                }
+            }
+            frontier.scheduleAll(toSchedule);
+        } else {
+            logger.debug("Not looking for links in page {}, "
+                         + "as per your \"shouldFollowLinksInPage\" policy",
+                         curURL.getURL());
+        }
+    }
+
+    private void visitUnlessNoIndex(Page page) {
+        boolean noIndex = myController.getConfig().isRespectNoIndex() &&
+            page.getContentType() != null &&
+            page.getContentType().contains("html") &&
+            ((HtmlParseData)page.getParseData())
+                .getMetaTagValue("robots").
+                contains("noindex");
+
+        if (!noIndex) {
+            visit(page);
+        }
+    }
+
+    /**
+     * Runs a stage of the pipeline on a page which this crawler fetched, on a thread of the
+     * pipeline. Failures are reported to the same callbacks as when this crawler processes its
+     * pages itself.
+     *
+     * @return whether the page should be passed on to the next stage
+     */
+    boolean processStage(CrawlPipeline.Stage stage, Page page) {
+        WebURL curURL = page.getWebURL();
+        if (myController.isShuttingDown()) {
+            return false;
+        }
+        try {
+            switch (stage) {
+                case PARSE:
+                    parser.parse(page, curURL.getURL());
+                    break;
+                case LINKS:
+                    scheduleOutgoingLinks(page);
+                    break;
+                default:
+                    visitUnlessNoIndex(page);
+                    break;
+            }
+            return true;
+        } catch (ParseException pe) {
+            try {
+                onParseError(curURL, pe);
+            } catch (ParseException e) {
+                setError(e);
+            }
+        } catch (NotAllowedContentException nace) {
+            logger.debug(
+                "Skipping: {} as it contains binary content which you configured not to crawl",
+                curURL.getURL());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            try {
+                onUnhandledException(curURL, e);
+            } catch (RuntimeException re) {
+                setError(re);
+            }
+        } catch (Throwable t) {
+            setError(t);
         }
+        return false;
     }
 
     public Thread getThread() {
@@ -0,0 +1,346 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.fetcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.KeyManagementException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.RequestAcceptEncoding;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.util.ByteArrayBuffer;
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.crawler.exceptions.PageBiggerThanMaxSizeException;
+import edu.uci.ics.crawlerbykc.url.WebURL;
+
+/**
+ * A {@link PageFetcher} which can also fetch pages without blocking the calling thread, see
+ * {@link #fetchPageAsync(WebURL)}. The requests are sent by a non-blocking http client, whose
+ * few I/O threads can keep thousands of requests in flight. Requests which have to wait for
+ * the politeness delay of their host wait on a timer instead of a thread.
+ *
+ * The asynchronous client shares the configuration of the blocking one: timeouts, cookies
+ * (including those of form logins), credentials, proxy, user agent and default headers.
+ * Redirects and the maximum download size are handled the same way. Bodies are buffered in
+ * memory, up to the maximum download size.
+ *
+ * {@link #fetchPage(WebURL)} still uses the blocking client.
+ */
+public class AsyncPageFetcher extends PageFetcher {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    protected PoolingNHttpClientConnectionManager asyncConnectionManager;
+    protected CloseableHttpAsyncClient asyncClient;
+
+    /** Sends the requests which wait for their politeness delay, and evicts idle connections */
+    private final ScheduledExecutorService timer;
+
+    /** The fetches which are not completed yet */
+    private final Set<CompletableFuture<PageFetchResult>> pending = ConcurrentHashMap.newKeySet();
+
+    public AsyncPageFetcher(CrawlConfig config)
+        throws NoSuchAlgorithmException, KeyManagementException, KeyStoreException, IOReactorException {
+        super(config);
+
+        RegistryBuilder<SchemeIOSessionStrategy> sessionStrategies = RegistryBuilder.create();
+        sessionStrategies.register("http", NoopIOSessionStrategy.INSTANCE);
+        if (config.isIncludeHttpsPages()) {
+            try {
+                // Always trusting the ssl certificate, as the blocking client does
+                SSLContext sslContext =
+                    SSLContexts.custom().loadTrustMaterial(null, (chain, authType) -> true).build();
+                sessionStrategies.register("https",
+                                           new SSLIOSessionStrategy(sslContext, NoopHostnameVerifier.INSTANCE));
+            } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException | RuntimeException e) {
+                if (config.isHaltOnError()) {
+                    throw e;
+                } else {
+                    logger.warn("Exception thrown while trying to register https");
+                    logger.debug("Stacktrace", e);
+                }
+            }
+        }
+
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(config.getAsyncIoThreadCount())
+                .setConnectTimeout(config.getConnectionTimeout())
+                .setSoTimeout(config.getSocketTimeout())
+                .build();
+        asyncConnectionManager = new PoolingNHttpClientConnectionManager(
+            new DefaultConnectingIOReactor(ioReactorConfig), null, sessionStrategies.build(), null,
+            config.getDnsResolver(), -1, TimeUnit.MILLISECONDS);
+        asyncConnectionManager.setMaxTotal(config.getMaxTotalConnections());
+        asyncConnectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
+
+        HttpAsyncClientBuilder clientBuilder = HttpAsyncClientBuilder.create()
+                .setConnectionManager(asyncConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setDefaultCookieStore(cookieStore)
+                .setUserAgent(config.getUserAgentString())
+                .setDefaultHeaders(config.getDefaultHeaders())
+                // The blocking client asks for compressed content by default
+                .addInterceptorLast(new RequestAcceptEncoding());
+        if (proxy != null) {
+            clientBuilder.setProxy(proxy);
+        }
+        if (credentialsProvider != null) {
+            clientBuilder.setDefaultCredentialsProvider(credentialsProvider);
+            clientBuilder.addInterceptorFirst(new BasicAuthHttpRequestInterceptor());
+        }
+        asyncClient = clientBuilder.build();
+        asyncClient.start();
+
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Async fetcher timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            asyncConnectionManager.closeExpiredConnections();
+            asyncConnectionManager.closeIdleConnections(30, TimeUnit.SECONDS);
+        }, 5, 5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Fetches the given url without blocking. The request is sent once the politeness delay of
+     * its host allows it.
+     *
+     * @param webUrl the url to be fetched
+     * @return the result, which completes exceptionally with the exceptions
+     * {@link #fetchPage(WebURL)} throws
+     */
+    public CompletableFuture<PageFetchResult> fetchPageAsync(WebURL webUrl) {
+        CompletableFuture<PageFetchResult> future = new CompletableFuture<>();
+        pending.add(future);
+        future.whenComplete((result, e) -> pending.remove(future));
+
+        String hostKey = politenessScheduler.getHostKey(webUrl);
+        long now = System.currentTimeMillis();
+        long fetchTime = politenessScheduler.reserve(hostKey, now);
+        try {
+            if (fetchTime > now) {
+                timer.schedule(() -> send(webUrl, hostKey, true, future), fetchTime - now, TimeUnit.MILLISECONDS);
+            } else {
+                send(webUrl, hostKey, fetchTime >= 0, future);
+            }
+        } catch (RuntimeException e) {
+            // The timer is shut down
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void send(WebURL webUrl, String hostKey, boolean reserved, CompletableFuture<PageFetchResult> future) {
+        if (reserved) {
+            politenessScheduler.release(hostKey);
+        }
+        String toFetchURL = webUrl.getURL();
+        BoundedResponseConsumer consumer = new BoundedResponseConsumer(config.getMaxDownloadSize());
+        try {
+            HttpUriRequest request = newHttpUriRequest(toFetchURL);
+            addConditionalHeaders(request, toFetchURL);
+            long start = System.currentTimeMillis();
+            asyncClient.execute(HttpAsyncMethods.create(request), consumer, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    onResponse(hostKey, response, System.currentTimeMillis() - start);
+                    PageFetchResult fetchResult = new PageFetchResult(config.isHaltOnError());
+                    try {
+                        processResponse(fetchResult, toFetchURL, request.getURI().toString(), response);
+                        future.complete(fetchResult);
+                    } catch (PageBiggerThanMaxSizeException | IOException | RuntimeException e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    if (consumer.tooBigSize >= 0) {
+                        future.completeExceptionally(new PageBiggerThanMaxSizeException(consumer.tooBigSize));
+                    } else {
+                        politenessScheduler.onFailure(hostKey);
+                        future.completeExceptionally(e);
+                    }
+                }
+
+                @Override
+                public void cancelled() {
+                    future.cancel(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            // An invalid url, or the client is closed
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return the number of fetches which are waiting for their politeness delay or in flight
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public synchronized void shutDown() {
+        timer.shutdownNow();
+        try {
+            asyncClient.close();
+        } catch (IOException e) {
+            logger.warn("Exception thrown while closing the async http client", e);
+        }
+        for (CompletableFuture<PageFetchResult> future : pending) {
+            future.completeExceptionally(new IOException("The page fetcher was shut down"));
+        }
+        super.shutDown();
+    }
+
+    /**
+     * Buffers the body of a response in memory. A successful response which declares a length
+     * above the maximum download size fails the request. Of a body without declared length,
+     * one byte more than the maximum is kept, so that the page is marked as truncated.
+     */
+    private static class BoundedResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+        private final int maxBytes;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private HttpResponse response;
+        private HttpEntity originalEntity;
+        private ByteArrayBuffer buffer;
+        volatile long tooBigSize = -1;
+
+        BoundedResponseConsumer(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) throws IOException {
+            this.response = response;
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode >= 200 && statusCode <= 299) {
+                long size = getDeclaredContentLength(response);
+                if (size > maxBytes) {
+                    tooBigSize = size;
+                    throw new IOException("Page bigger than max size: " + size);
+                }
+            }
+        }
+
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+            originalEntity = entity;
+            long length = entity.getContentLength();
+            int capacity = (length >= 0 && length <= maxBytes) ? (int) length : READ_BUFFER_SIZE;
+            buffer = new ByteArrayBuffer(Math.max(capacity, 1));
+        }
+
+        @Override
+        protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+            int read;
+            while ((read = decoder.read(readBuffer)) > 0) {
+                // The rest of the body is read and dropped, to keep the connection usable
+                int keep = (int) Math.min(read, maxBytes + 1L - buffer.length());
+                if (keep > 0) {
+                    buffer.append(readBuffer.array(), 0, keep);
+                }
+                readBuffer.clear();
+            }
+        }
+
+        @Override
+        protected HttpResponse buildResult(HttpContext context) throws IOException {
+            if (originalEntity == null) {
+                return response;
+            }
+            BasicHttpEntity entity = new BasicHttpEntity();
+            entity.setContent(new ByteArrayInputStream(buffer.buffer(), 0, buffer.length()));
+            // An unknown length lets the page be truncated instead of rejected
+            entity.setContentLength(buffer.length() > maxBytes ? -1 : buffer.length());
+            entity.setContentType(originalEntity.getContentType());
+            entity.setContentEncoding(originalEntity.getContentEncoding());
+            response.setEntity(decompress(entity));
+            return response;
+        }
+
+        /**
+         * Decompresses gzip and deflate content, as the blocking client does.
+         */
+        private HttpEntity decompress(HttpEntity entity) {
+            Header encoding = entity.getContentEncoding();
+            if (encoding == null) {
+                return entity;
+            }
+            String codec = encoding.getValue().toLowerCase().trim();
+            HttpEntity decompressed;
+            if (codec.equals("gzip") || codec.equals("x-gzip")) {
+                decompressed = new GzipDecompressingEntity(entity);
+            } else if (codec.equals("deflate")) {
+                decompressed = new DeflateDecompressingEntity(entity);
+            } else {
+                return entity;
+            }
+            response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+            response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+            response.removeHeaders(HttpHeaders.CONTENT_MD5);
+            return decompressed;
+        }
+
+        @Override
+        protected void releaseResources() {
+            originalEntity = null;
+        }
+    }
+}
@@ -18,10 +18,14 @@
 package edu.uci.ics.crawlerbykc.fetcher;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.SocketTimeoutException;
+import java.util.Date;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -96,6 +100,18 @@ public class PageFetchResult {
         return false;
     }
 
+    /**
+     * Loads the headers of the fetched page without its content, which is opened to be read as
+     * it is received instead.
+     *
+     * @return the content, which the caller must close
+     */
+    public InputStream openContent(Page page) throws IOException {
+        page.setFetchResponseHeaders(responseHeaders);
+        page.loadContentType(entity);
+        return entity.getContent();
+    }
+
     public void discardContentIfNotConsumed() {
         try {
             if (entity != null) {
@@ -122,5 +138,40 @@ public class PageFetchResult {
     public void setMovedToUrl(String movedToUrl) {
         this.movedToUrl = movedToUrl;
     }
+
+    /**
+     * @return the time the server asked to wait before retrying with its Retry-After header, in
+     *         milliseconds, or -1 if it did not send a valid one
+     */
+    public long getRetryAfterMillis() {
+        if (responseHeaders != null) {
+            for (Header header : responseHeaders) {
+                if (header.getName().equalsIgnoreCase(HttpHeaders.RETRY_AFTER)) {
+                    return parseRetryAfter(header.getValue(), System.currentTimeMillis());
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a Retry-After header, which holds either a number of seconds or an HTTP date.
+     *
+     * @param value the value of the header
+     * @param now the current time in milliseconds
+     * @return the time to wait in milliseconds, or -1 if the value is not valid
+     */
+    static long parseRetryAfter(String value, long now) {
+        if (value == null) {
+            return -1;
+        }
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            return date == null ? -1 : Math.max(0, date.getTime() - now);
+        }
+    }
 }
 
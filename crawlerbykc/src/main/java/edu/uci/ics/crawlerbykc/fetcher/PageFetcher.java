@@ -26,7 +26,6 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +35,7 @@ import javax.net.ssl.SSLContext;
 import org.apache.http.Header;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
 import org.apache.http.auth.AuthScope;
@@ -43,6 +43,7 @@ import org.apache.http.auth.Credentials;
 import org.apache.http.auth.NTCredentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.CookieStore;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
@@ -57,6 +58,7 @@ import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustStrategy;
+import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
@@ -80,7 +82,6 @@ import edu.uci.ics.crawlerbykc.url.WebURL;
  */
 public class PageFetcher {
     protected static final Logger logger = LoggerFactory.getLogger(PageFetcher.class);
-    protected final Object mutex = new Object();
     /**
      * This field is protected for retro compatibility. Please use the getter method: getConfig() to
      * read this field;
@@ -88,13 +89,22 @@ public class PageFetcher {
     protected final CrawlConfig config;
     protected PoolingHttpClientConnectionManager connectionManager;
     protected CloseableHttpClient httpClient;
-    protected long lastFetchTime = 0;
+    protected PolitenessScheduler politenessScheduler;
     protected IdleConnectionMonitorThread connectionMonitorThread = null;
+    protected RequestConfig requestConfig;
+    protected CookieStore cookieStore;
+    /** Null when no credentials are configured */
+    protected CredentialsProvider credentialsProvider;
+    /** Null when not working through a proxy */
+    protected HttpHost proxy;
+    /** Null unless pages are fetched conditionally */
+    protected ValidatorStore validatorStore;
 
     public PageFetcher(CrawlConfig config) throws NoSuchAlgorithmException, KeyManagementException, KeyStoreException {
         this.config = config;
+        this.politenessScheduler = new PolitenessScheduler(config);
 
-        RequestConfig requestConfig = RequestConfig.custom()
+        requestConfig = RequestConfig.custom()
                 .setExpectContinueEnabled(false)
                 .setCookieSpec(config.getCookiePolicy())
                 .setRedirectsEnabled(false)
@@ -134,9 +144,8 @@ public class PageFetcher {
         connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
 
         HttpClientBuilder clientBuilder = HttpClientBuilder.create();
-        if (config.getCookieStore() != null) {
-            clientBuilder.setDefaultCookieStore(config.getCookieStore());
-        }
+        cookieStore = config.getCookieStore() != null ? config.getCookieStore() : new BasicCookieStore();
+        clientBuilder.setDefaultCookieStore(cookieStore);
         clientBuilder.setDefaultRequestConfig(requestConfig);
         clientBuilder.setConnectionManager(connectionManager);
         clientBuilder.setUserAgent(config.getUserAgentString());
@@ -151,7 +160,7 @@ public class PageFetcher {
                 credentialsMap.put(authScope, credentials);
             }
 
-            HttpHost proxy = new HttpHost(config.getProxyHost(), config.getProxyPort());
+            proxy = new HttpHost(config.getProxyHost(), config.getProxyPort());
             clientBuilder.setProxy(proxy);
             logger.debug("Working through Proxy: {}", proxy.getHostName());
         }
@@ -167,7 +176,7 @@ public class PageFetcher {
             }
 
             if (!credentialsMap.isEmpty()) {
-                CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+                credentialsProvider = new BasicCredentialsProvider();
                 credentialsMap.forEach((AuthScope authscope, Credentials credentials) -> {
                     credentialsProvider.setCredentials(authscope, credentials);
                 });
@@ -259,76 +268,107 @@ public class PageFetcher {
         HttpUriRequest request = null;
         try {
             request = newHttpUriRequest(toFetchURL);
-            if (config.getPolitenessDelay() > 0) {
-                // Applying Politeness delay
-                synchronized (mutex) {
-                    long now = (new Date()).getTime();
-                    if ((now - lastFetchTime) < config.getPolitenessDelay()) {
-                        Thread.sleep(config.getPolitenessDelay() - (now - lastFetchTime));
-                    }
-                    lastFetchTime = (new Date()).getTime();
-                }
+            addConditionalHeaders(request, toFetchURL);
+            // Applying Politeness delay
+            politenessScheduler.acquire(webUrl);
+
+            String hostKey = politenessScheduler.getHostKey(webUrl);
+            long start = System.currentTimeMillis();
+            CloseableHttpResponse response;
+            try {
+                response = httpClient.execute(request);
+            } catch (IOException e) {
+                politenessScheduler.onFailure(hostKey);
+                throw e;
             }
+            onResponse(hostKey, response, System.currentTimeMillis() - start);
+            try {
+                processResponse(fetchResult, toFetchURL, request.getURI().toString(), response);
+            } catch (PageBiggerThanMaxSizeException e) {
+                //fix issue #52 - consume entity
+                response.close();
+                throw e;
+            }
+            return fetchResult;
 
-            CloseableHttpResponse response = httpClient.execute(request);
-            fetchResult.setEntity(response.getEntity());
-            fetchResult.setResponseHeaders(response.getAllHeaders());
-
-            // Setting HttpStatus
-            int statusCode = response.getStatusLine().getStatusCode();
-
-            // If Redirect ( 3xx )
-            if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY ||
-                    statusCode == HttpStatus.SC_MOVED_TEMPORARILY ||
-                    statusCode == HttpStatus.SC_MULTIPLE_CHOICES ||
-                    statusCode == HttpStatus.SC_SEE_OTHER ||
-                    statusCode == HttpStatus.SC_TEMPORARY_REDIRECT ||
-                    statusCode == 308) { // todo follow
-                // https://issues.apache.org/jira/browse/HTTPCORE-389
-
-                Header header = response.getFirstHeader(HttpHeaders.LOCATION);
-                if (header != null) {
-                    String movedToUrl =
-                            URLCanonicalizer.getCanonicalURL(header.getValue(), toFetchURL);
-                    fetchResult.setMovedToUrl(movedToUrl);
-                }
-            } else if (statusCode >= 200 && statusCode <= 299) { // is 2XX, everything looks ok
-                fetchResult.setFetchedUrl(toFetchURL);
-                String uri = request.getURI().toString();
-                if (!uri.equals(toFetchURL)) {
-                    if (!URLCanonicalizer.getCanonicalURL(uri).equals(toFetchURL)) {
-                        fetchResult.setFetchedUrl(uri);
-                    }
+        } finally { // occurs also with thrown exceptions
+            if ((fetchResult.getEntity() == null) && (request != null)) {
+                request.abort();
+            }
+        }
+    }
+
+    /**
+     * Fills the fetch result from the response: the entity, the headers and the status code,
+     * the target of a redirect, and the fetched url of a successful response.
+     *
+     * @param fetchResult the result to fill
+     * @param toFetchURL the url which was requested
+     * @param requestUri the uri of the request which was sent
+     * @param response the response
+     * @throws PageBiggerThanMaxSizeException if the response declares a content length above
+     * the maximum download size
+     * @throws IOException if the url of a redirect can not be canonicalized
+     */
+    protected void processResponse(PageFetchResult fetchResult, String toFetchURL, String requestUri,
+                                   HttpResponse response)
+            throws PageBiggerThanMaxSizeException, IOException {
+        fetchResult.setEntity(response.getEntity());
+        fetchResult.setResponseHeaders(response.getAllHeaders());
+
+        // Setting HttpStatus
+        int statusCode = response.getStatusLine().getStatusCode();
+
+        // If Redirect ( 3xx )
+        if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY ||
+                statusCode == HttpStatus.SC_MOVED_TEMPORARILY ||
+                statusCode == HttpStatus.SC_MULTIPLE_CHOICES ||
+                statusCode == HttpStatus.SC_SEE_OTHER ||
+                statusCode == HttpStatus.SC_TEMPORARY_REDIRECT ||
+                statusCode == 308) { // todo follow
+            // https://issues.apache.org/jira/browse/HTTPCORE-389
+
+            Header header = response.getFirstHeader(HttpHeaders.LOCATION);
+            if (header != null) {
+                String movedToUrl =
+                        URLCanonicalizer.getCanonicalURL(header.getValue(), toFetchURL);
+                fetchResult.setMovedToUrl(movedToUrl);
+            }
+        } else if (statusCode >= 200 && statusCode <= 299) { // is 2XX, everything looks ok
+            fetchResult.setFetchedUrl(toFetchURL);
+            if (!requestUri.equals(toFetchURL)) {
+                if (!URLCanonicalizer.getCanonicalURL(requestUri).equals(toFetchURL)) {
+                    fetchResult.setFetchedUrl(requestUri);
                 }
+            }
 
-                // Checking maximum size
-                if (fetchResult.getEntity() != null) {
-                    long size = fetchResult.getEntity().getContentLength();
-                    if (size == -1) {
-                        Header length = response.getLastHeader(HttpHeaders.CONTENT_LENGTH);
-                        if (length == null) {
-                            length = response.getLastHeader("Content-length");
-                        }
-                        if (length != null) {
-                            size = Integer.parseInt(length.getValue());
-                        }
-                    }
-                    if (size > config.getMaxDownloadSize()) {
-                        //fix issue #52 - consume entity
-                        response.close();
-                        throw new PageBiggerThanMaxSizeException(size);
-                    }
+            // Checking maximum size
+            if (fetchResult.getEntity() != null) {
+                long size = getDeclaredContentLength(response);
+                if (size > config.getMaxDownloadSize()) {
+                    throw new PageBiggerThanMaxSizeException(size);
                 }
             }
+        }
 
-            fetchResult.setStatusCode(statusCode);
-            return fetchResult;
+        fetchResult.setStatusCode(statusCode);
+    }
 
-        } finally { // occurs also with thrown exceptions
-            if ((fetchResult.getEntity() == null) && (request != null)) {
-                request.abort();
+    /**
+     * @return the content length declared by the response, or -1 if it declares none
+     */
+    protected static long getDeclaredContentLength(HttpResponse response) {
+        long size = response.getEntity() == null ? -1 : response.getEntity().getContentLength();
+        if (size == -1) {
+            Header length = response.getLastHeader(HttpHeaders.CONTENT_LENGTH);
+            if (length == null) {
+                length = response.getLastHeader("Content-length");
+            }
+            if (length != null) {
+                size = Integer.parseInt(length.getValue());
             }
         }
+        return size;
     }
 
     public synchronized void shutDown() {
@@ -349,6 +389,68 @@ public class PageFetcher {
         return new HttpGet(url);
     }
 
+    /**
+     * Lets the politeness scheduler adapt the delay of the host to a response. A 429 or 503
+     * response with a Retry-After header keeps the host waiting for that time, at most for the
+     * maximum retry after time.
+     *
+     * @param hostKey the politeness key of the host
+     * @param response the response
+     * @param latencyMillis the time the response took in milliseconds
+     */
+    protected void onResponse(String hostKey, HttpResponse response, long latencyMillis) {
+        int statusCode = response.getStatusLine().getStatusCode();
+        politenessScheduler.onResponse(hostKey, statusCode, latencyMillis);
+        if (statusCode == 429 || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+            Header header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+            long now = System.currentTimeMillis();
+            long retryAfter = PageFetchResult.parseRetryAfter(header == null ? null : header.getValue(), now);
+            if (retryAfter > 0) {
+                retryAfter = Math.min(retryAfter, config.getMaxRetryAfterSeconds() * 1000L);
+                politenessScheduler.deferHost(hostKey, now + retryAfter);
+            }
+        }
+    }
+
+    /**
+     * Makes the request conditional on the validators of the last fetched version of the page,
+     * if there is one, so that the server answers 304 Not Modified instead of sending it again.
+     *
+     * @param request the request for the url
+     * @param url the url to be fetched
+     */
+    protected void addConditionalHeaders(HttpUriRequest request, String url) {
+        if (validatorStore == null) {
+            return;
+        }
+        PageValidators validators = validatorStore.get(url);
+        if (validators == null) {
+            return;
+        }
+        if (validators.getEtag() != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, validators.getEtag());
+        }
+        if (validators.getLastModified() != null) {
+            request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, validators.getLastModified());
+        }
+    }
+
+    /**
+     * @param validatorStore the validators of the previously fetched pages, which are then
+     * fetched conditionally, or {@code null} to fetch all pages in full
+     */
+    public void setValidatorStore(ValidatorStore validatorStore) {
+        this.validatorStore = validatorStore;
+    }
+
+    /**
+     * @return the scheduler enforcing the per host politeness delay, which also exposes the
+     * number of requests waiting on each host
+     */
+    public PolitenessScheduler getPolitenessScheduler() {
+        return politenessScheduler;
+    }
+
     protected CrawlConfig getConfig() {
         return config;
     }
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.fetcher;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+
+import edu.uci.ics.crawlerbykc.crawler.Page;
+import edu.uci.ics.crawlerbykc.url.WebURL;
+import edu.uci.ics.crawlerbykc.util.Util;
+
+/**
+ * What is known about the last fetched version of a page: the validators which the server sent
+ * with it, which allow to fetch it again conditionally, a hash of its content and its links,
+ * which are followed again when the page was not modified.
+ */
+public class PageValidators {
+
+    private static final long CONTENT_HASH_SEED = 0x2545f4914f6cdd1dL;
+
+    private final String etag;
+    private final String lastModified;
+    private final long contentHash;
+    private final List<WebURL> outgoingUrls;
+
+    /**
+     * @param etag the ETag header of the page, or {@code null}
+     * @param lastModified the Last-Modified header of the page, or {@code null}
+     * @param contentHash the hash of the content of the page
+     */
+    public PageValidators(String etag, String lastModified, long contentHash) {
+        this(etag, lastModified, contentHash, Collections.emptyList());
+    }
+
+    /**
+     * @param etag the ETag header of the page, or {@code null}
+     * @param lastModified the Last-Modified header of the page, or {@code null}
+     * @param contentHash the hash of the content of the page
+     * @param outgoingUrls the links of the page to be followed
+     */
+    public PageValidators(String etag, String lastModified, long contentHash, List<WebURL> outgoingUrls) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+        this.outgoingUrls = outgoingUrls;
+    }
+
+    /**
+     * @param page a fetched page
+     * @param outgoingUrls the links of the page to be followed
+     * @return the validators of the page, taken from its response headers and content
+     */
+    public static PageValidators of(Page page, Collection<WebURL> outgoingUrls) {
+        String etag = null;
+        String lastModified = null;
+        if (page.getFetchResponseHeaders() != null) {
+            for (Header header : page.getFetchResponseHeaders()) {
+                if (header.getName().equalsIgnoreCase(HttpHeaders.ETAG)) {
+                    etag = header.getValue();
+                } else if (header.getName().equalsIgnoreCase(HttpHeaders.LAST_MODIFIED)) {
+                    lastModified = header.getValue();
+                }
+            }
+        }
+        return new PageValidators(etag, lastModified, hashContent(page.getContentBuffer()),
+                                  new ArrayList<>(outgoingUrls));
+    }
+
+    /**
+     * @return a 64 bit hash of the given content, 0 for no content
+     */
+    public static long hashContent(byte[] content) {
+        return content == null ? 0 : Util.hash64(content, CONTENT_HASH_SEED);
+    }
+
+    /**
+     * @return the same hash as {@link #hashContent(byte[])} of the remaining bytes of the given
+     *         content, 0 for no content
+     */
+    public static long hashContent(ByteBuffer content) {
+        return content == null ? 0 : Util.hash64(content, CONTENT_HASH_SEED);
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * @return the links of the page to be followed. Only their url, anchor, tag and attributes
+     *         are kept.
+     */
+    public List<WebURL> getOutgoingUrls() {
+        return outgoingUrls;
+    }
+
+    /**
+     * @return whether the server sent any validator, so that the page can be fetched
+     *         conditionally
+     */
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+}
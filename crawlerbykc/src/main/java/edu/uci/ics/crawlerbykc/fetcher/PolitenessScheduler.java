@@ -0,0 +1,375 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.fetcher;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.url.WebURL;
+
+/**
+ * Enforces the politeness delay separately for every host (or registered domain, see
+ * {@link CrawlConfig#isPolitenessPerRegisteredDomain()}).
+ *
+ * Each host keeps the time at which its next request may be sent. A caller reserves the
+ * next free slot of the host and sleeps outside of any lock until that slot is due, so
+ * requests to different hosts never wait for each other, while requests to the same host
+ * are spaced by the politeness delay.
+ */
+public class PolitenessScheduler {
+
+    /**
+     * Once the number of tracked hosts goes beyond this value, hosts whose slot has
+     * expired and that have no waiting requests are dropped, unless their delay was adapted
+     * beyond the politeness delay.
+     */
+    private static final int PURGE_THRESHOLD = 10000;
+
+    private static final long PURGE_INTERVAL = 1000;
+
+    private final CrawlConfig config;
+
+    private final ConcurrentMap<String, HostSlot> hosts = new ConcurrentHashMap<>();
+
+    private volatile long lastPurgeTime = 0;
+
+    /** The Crawl-delays of the hosts which have one, in milliseconds */
+    private final ConcurrentMap<String, Long> crawlDelays = new ConcurrentHashMap<>();
+
+    /** The rate of a host is halved when it shows signs of overload */
+    private static final double RATE_DECREASE_FACTOR = 0.5;
+
+    /** A response this many times slower than the average of its host shows overload */
+    private static final double LATENCY_INCREASE_FACTOR = 2;
+
+    /** Responses of fast hosts are only taken as slow beyond this many milliseconds more */
+    private static final long LATENCY_SLACK_MILLIS = 50;
+
+    /** The weight of a response in the moving average of the response times of its host */
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private static class HostSlot {
+        /** Earliest time at which the next request to this host may be sent */
+        volatile long nextFetchTime;
+        /** Number of requests that reserved a slot and are still waiting for it */
+        volatile int waiting;
+        /** The delay adapted to the responses of this host, or -1 before its first response */
+        volatile long adaptiveDelay = -1;
+        /** The moving average of the response times of this host, or -1 before its first one */
+        double averageLatency = -1;
+
+        /**
+         * @param delay the politeness delay, to which the host goes back once its slot is dropped
+         */
+        boolean isIdle(long now, long delay) {
+            return waiting == 0 && nextFetchTime <= now && adaptiveDelay <= delay;
+        }
+    }
+
+    public PolitenessScheduler(CrawlConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Returns the key under which the politeness delay of the given url is tracked: either
+     * its full host name or its registered domain.
+     *
+     * @param webUrl the url to be fetched
+     * @return the politeness key of the url
+     */
+    public String getHostKey(WebURL webUrl) {
+        String domain = webUrl.getDomain();
+        if (config.isPolitenessPerRegisteredDomain()) {
+            return domain;
+        }
+        String subDomain = webUrl.getSubDomain();
+        if (subDomain == null || subDomain.isEmpty()) {
+            return domain;
+        }
+        return subDomain + "." + domain;
+    }
+
+    /**
+     * Returns the delay in milliseconds that has to be kept between two requests to the
+     * given host: the politeness delay, or the delay adapted to the responses of the host with
+     * adaptive politeness, or the Crawl-delay of the host if it is longer.
+     *
+     * @param hostKey the politeness key of the host
+     * @return the delay in milliseconds
+     */
+    public long getDelay(String hostKey) {
+        long delay = config.getPolitenessDelay();
+        if (config.isAdaptivePoliteness()) {
+            HostSlot slot = hosts.get(hostKey);
+            if (slot != null && slot.adaptiveDelay >= 0) {
+                delay = slot.adaptiveDelay;
+            }
+        }
+        Long crawlDelay = crawlDelays.get(hostKey);
+        return crawlDelay == null ? delay : Math.max(delay, crawlDelay);
+    }
+
+    /**
+     * Sets the Crawl-delay of a host, usually when its robots.txt is cached.
+     *
+     * @param hostKey the politeness key of the host
+     * @param crawlDelay the Crawl-delay in milliseconds, or 0 to remove it
+     */
+    public void setCrawlDelay(String hostKey, long crawlDelay) {
+        if (crawlDelay > 0) {
+            crawlDelays.put(hostKey, crawlDelay);
+        } else {
+            crawlDelays.remove(hostKey);
+        }
+    }
+
+    /**
+     * Blocks until a request to the host of the given url may be sent.
+     *
+     * @param webUrl the url to be fetched
+     * @return the number of milliseconds the caller has waited
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public long acquire(WebURL webUrl) throws InterruptedException {
+        String hostKey = getHostKey(webUrl);
+        long now = System.currentTimeMillis();
+        long fetchTime = reserve(hostKey, now);
+        if (fetchTime < 0) {
+            return 0;
+        }
+        try {
+            long wait = fetchTime - now;
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+            return wait;
+        } finally {
+            release(hostKey);
+        }
+    }
+
+    /**
+     * Reserves the next slot for a request to the given host without waiting for it. The
+     * request counts as waiting until {@link #release(String)} is called, which callers must do
+     * once the request is sent, unless no slot was reserved.
+     *
+     * @param hostKey the politeness key of the host
+     * @param now the current time in milliseconds
+     * @return the time at which the request may be sent, or -1 if there is no politeness delay,
+     * the host is not deferred and no slot was reserved
+     */
+    public long reserve(String hostKey, long now) {
+        long delay = getDelay(hostKey);
+        if (delay <= 0) {
+            HostSlot deferred = hosts.get(hostKey);
+            if (deferred == null || deferred.nextFetchTime <= now) {
+                return -1;
+            }
+        }
+        long[] fetchTime = new long[1];
+        hosts.compute(hostKey, (key, slot) -> {
+            if (slot == null) {
+                slot = new HostSlot();
+            }
+            fetchTime[0] = Math.max(now, slot.nextFetchTime);
+            slot.nextFetchTime = fetchTime[0] + delay;
+            slot.waiting++;
+            return slot;
+        });
+        return fetchTime[0];
+    }
+
+    /**
+     * Releases a slot reserved with {@link #reserve(String, long)}, once its request is sent.
+     *
+     * @param hostKey the politeness key of the host
+     */
+    public void release(String hostKey) {
+        hosts.computeIfPresent(hostKey, (key, slot) -> {
+            slot.waiting--;
+            return slot;
+        });
+        if (hosts.size() > PURGE_THRESHOLD) {
+            purgeIdleHosts();
+        }
+    }
+
+    /**
+     * Adapts the delay of a host to one of its responses, with adaptive politeness: the rate of
+     * requests to the host grows by a tenth of the configured rate after a healthy response, and
+     * is halved after a response which shows overload. A 429 or 5xx status, or a response much
+     * slower than the average of the host, shows overload.
+     *
+     * @param hostKey the politeness key of the host
+     * @param statusCode the status code of the response
+     * @param latencyMillis the time the response took in milliseconds
+     */
+    public void onResponse(String hostKey, int statusCode, long latencyMillis) {
+        if (!config.isAdaptivePoliteness()) {
+            return;
+        }
+        hosts.compute(hostKey, (key, slot) -> {
+            if (slot == null) {
+                slot = new HostSlot();
+            }
+            boolean slow = slot.averageLatency >= 0 &&
+                           latencyMillis > LATENCY_INCREASE_FACTOR * slot.averageLatency + LATENCY_SLACK_MILLIS;
+            slot.averageLatency = slot.averageLatency < 0 ? latencyMillis :
+                                  (1 - LATENCY_WEIGHT) * slot.averageLatency + LATENCY_WEIGHT * latencyMillis;
+            slot.adaptiveDelay = adaptDelay(slot, slow || statusCode == 429 || statusCode >= 500);
+            return slot;
+        });
+    }
+
+    /**
+     * Halves the rate of requests to a host whose request failed, with adaptive politeness.
+     *
+     * @param hostKey the politeness key of the host
+     */
+    public void onFailure(String hostKey) {
+        if (!config.isAdaptivePoliteness()) {
+            return;
+        }
+        hosts.compute(hostKey, (key, slot) -> {
+            if (slot == null) {
+                slot = new HostSlot();
+            }
+            slot.adaptiveDelay = adaptDelay(slot, true);
+            return slot;
+        });
+    }
+
+    /**
+     * Sends no request to a host before the given time, with adaptive politeness. Used when the
+     * host asks to retry later.
+     *
+     * @param hostKey the politeness key of the host
+     * @param time the time in milliseconds
+     */
+    public void deferHost(String hostKey, long time) {
+        if (!config.isAdaptivePoliteness()) {
+            return;
+        }
+        hosts.compute(hostKey, (key, slot) -> {
+            if (slot == null) {
+                slot = new HostSlot();
+            }
+            slot.nextFetchTime = Math.max(slot.nextFetchTime, time);
+            return slot;
+        });
+    }
+
+    private long adaptDelay(HostSlot slot, boolean overloaded) {
+        long minDelay = config.getMinPolitenessDelay();
+        long maxDelay = config.getMaxPolitenessDelay();
+        long configuredDelay = Math.max(1, Math.max(minDelay, config.getPolitenessDelay()));
+        long delay = slot.adaptiveDelay >= 0 ? slot.adaptiveDelay : configuredDelay;
+        double rate = 1000.0 / Math.max(1, delay);
+        if (overloaded) {
+            rate *= RATE_DECREASE_FACTOR;
+        } else {
+            rate += 1000.0 / configuredDelay / 10;
+        }
+        return Math.max(minDelay, Math.min(maxDelay, Math.round(1000 / rate)));
+    }
+
+    /**
+     * @param hostKey the politeness key of the host
+     * @return the rate of requests to the host adapted to its responses, in requests per second,
+     *         or -1 if it is not adapted
+     */
+    public double getRate(String hostKey) {
+        HostSlot slot = hosts.get(hostKey);
+        return slot == null || slot.adaptiveDelay < 0 ? -1 : 1000.0 / Math.max(1, slot.adaptiveDelay);
+    }
+
+    /**
+     * @return a snapshot of the rates of requests adapted to the responses of the hosts, in
+     *         requests per second
+     */
+    public Map<String, Double> getRates() {
+        Map<String, Double> rates = new HashMap<>();
+        hosts.forEach((hostKey, slot) -> {
+            long delay = slot.adaptiveDelay;
+            if (delay >= 0) {
+                rates.put(hostKey, 1000.0 / Math.max(1, delay));
+            }
+        });
+        return rates;
+    }
+
+    /**
+     * Returns the earliest time at which a request to the given host may be sent.
+     *
+     * @param hostKey the politeness key of the host
+     * @return a time in milliseconds, which may be in the past if the host is ready now
+     */
+    public long getNextFetchTime(String hostKey) {
+        HostSlot slot = hosts.get(hostKey);
+        return slot == null ? 0 : slot.nextFetchTime;
+    }
+
+    /**
+     * @param hostKey the politeness key of the host
+     * @return the number of requests currently waiting for their turn on the given host
+     */
+    public int getWaitingCount(String hostKey) {
+        HostSlot slot = hosts.get(hostKey);
+        return slot == null ? 0 : slot.waiting;
+    }
+
+    /**
+     * @return a snapshot of the number of waiting requests for every host that has any
+     */
+    public Map<String, Integer> getWaitingCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        hosts.forEach((hostKey, slot) -> {
+            int waiting = slot.waiting;
+            if (waiting > 0) {
+                counts.put(hostKey, waiting);
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * @return the total number of requests currently waiting for their turn
+     */
+    public int getTotalWaitingCount() {
+        int total = 0;
+        for (HostSlot slot : hosts.values()) {
+            total += slot.waiting;
+        }
+        return total;
+    }
+
+    private void purgeIdleHosts() {
+        long now = System.currentTimeMillis();
+        if (now - lastPurgeTime < PURGE_INTERVAL) {
+            return;
+        }
+        lastPurgeTime = now;
+        long delay = config.getPolitenessDelay();
+        for (String hostKey : hosts.keySet()) {
+            hosts.computeIfPresent(hostKey, (key, slot) -> slot.isIdle(now, delay) ? null : slot);
+        }
+    }
+}
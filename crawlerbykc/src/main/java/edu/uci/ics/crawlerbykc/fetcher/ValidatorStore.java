@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.fetcher;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.je.OperationStatus;
+
+import edu.uci.ics.crawlerbykc.url.WebURL;
+
+/**
+ * Keeps the {@link PageValidators} of the fetched pages, keyed by url, in a database of its
+ * own. Unlike the frontier, it is kept when a crawl which is not resumable starts over, since
+ * the next crawl is the one which fetches the pages again. The doc ids of such a crawl are
+ * assigned anew, which is why the urls are the keys.
+ */
+public class ValidatorStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValidatorStore.class);
+
+    private static final String DATABASE_NAME = "Validators";
+
+    private final Environment env;
+    private final Database validatorsDB;
+
+    /**
+     * @param folder the folder of the database, created if it does not exist
+     */
+    public ValidatorStore(File folder) {
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IllegalStateException("Couldn't create the validators folder: " + folder.getAbsolutePath());
+        }
+        EnvironmentConfig envConfig = new EnvironmentConfig();
+        envConfig.setAllowCreate(true);
+        env = new Environment(folder, envConfig);
+
+        // Deferred writes, losing the validators of a crashed crawl only costs full fetches
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setAllowCreate(true);
+        dbConfig.setDeferredWrite(true);
+        validatorsDB = env.openDatabase(null, DATABASE_NAME, dbConfig);
+        if (validatorsDB.count() > 0) {
+            logger.info("Loaded the validators of {} pages of previous crawls.", validatorsDB.count());
+        }
+    }
+
+    /**
+     * @return the validators of the last fetched version of the page, or {@code null} if it
+     *         has not been fetched before
+     */
+    public PageValidators get(String url) {
+        DatabaseEntry value = new DatabaseEntry();
+        if (validatorsDB.get(null, key(url), value, null) != OperationStatus.SUCCESS) {
+            return null;
+        }
+        TupleInput input = TupleBinding.entryToInput(value);
+        String etag = input.readString();
+        String lastModified = input.readString();
+        long contentHash = input.readLong();
+        // Validators stored by earlier versions have no links
+        List<WebURL> outgoingUrls = new ArrayList<>();
+        int links = input.available() > 0 ? input.readInt() : 0;
+        for (int i = 0; i < links; i++) {
+            WebURL link = new WebURL();
+            link.setURL(input.readString());
+            link.setAnchor(input.readString());
+            link.setTag(input.readString());
+            int attributes = input.readInt();
+            if (attributes > 0) {
+                Map<String, String> attributeMap = new HashMap<>();
+                for (int j = 0; j < attributes; j++) {
+                    attributeMap.put(input.readString(), input.readString());
+                }
+                link.setAttributes(attributeMap);
+            }
+            outgoingUrls.add(link);
+        }
+        return new PageValidators(etag, lastModified, contentHash, outgoingUrls);
+    }
+
+    public void put(String url, PageValidators validators) {
+        TupleOutput output = new TupleOutput();
+        output.writeString(validators.getEtag());
+        output.writeString(validators.getLastModified());
+        output.writeLong(validators.getContentHash());
+        output.writeInt(validators.getOutgoingUrls().size());
+        for (WebURL link : validators.getOutgoingUrls()) {
+            output.writeString(link.getURL());
+            output.writeString(link.getAnchor());
+            output.writeString(link.getTag());
+            Map<String, String> attributes = link.getAttributes();
+            output.writeInt(attributes == null ? 0 : attributes.size());
+            if (attributes != null) {
+                for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                    output.writeString(attribute.getKey());
+                    output.writeString(attribute.getValue());
+                }
+            }
+        }
+        DatabaseEntry value = new DatabaseEntry();
+        TupleBinding.outputToEntry(output, value);
+        validatorsDB.put(null, key(url), value);
+    }
+
+    /**
+     * @return the number of pages with validators
+     */
+    public long size() {
+        return validatorsDB.count();
+    }
+
+    public void close() {
+        validatorsDB.close();
+        env.close();
+    }
+
+    private static DatabaseEntry key(String url) {
+        return new DatabaseEntry(url.getBytes(StandardCharsets.UTF_8));
+    }
+}
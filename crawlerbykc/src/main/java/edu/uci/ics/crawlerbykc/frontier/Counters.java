@@ -17,8 +17,14 @@
 
 package edu.uci.ics.crawlerbykc.frontier;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +42,14 @@ import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
 import edu.uci.ics.crawlerbykc.util.Util;
 
 /**
+ * Named counters of a crawl. Increments only touch a {@link LongAdder} in memory. When crawling
+ * is resumable, a snapshot of all counters is written to the statistics database in a single
+ * transaction every {@link CrawlConfig#getCounterFlushIntervalSeconds()} seconds and on
+ * {@link #close()}, so increments since the last flush are lost on a crash.
+ *
+ * Besides the reserved counters, any number of user counters can be registered, see
+ * {@link #register(String)}. They are persisted and restored the same way.
+ *
  * @author Yasser Ganjisaffar
  */
 public class Counters {
@@ -51,13 +65,15 @@ public class Counters {
     protected Environment env;
     private CrawlConfig config;
 
+    /** Serializes flushes to the statistics database */
     protected final Object mutex = new Object();
 
-    protected Map<String, Long> counterValues;
+    protected final Map<String, LongAdder> counterValues = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flusher;
 
     public Counters(Environment env, CrawlConfig config) {
         this.env = env;
-        this.counterValues = new HashMap<>();
         this.config = config;
 
     /*
@@ -83,60 +99,130 @@ public class Counters {
                 if (value.getData().length > 0) {
                     String name = new String(key.getData());
                     long counterValue = Util.byteArray2Long(value.getData());
-                    counterValues.put(name, counterValue);
+                    getCounter(name).add(counterValue);
                 }
                 result = cursor.getNext(key, value, null);
             }
             cursor.close();
             tnx.commit();
+
+            int interval = config.getCounterFlushIntervalSeconds();
+            if (interval > 0) {
+                flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "Counters flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                flusher.scheduleWithFixedDelay(() -> {
+                    try {
+                        flush();
+                    } catch (RuntimeException e) {
+                        // A failed task would not be run again
+                        logger.error("Exception flushing counters", e);
+                    }
+                }, interval, interval, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private LongAdder getCounter(String name) {
+        return counterValues.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /**
+     * Registers a user counter, or returns the one already registered under the given name.
+     * Callers on a hot path should keep the returned adder instead of incrementing by name.
+     *
+     * @param name the name of the counter, must not be one of {@link ReservedCounterNames}
+     * @return the counter
+     */
+    public LongAdder register(String name) {
+        if (ReservedCounterNames.SCHEDULED_PAGES.equals(name) ||
+            ReservedCounterNames.PROCESSED_PAGES.equals(name)) {
+            throw new IllegalArgumentException("Counter name is reserved: " + name);
         }
+        return getCounter(name);
     }
 
     public long getValue(String name) {
-        synchronized (mutex) {
-            Long value = counterValues.get(name);
-            if (value == null) {
-                return 0;
-            }
-            return value;
+        LongAdder value = counterValues.get(name);
+        if (value == null) {
+            return 0;
         }
+        return value.sum();
+    }
+
+    /**
+     * @return the current values of all counters, by name
+     */
+    public Map<String, Long> getValues() {
+        Map<String, Long> values = new TreeMap<>();
+        counterValues.forEach((name, value) -> values.put(name, value.sum()));
+        return Collections.unmodifiableMap(values);
     }
 
+    /**
+     * Sets a counter. Concurrent increments of the same counter may get lost.
+     */
     public void setValue(String name, long value) {
+        LongAdder counter = getCounter(name);
+        counter.reset();
+        counter.add(value);
+    }
+
+    public void increment(String name) {
+        increment(name, 1);
+    }
+
+    public void increment(String name, long addition) {
+        getCounter(name).add(addition);
+    }
+
+    /**
+     * Writes the current values of all counters to the statistics database, if crawling is
+     * resumable.
+     */
+    public void flush() {
+        if (statisticsDB == null) {
+            return;
+        }
         synchronized (mutex) {
             try {
-                counterValues.put(name, value);
-                if (statisticsDB != null) {
-                    Transaction txn = env.beginTransaction(null, null);
-                    statisticsDB.put(txn, new DatabaseEntry(name.getBytes()),
-                                     new DatabaseEntry(Util.long2ByteArray(value)));
-                    txn.commit();
+                Transaction txn = env.beginTransaction(null, null);
+                try {
+                    for (Map.Entry<String, LongAdder> counter : counterValues.entrySet()) {
+                        statisticsDB.put(txn, new DatabaseEntry(counter.getKey().getBytes()),
+                                         new DatabaseEntry(Util.long2ByteArray(counter.getValue().sum())));
+                    }
+                } catch (RuntimeException e) {
+                    txn.abort();
+                    throw e;
                 }
+                txn.commit();
             } catch (RuntimeException e) {
                 if (config.isHaltOnError()) {
                     throw e;
                 } else {
-                    logger.error("Exception setting value", e);
+                    logger.error("Exception flushing counters", e);
                 }
             }
         }
     }
 
-    public void increment(String name) {
-        increment(name, 1);
-    }
-
-    public void increment(String name, long addition) {
-        synchronized (mutex) {
-            long prevValue = getValue(name);
-            setValue(name, prevValue + addition);
-        }
-    }
-
     public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         try {
             if (statisticsDB != null) {
+                flush();
                 statisticsDB.close();
+                statisticsDB = null;
             }
         } catch (DatabaseException e) {
             logger.error("Exception thrown while trying to close statisticsDB", e);
@@ -17,20 +17,54 @@
 
 package edu.uci.ics.crawlerbykc.frontier;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.je.Cursor;
 import com.sleepycat.je.Database;
 import com.sleepycat.je.DatabaseConfig;
 import com.sleepycat.je.DatabaseEntry;
 import com.sleepycat.je.DatabaseException;
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.OperationStatus;
+import com.sleepycat.je.Transaction;
 
 import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.util.BloomFilter;
 import edu.uci.ics.crawlerbykc.util.Util;
 
 /**
+ * Assigns the docids of urls and remembers them in the DocIDs database.
+ *
+ * Most lookups are for urls which were never seen, or for a small set of frequently linked
+ * urls. An optional Bloom filter of all seen urls answers the former without reading the
+ * database, and an optional LRU cache answers the latter (see
+ * {@link CrawlConfig#setDocIdFilterSize(int)} and {@link CrawlConfig#setDocIdCacheSize(int)}).
+ *
+ * By default the database is keyed by the url itself. With
+ * {@link CrawlConfig#setDocIdFingerprintKeys(boolean)} it is keyed by a 64 bit fingerprint of
+ * the url instead, and every entry holds the docid plus a second, independent 64 bit
+ * fingerprint. A url whose key is taken by another url, which the second fingerprint tells
+ * apart, is stored by its full url in a separate collisions database.
+ *
+ * Urls are spread over a fixed number of lock stripes by their key, so that crawler threads
+ * only contend when they look up urls of the same stripe. Urls with the same key always share
+ * a stripe.
+ *
  * @author Yasser Ganjisaffar
  */
 
@@ -38,12 +72,54 @@ public class DocIDServer {
     private static final Logger logger = LoggerFactory.getLogger(DocIDServer.class);
 
     private final Database docIDsDB;
+    private final Database collisionsDB;
+    private final boolean fingerprintKeys;
     private static final String DATABASE_NAME = "DocIDs";
+    private static final String FINGERPRINT_DATABASE_NAME = "DocIDFingerprints";
+    private static final String COLLISIONS_DATABASE_NAME = "DocIDFingerprintCollisions";
+
+    private static final long CHECK_FINGERPRINT_SEED = 0x9e3779b97f4a7c15L;
 
-    private final Object mutex = new Object();
+    private static final int MIGRATION_BATCH_SIZE = 10000;
+
+    private static final double FILTER_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    protected static final int STRIPES = 64;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
 
     private CrawlConfig config;
-    private int lastDocID;
+    private final AtomicInteger lastDocID = new AtomicInteger();
+
+    private final BloomFilter seenUrls;
+    /** One LRU cache per stripe, guarded by the lock of the stripe */
+    private final List<Map<String, Integer>> docIdCaches;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder filterMisses = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * Creates a DocIDServer without a database, for subclasses which keep the docids
+     * elsewhere. They override {@link #lookup(String, byte[], int)},
+     * {@link #store(Transaction, String, byte[], int, int)}, {@link #getDocCount()} and
+     * {@link #close()}.
+     *
+     * @param config the crawl config
+     * @param fingerprintKeys whether {@link #getKey(String)} returns url fingerprints
+     */
+    protected DocIDServer(CrawlConfig config, boolean fingerprintKeys) {
+        this.config = config;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.fingerprintKeys = fingerprintKeys;
+        this.docIDsDB = null;
+        this.collisionsDB = null;
+        this.seenUrls = null;
+        this.docIdCaches = null;
+    }
 
     public DocIDServer(Environment env, CrawlConfig config) {
         this.config = config;
@@ -51,14 +127,241 @@ public class DocIDServer {
         dbConfig.setAllowCreate(true);
         dbConfig.setTransactional(config.isResumableCrawling());
         dbConfig.setDeferredWrite(!config.isResumableCrawling());
-        lastDocID = 0;
-        docIDsDB = env.openDatabase(null, DATABASE_NAME, dbConfig);
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        fingerprintKeys = config.isDocIdFingerprintKeys();
+        List<String> databaseNames = env.getDatabaseNames();
+        if (fingerprintKeys) {
+            docIDsDB = env.openDatabase(null, FINGERPRINT_DATABASE_NAME, dbConfig);
+            collisionsDB = env.openDatabase(null, COLLISIONS_DATABASE_NAME, dbConfig);
+            if (databaseNames.contains(DATABASE_NAME)) {
+                migrateUrlKeys(env, dbConfig);
+            }
+        } else {
+            if (databaseNames.contains(FINGERPRINT_DATABASE_NAME)) {
+                throw new IllegalStateException(
+                    "The crawl storage folder holds doc ids keyed by fingerprints, which can not be " +
+                    "converted back. Enable doc id fingerprint keys to resume this crawl.");
+            }
+            docIDsDB = env.openDatabase(null, DATABASE_NAME, dbConfig);
+            collisionsDB = null;
+        }
+        if (config.getDocIdFilterSize() > 0) {
+            seenUrls = new BloomFilter(config.getDocIdFilterSize(), FILTER_FALSE_POSITIVE_PROBABILITY);
+        } else {
+            seenUrls = null;
+        }
+        if (config.getDocIdCacheSize() > 0) {
+            int cacheSize = Math.max(1, config.getDocIdCacheSize() / STRIPES);
+            docIdCaches = new ArrayList<>(STRIPES);
+            for (int i = 0; i < STRIPES; i++) {
+                docIdCaches.add(new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                        return size() > cacheSize;
+                    }
+                });
+            }
+        } else {
+            docIdCaches = null;
+        }
         if (config.isResumableCrawling()) {
             int docCount = getDocCount();
             if (docCount > 0) {
                 logger.info("Loaded {} URLs that had been detected in previous crawl.", docCount);
-                lastDocID = docCount;
+                // Docids are assigned outside of the stripe locks, so a crash can leave gaps
+                lastDocID.set(getMaxStoredDocId());
+                if (seenUrls != null) {
+                    rebuildFilter();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the largest docid in the DocIDs and collisions databases
+     */
+    private int getMaxStoredDocId() {
+        int maxDocId = 0;
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry value = new DatabaseEntry();
+        try (Cursor cursor = docIDsDB.openCursor(null, null)) {
+            while (cursor.getNext(key, value, null) == OperationStatus.SUCCESS) {
+                if (value.getSize() == 0) {
+                    continue;
+                }
+                int docId = fingerprintKeys ? TupleBinding.entryToInput(value).readInt()
+                                            : Util.byteArray2Int(value.getData());
+                maxDocId = Math.max(maxDocId, docId);
+            }
+        }
+        if (collisionsDB != null) {
+            try (Cursor cursor = collisionsDB.openCursor(null, null)) {
+                while (cursor.getNext(key, value, null) == OperationStatus.SUCCESS) {
+                    if (value.getSize() > 0) {
+                        maxDocId = Math.max(maxDocId, Util.byteArray2Int(value.getData()));
+                    }
+                }
+            }
+        }
+        return maxDocId;
+    }
+
+    /**
+     * Adds all the urls of the DocIDs database to the Bloom filter.
+     */
+    private void rebuildFilter() {
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry value = new DatabaseEntry();
+        // Only the keys are needed
+        value.setPartial(0, 0, true);
+        try (Cursor cursor = docIDsDB.openCursor(null, null)) {
+            while (cursor.getNext(key, value, null) == OperationStatus.SUCCESS) {
+                seenUrls.put(key.getData());
+            }
+        }
+    }
+
+    /**
+     * Copies the url keyed database of a previous crawl into the fingerprint keyed one and
+     * removes it. An interrupted migration is completed on the next start.
+     */
+    private void migrateUrlKeys(Environment env, DatabaseConfig dbConfig) {
+        logger.info("Migrating the doc ids of the previous crawl to fingerprint keys.");
+        Database urlKeysDB = env.openDatabase(null, DATABASE_NAME, dbConfig);
+        long migrated = 0;
+        try {
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry value = new DatabaseEntry();
+            Transaction txn = beginTransaction(env);
+            try (Cursor cursor = urlKeysDB.openCursor(null, null)) {
+                while (cursor.getNext(key, value, null) == OperationStatus.SUCCESS) {
+                    // Keys were written with the platform charset
+                    String url = new String(key.getData());
+                    byte[] urlKey = getKey(url);
+                    store(txn, url, urlKey, getStripe(urlKey), Util.byteArray2Int(value.getData()));
+                    if (++migrated % MIGRATION_BATCH_SIZE == 0) {
+                        commit(txn);
+                        txn = beginTransaction(env);
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (txn != null) {
+                    txn.abort();
+                }
+                throw e;
             }
+            commit(txn);
+        } finally {
+            urlKeysDB.close();
+        }
+        env.removeDatabase(null, DATABASE_NAME);
+        logger.info("Migrated {} doc ids to fingerprint keys.", migrated);
+    }
+
+    private Transaction beginTransaction(Environment env) {
+        return config.isResumableCrawling() ? env.beginTransaction(null, null) : null;
+    }
+
+    private static void commit(Transaction txn) {
+        if (txn != null) {
+            txn.commit();
+        }
+    }
+
+    /**
+     * @param url the url
+     * @return the key of the url in the DocIDs database
+     */
+    protected byte[] getKey(String url) {
+        if (fingerprintKeys) {
+            return Util.long2ByteArray(Util.hash64(url.getBytes(StandardCharsets.UTF_8), 0));
+        }
+        return url.getBytes();
+    }
+
+    protected static long getCheckFingerprint(String url) {
+        return Util.hash64(url.getBytes(StandardCharsets.UTF_8), CHECK_FINGERPRINT_SEED);
+    }
+
+    /**
+     * Reads the docid of a url from the database. Callers hold the lock of the stripe.
+     *
+     * @param url the url
+     * @param key the key of the url, see {@link #getKey(String)}
+     * @param stripe the lock stripe of the url
+     * @return the docid, or -1 if the url is not in the database
+     */
+    protected int lookup(String url, byte[] key, int stripe) {
+        DatabaseEntry value = new DatabaseEntry();
+        OperationStatus result = docIDsDB.get(null, new DatabaseEntry(key), value, null);
+        if ((result != OperationStatus.SUCCESS) || (value.getData().length == 0)) {
+            return -1;
+        }
+        if (!fingerprintKeys) {
+            return Util.byteArray2Int(value.getData());
+        }
+
+        TupleInput input = TupleBinding.entryToInput(value);
+        int docId = input.readInt();
+        if (input.readLong() == getCheckFingerprint(url)) {
+            return docId;
+        }
+        // The key belongs to another url
+        result = collisionsDB.get(null, new DatabaseEntry(url.getBytes(StandardCharsets.UTF_8)),
+                                  value, null);
+        if ((result == OperationStatus.SUCCESS) && (value.getData().length > 0)) {
+            return Util.byteArray2Int(value.getData());
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the docid of a url, which is not in the database yet, to the database. Callers
+     * hold the lock of the stripe.
+     *
+     * @param txn the transaction to write in, or null
+     * @param url the url
+     * @param key the key of the url, see {@link #getKey(String)}
+     * @param stripe the lock stripe of the url
+     * @param docId the docid of the url
+     */
+    protected void store(Transaction txn, String url, byte[] key, int stripe, int docId) {
+        if (!fingerprintKeys) {
+            docIDsDB.put(txn, new DatabaseEntry(key), new DatabaseEntry(Util.int2ByteArray(docId)));
+            return;
+        }
+
+        long checkFingerprint = getCheckFingerprint(url);
+        TupleOutput output = new TupleOutput();
+        output.writeInt(docId);
+        output.writeLong(checkFingerprint);
+        DatabaseEntry value = new DatabaseEntry();
+        TupleBinding.outputToEntry(output, value);
+        DatabaseEntry keyEntry = new DatabaseEntry(key);
+        if (docIDsDB.putNoOverwrite(txn, keyEntry, value) == OperationStatus.KEYEXIST) {
+            docIDsDB.get(txn, keyEntry, value, null);
+            TupleInput input = TupleBinding.entryToInput(value);
+            input.readInt();
+            if (input.readLong() != checkFingerprint) {
+                logger.debug("Fingerprint collision for: {}", url);
+                collisionsDB.put(txn, new DatabaseEntry(url.getBytes(StandardCharsets.UTF_8)),
+                                 new DatabaseEntry(Util.int2ByteArray(docId)));
+            }
+        }
+    }
+
+    private static int getStripe(byte[] key) {
+        return (Arrays.hashCode(key) & Integer.MAX_VALUE) % STRIPES;
+    }
+
+    private void remember(String url, byte[] key, int stripe, int docId) {
+        if (seenUrls != null) {
+            seenUrls.put(key);
+        }
+        if (docIdCaches != null) {
+            docIdCaches.get(stripe).put(url, docId);
         }
     }
 
@@ -69,63 +372,200 @@ public class DocIDServer {
      * @return the docid of the url if it is seen before. Otherwise -1 is returned.
      */
     public int getDocId(String url) {
-        synchronized (mutex) {
-            OperationStatus result = null;
-            DatabaseEntry value = new DatabaseEntry();
-            try {
-                DatabaseEntry key = new DatabaseEntry(url.getBytes());
-                result = docIDsDB.get(null, key, value, null);
+        byte[] key = getKey(url);
+        int stripe = getStripe(key);
+        locks[stripe].lock();
+        try {
+            return getDocId(url, key, stripe);
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
 
-            } catch (RuntimeException e) {
-                if (config.isHaltOnError()) {
-                    throw e;
-                } else {
-                    logger.error("Exception thrown while getting DocID", e);
-                    return -1;
-                }
+    /**
+     * Returns the docid of an already seen url. Callers hold the lock of the stripe.
+     */
+    private int getDocId(String url, byte[] key, int stripe) {
+        lookups.increment();
+        if (docIdCaches != null) {
+            Integer docId = docIdCaches.get(stripe).get(url);
+            if (docId != null) {
+                cacheHits.increment();
+                return docId;
             }
+        }
+        if (seenUrls != null && !seenUrls.mightContain(key)) {
+            filterMisses.increment();
+            return -1;
+        }
 
-            if ((result == OperationStatus.SUCCESS) && (value.getData().length > 0)) {
-                return Util.byteArray2Int(value.getData());
+        int docId;
+        try {
+            docId = lookup(url, key, stripe);
+        } catch (RuntimeException e) {
+            if (config.isHaltOnError()) {
+                throw e;
+            } else {
+                logger.error("Exception thrown while getting DocID", e);
+                return -1;
             }
+        }
 
-            return -1;
+        if (docId != -1) {
+            if (docIdCaches != null) {
+                docIdCaches.get(stripe).put(url, docId);
+            }
+            return docId;
         }
+
+        if (seenUrls != null) {
+            falsePositives.increment();
+        }
+        return -1;
     }
 
     public int getNewDocID(String url) {
-        synchronized (mutex) {
+        byte[] key = getKey(url);
+        int stripe = getStripe(key);
+        locks[stripe].lock();
+        try {
+            return getOrCreateDocId(url, key, stripe, false);
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Returns the docids of the given urls, like {@link #getDocId(String)}. Each lock stripe is
+     * taken once for all of its urls.
+     *
+     * @param urls the urls
+     * @return the docid of every url, or -1 if it was not seen before, in the iteration order of
+     *         the given urls
+     */
+    public Map<String, Integer> getDocIds(Collection<String> urls) {
+        return mapByStripe(urls, this::getDocId);
+    }
+
+    /**
+     * Returns the docids of the given urls, assigning new docids to the urls which were not
+     * seen before. Each lock stripe is taken once for all of its urls.
+     *
+     * @param urls the urls
+     * @return the docid of every url, in the iteration order of the given urls
+     */
+    public Map<String, Integer> getOrCreateDocIds(Collection<String> urls) {
+        return mapByStripe(urls, (url, key, stripe) -> getOrCreateDocId(url, key, stripe, false));
+    }
+
+    /**
+     * Assigns new docids to the given urls which were not seen before. Of several callers which
+     * pass the same new url, only one gets its docid. Each lock stripe is taken once for all of
+     * its urls.
+     *
+     * @param urls the urls
+     * @return the new docids, in the iteration order of the given urls, without the urls which
+     *         were seen before
+     */
+    public Map<String, Integer> createDocIds(Collection<String> urls) {
+        Map<String, Integer> docIds =
+            mapByStripe(urls, (url, key, stripe) -> getOrCreateDocId(url, key, stripe, true));
+        docIds.values().removeIf(docId -> docId < 0);
+        return docIds;
+    }
+
+    /**
+     * Looks up or assigns the docid of a url. Callers hold the lock of the stripe.
+     */
+    private interface StripeFunction {
+        int apply(String url, byte[] key, int stripe);
+    }
+
+    /**
+     * Applies the function to every distinct url, holding the lock of its stripe. Each lock
+     * stripe is taken once for all of its urls.
+     */
+    private Map<String, Integer> mapByStripe(Collection<String> urls, StripeFunction function) {
+        Map<String, Integer> docIds = new LinkedHashMap<>();
+        List<List<String>> urlsByStripe = new ArrayList<>(STRIPES);
+        List<List<byte[]>> keysByStripe = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            urlsByStripe.add(null);
+            keysByStripe.add(null);
+        }
+        for (String url : urls) {
+            if (docIds.put(url, -1) != null) {
+                continue;
+            }
+            byte[] key = getKey(url);
+            int stripe = getStripe(key);
+            if (urlsByStripe.get(stripe) == null) {
+                urlsByStripe.set(stripe, new ArrayList<>());
+                keysByStripe.set(stripe, new ArrayList<>());
+            }
+            urlsByStripe.get(stripe).add(url);
+            keysByStripe.get(stripe).add(key);
+        }
+
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            List<String> stripeUrls = urlsByStripe.get(stripe);
+            if (stripeUrls == null) {
+                continue;
+            }
+            List<byte[]> stripeKeys = keysByStripe.get(stripe);
+            locks[stripe].lock();
             try {
-                // Make sure that we have not already assigned a docid for this URL
-                int docID = getDocId(url);
-                if (docID > 0) {
-                    return docID;
+                for (int i = 0; i < stripeUrls.size(); i++) {
+                    String url = stripeUrls.get(i);
+                    docIds.put(url, function.apply(url, stripeKeys.get(i), stripe));
                 }
+            } finally {
+                locks[stripe].unlock();
+            }
+        }
+        return docIds;
+    }
 
-                ++lastDocID;
-                docIDsDB.put(null, new DatabaseEntry(url.getBytes()),
-                             new DatabaseEntry(Util.int2ByteArray(lastDocID)));
-                return lastDocID;
-            } catch (RuntimeException e) {
-                if (config.isHaltOnError()) {
-                    throw e;
-                } else {
-                    logger.error("Exception thrown while getting new DocID", e);
-                    return -1;
-                }
+    /**
+     * Callers hold the lock of the stripe.
+     *
+     * @param onlyNew whether to return -1 instead of the docid of a url which was seen before
+     */
+    private int getOrCreateDocId(String url, byte[] key, int stripe, boolean onlyNew) {
+        try {
+            // Make sure that we have not already assigned a docid for this URL
+            int docID = getDocId(url, key, stripe);
+            if (docID > 0) {
+                return onlyNew ? -1 : docID;
+            }
+
+            int newDocID = lastDocID.incrementAndGet();
+            store(null, url, key, stripe, newDocID);
+            remember(url, key, stripe, newDocID);
+            return newDocID;
+        } catch (RuntimeException e) {
+            if (config.isHaltOnError()) {
+                throw e;
+            } else {
+                logger.error("Exception thrown while getting new DocID", e);
+                return -1;
             }
         }
     }
 
     public void addUrlAndDocId(String url, int docId) {
-        synchronized (mutex) {
-            if (docId <= lastDocID) {
+        byte[] key = getKey(url);
+        int stripe = getStripe(key);
+        locks[stripe].lock();
+        try {
+            int lastId = lastDocID.get();
+            if (docId <= lastId) {
                 throw new IllegalArgumentException(
-                    "Requested doc id: " + docId + " is not larger than: " + lastDocID);
+                    "Requested doc id: " + docId + " is not larger than: " + lastId);
             }
 
             // Make sure that we have not already assigned a docid for this URL
-            int prevDocid = getDocId(url);
+            int prevDocid = getDocId(url, key, stripe);
             if (prevDocid > 0) {
                 if (prevDocid == docId) {
                     return;
@@ -133,9 +573,11 @@ public class DocIDServer {
                 throw new IllegalArgumentException("Doc id: " + prevDocid + " is already assigned to URL: " + url);
             }
 
-            docIDsDB.put(null, new DatabaseEntry(url.getBytes()),
-                         new DatabaseEntry(Util.int2ByteArray(docId)));
-            lastDocID = docId;
+            store(null, url, key, stripe, docId);
+            remember(url, key, stripe, docId);
+            lastDocID.accumulateAndGet(docId, Math::max);
+        } finally {
+            locks[stripe].unlock();
         }
     }
 
@@ -143,18 +585,55 @@ public class DocIDServer {
         return getDocId(url) != -1;
     }
 
-    public final int getDocCount() {
+    public int getDocCount() {
         try {
-            return (int) docIDsDB.count();
+            long count = docIDsDB.count();
+            if (collisionsDB != null) {
+                count += collisionsDB.count();
+            }
+            return (int) count;
         } catch (DatabaseException e) {
             logger.error("Exception thrown while getting DOC Count", e);
             return -1;
         }
     }
 
+    /**
+     * @return the number of docid lookups
+     */
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return the number of lookups answered by the LRU cache
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return the number of lookups the Bloom filter answered as never seen, without
+     * reading the database
+     */
+    public long getFilterMisses() {
+        return filterMisses.sum();
+    }
+
+    /**
+     * @return the number of lookups the Bloom filter let through to the database for urls
+     * which turned out not to be seen before
+     */
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
     public void close() {
         try {
             docIDsDB.close();
+            if (collisionsDB != null) {
+                collisionsDB.close();
+            }
         } catch (DatabaseException e) {
             logger.error("Exception thrown while closing DocIDServer", e);
         }
@@ -17,7 +17,18 @@
 
 package edu.uci.ics.crawlerbykc.frontier;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,42 +47,94 @@ public class Frontier {
     protected static final Logger logger = LoggerFactory.getLogger(Frontier.class);
 
     private static final String DATABASE_NAME = "PendingURLsDB";
-    private static final int IN_PROCESS_RESCHEDULE_BATCH_SIZE = 100;
+
+    /** The most times a url is deferred on the request of its server before it is given up */
+    private static final int MAX_DEFERRALS = 5;
+
+    /** The longest backoff before a retry, however many attempts failed before */
+    private static final long MAX_RETRY_DELAY_MILLIS = 3600 * 1000L;
+
+    private static class RetriedURL {
+        final WebURL url;
+        /** The number of times the url was deferred or retried */
+        int attempts;
+        /** The time before which the url may not be fetched, or 0 if it is back in the queues */
+        long notBefore;
+
+        RetriedURL(WebURL url, int attempts, long notBefore) {
+            this.url = url;
+            this.attempts = attempts;
+            this.notBefore = notBefore;
+        }
+    }
+
     private final CrawlConfig config;
     protected WorkQueues workQueues;
 
     protected InProcessPagesDB inProcessPages;
 
-    protected final Object mutex = new Object();
-    protected final Object waitingList = new Object();
+    /**
+     * Guards the queues. Crawler threads waiting for urls wait on its urlsAvailable condition,
+     * so that no wake-up can get lost between finding the queues empty and starting to wait.
+     * A lock rather than a monitor, so that waiting virtual threads do not pin their carrier.
+     */
+    protected final ReentrantLock mutex = new ReentrantLock();
+
+    protected final Condition urlsAvailable = mutex.newCondition();
 
-    protected boolean isFinished = false;
+    /** The number of crawler threads waiting on urlsAvailable */
+    protected int waitingThreads;
+
+    protected volatile boolean isFinished = false;
 
     protected long scheduledPages;
 
     protected Counters counters;
 
+    /** Queues the visited pages for their revisits when recrawling, otherwise {@code null} */
+    protected RecrawlScheduler recrawlScheduler;
+
+    /** The deferred urls which may not be fetched yet, the earliest first. Guarded by mutex. */
+    private final PriorityQueue<RetriedURL> delayedURLs =
+        new PriorityQueue<>(Comparator.comparingLong((RetriedURL retried) -> retried.notBefore));
+
+    /**
+     * The urls which were deferred or retried and have not been processed since, by docid.
+     * Written while holding the mutex.
+     */
+    private final Map<Integer, RetriedURL> retriedURLs = new ConcurrentHashMap<>();
+
+    /** The number of retries of the pages of each host. Guarded by mutex. */
+    private final Map<String, Integer> hostRetries = new HashMap<>();
+
+    /** Stores the retried urls when crawling is resumable, otherwise {@code null} */
+    protected RetriesDB retriesDB;
+
     public Frontier(Environment env, CrawlConfig config) {
         this.config = config;
         this.counters = new Counters(env, config);
+        this.recrawlScheduler = config.isRecrawling() ? new RecrawlScheduler(config) : null;
         try {
-            workQueues = new WorkQueues(env, DATABASE_NAME, config.isResumableCrawling());
+            if (config.isInMemoryStorage()) {
+                workQueues = new InMemoryWorkQueues();
+            } else if (config.getFrontierBufferSize() > 0 && !config.isHostPartitionedFrontier()) {
+                workQueues = new TieredWorkQueues(env, DATABASE_NAME, config.isResumableCrawling(),
+                                                  config.getFrontierBufferSize());
+            } else {
+                workQueues = new WorkQueues(env, DATABASE_NAME, config.isResumableCrawling());
+            }
             if (config.isResumableCrawling()) {
                 scheduledPages = counters.getValue(Counters.ReservedCounterNames.SCHEDULED_PAGES);
-                inProcessPages = new InProcessPagesDB(env);
-                long numPreviouslyInProcessPages = inProcessPages.getLength();
-                if (numPreviouslyInProcessPages > 0) {
-                    logger.info("Rescheduling {} URLs from previous crawl.",
-                                numPreviouslyInProcessPages);
-                    scheduledPages -= numPreviouslyInProcessPages;
-
-                    List<WebURL> urls = inProcessPages.get(IN_PROCESS_RESCHEDULE_BATCH_SIZE);
-                    while (!urls.isEmpty()) {
-                        scheduleAll(urls);
-                        inProcessPages.delete(urls.size());
-                        urls = inProcessPages.get(IN_PROCESS_RESCHEDULE_BATCH_SIZE);
-                    }
+                inProcessPages = new InProcessPagesDB(env,
+                                                      config.getInProcessLeaseSeconds() * 1000L);
+                // The crawlers which held these pages are gone, so all of their leases are
+                // considered expired
+                List<WebURL> requeued = inProcessPages.requeueExpired(workQueues, Long.MAX_VALUE);
+                if (!requeued.isEmpty()) {
+                    logger.info("Rescheduled {} URLs from previous crawl.", requeued.size());
                 }
+                retriesDB = new RetriesDB(env);
+                loadRetries();
             } else {
                 inProcessPages = null;
                 scheduledPages = 0;
@@ -84,85 +147,367 @@ public class Frontier {
 
     public void scheduleAll(List<WebURL> urls) {
         int maxPagesToFetch = config.getMaxPagesToFetch();
-        synchronized (mutex) {
-            int newScheduledPage = 0;
-            for (WebURL url : urls) {
-                if ((maxPagesToFetch > 0) &&
-                    ((scheduledPages + newScheduledPage) >= maxPagesToFetch)) {
-                    break;
-                }
+        mutex.lock();
+        try {
+            List<WebURL> toEnqueue = urls;
+            if ((maxPagesToFetch > 0) && ((scheduledPages + urls.size()) > maxPagesToFetch)) {
+                toEnqueue = urls.subList(0, (int) Math.max(0, maxPagesToFetch - scheduledPages));
+            }
 
+            int newScheduledPage = 0;
+            if (!toEnqueue.isEmpty()) {
                 try {
-                    workQueues.put(url);
-                    newScheduledPage++;
+                    enqueueAll(toEnqueue);
+                    newScheduledPage = toEnqueue.size();
                 } catch (DatabaseException e) {
-                    logger.error("Error while putting the url in the work queue", e);
+                    logger.error("Error while putting the urls in the work queue", e);
                 }
             }
             if (newScheduledPage > 0) {
                 scheduledPages += newScheduledPage;
                 counters.increment(Counters.ReservedCounterNames.SCHEDULED_PAGES, newScheduledPage);
+                signalWaiters(newScheduledPage);
             }
-            synchronized (waitingList) {
-                waitingList.notifyAll();
-            }
+        } finally {
+            mutex.unlock();
         }
     }
 
     public void schedule(WebURL url) {
         int maxPagesToFetch = config.getMaxPagesToFetch();
-        synchronized (mutex) {
+        mutex.lock();
+        try {
             try {
                 if (maxPagesToFetch < 0 || scheduledPages < maxPagesToFetch) {
-                    workQueues.put(url);
+                    enqueue(url);
                     scheduledPages++;
                     counters.increment(Counters.ReservedCounterNames.SCHEDULED_PAGES);
+                    signalWaiters(1);
                 }
             } catch (DatabaseException e) {
                 logger.error("Error while putting the url in the work queue", e);
             }
+        } finally {
+            mutex.unlock();
         }
     }
 
+    /**
+     * Moves the pages whose revisit is due into the queues. Revisits do not count against the
+     * maximum number of pages to fetch, which limits the distinct pages of the crawl.
+     *
+     * @return the number of pages which were queued
+     */
+    public int scheduleDueRevisits() {
+        if (recrawlScheduler == null) {
+            return 0;
+        }
+        List<WebURL> due = recrawlScheduler.pollDue(System.currentTimeMillis());
+        if (due.isEmpty()) {
+            return 0;
+        }
+        mutex.lock();
+        try {
+            try {
+                enqueueAll(due);
+                signalWaiters(due.size());
+            } catch (DatabaseException e) {
+                logger.error("Error while putting the revisited urls in the work queue", e);
+            }
+        } finally {
+            mutex.unlock();
+        }
+        return due.size();
+    }
+
+    /**
+     * Queues a url again once the given time has come, for instance when its server asked to
+     * retry later. Deferred urls do not count against the maximum number of pages to fetch
+     * again. The url is no longer in process then, but it is not counted as processed either.
+     *
+     * @param url the url to be fetched later
+     * @param notBefore the time in milliseconds before which the url may not be fetched
+     * @return {@code false} if the url was deferred or retried too often already and is given up
+     */
+    public boolean defer(WebURL url, long notBefore) {
+        mutex.lock();
+        try {
+            RetriedURL retried = retriedURLs.get(url.getDocid());
+            int attempts = retried == null ? 0 : retried.attempts;
+            if (attempts >= Math.max(MAX_DEFERRALS, config.getMaxFetchRetries())) {
+                return false;
+            }
+            delay(url, attempts + 1, notBefore);
+            return true;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Queues a url whose fetch failed transiently again after an exponential backoff with
+     * jitter: the retry delay doubled for every attempt before, randomly shortened by up to
+     * half so that the retries of many urls which failed together spread out. Retries do not
+     * count against the maximum number of pages to fetch again. As with
+     * {@link #defer(WebURL, long)}, the url is no longer in process then.
+     *
+     * @param url the url to be fetched again
+     * @param hostKey the politeness key of the host of the url, whose retries are capped
+     * @return {@code false} if the url or its host was retried too often already and the url
+     *         is given up
+     */
+    public boolean retry(WebURL url, String hostKey) {
+        mutex.lock();
+        try {
+            RetriedURL retried = retriedURLs.get(url.getDocid());
+            int attempts = retried == null ? 0 : retried.attempts;
+            if (attempts >= config.getMaxFetchRetries() ||
+                hostRetries.getOrDefault(hostKey, 0) >= config.getMaxRetriesPerHost()) {
+                return false;
+            }
+            hostRetries.merge(hostKey, 1, Integer::sum);
+            long backoff = Math.min((long) config.getRetryDelayMillis() << Math.min(attempts, 30),
+                                    MAX_RETRY_DELAY_MILLIS);
+            backoff -= ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            delay(url, attempts + 1, System.currentTimeMillis() + backoff);
+            return true;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Ends the processing of an in-process url and adds it to the delay queue. Callers hold the
+     * frontier mutex, so that the lease is gone before another crawler can claim the url again.
+     */
+    private void delay(WebURL url, int attempts, long notBefore) {
+        releaseLease(url);
+        RetriedURL retried = new RetriedURL(url, attempts, notBefore);
+        retriedURLs.put(url.getDocid(), retried);
+        delayedURLs.add(retried);
+        store(retried);
+        if (waitingThreads > 0) {
+            // Let a waiting thread wait for this url too
+            urlsAvailable.signal();
+        }
+    }
+
+    /**
+     * Moves the deferred urls whose time has come to the queues. Callers hold the frontier
+     * mutex.
+     *
+     * @param now the current time in milliseconds
+     */
+    protected void releaseDelayedURLs(long now) {
+        if (delayedURLs.isEmpty() || delayedURLs.peek().notBefore > now) {
+            return;
+        }
+        List<WebURL> due = new ArrayList<>();
+        while (!delayedURLs.isEmpty() && delayedURLs.peek().notBefore <= now) {
+            RetriedURL retried = delayedURLs.poll();
+            retried.notBefore = 0;
+            store(retried);
+            due.add(retried.url);
+        }
+        try {
+            enqueueAll(due);
+            signalWaiters(due.size());
+        } catch (DatabaseException e) {
+            logger.error("Error while putting the deferred urls in the work queue", e);
+        }
+    }
+
+    private void store(RetriedURL retried) {
+        if (retriesDB != null) {
+            try {
+                retriesDB.put(new RetriesDB.Retry(retried.url, retried.attempts, retried.notBefore));
+            } catch (DatabaseException e) {
+                logger.error("Error while storing the retry of {}", retried.url.getURL(), e);
+            }
+        }
+    }
+
+    /**
+     * Restores the retries of the previous crawl: the attempts of the retried urls, and the
+     * delay queue.
+     */
+    private void loadRetries() {
+        for (RetriesDB.Retry retry : retriesDB.getAll()) {
+            RetriedURL retried = new RetriedURL(retry.url, retry.attempts, retry.notBefore);
+            retriedURLs.put(retry.url.getDocid(), retried);
+            if (retried.notBefore > 0) {
+                delayedURLs.add(retried);
+            }
+        }
+        if (!delayedURLs.isEmpty()) {
+            logger.info("Loaded {} URLs to be retried from previous crawl.", delayedURLs.size());
+        }
+    }
+
+    /**
+     * Callers hold the frontier mutex.
+     *
+     * @param now the current time in milliseconds
+     * @return the time until the first deferred url is due in milliseconds, 0 if there is none
+     */
+    protected long getDelayedURLsTimeout(long now) {
+        return delayedURLs.isEmpty() ? 0 : Math.max(1, delayedURLs.peek().notBefore - now);
+    }
+
+    /**
+     * @return the number of deferred urls which may not be fetched yet
+     */
+    public int getNumberOfDelayedURLs() {
+        mutex.lock();
+        try {
+            return delayedURLs.size();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * @return the scheduler of the revisits, or {@code null} if not recrawling
+     */
+    public RecrawlScheduler getRecrawlScheduler() {
+        return recrawlScheduler;
+    }
+
+    /**
+     * Adds a single url to the queue of pages to be crawled. Callers hold the frontier mutex
+     * and take care of the scheduled pages bookkeeping.
+     *
+     * @param url the url to be queued
+     */
+    protected void enqueue(WebURL url) {
+        workQueues.put(url);
+    }
+
+    /**
+     * Adds the given urls to the queue of pages to be crawled, all in one transaction.
+     * Callers hold the frontier mutex and take care of the scheduled pages bookkeeping.
+     *
+     * @param urls the urls to be queued
+     */
+    protected void enqueueAll(List<WebURL> urls) {
+        workQueues.putAll(urls);
+    }
+
+    /**
+     * Wakes up as many waiting crawler threads as are needed to take the given number of new
+     * urls, rather than all of them. Callers hold the frontier mutex.
+     *
+     * @param urls the number of urls which became available
+     */
+    protected void signalWaiters(int urls) {
+        int batchSize = Math.max(1, config.getBatchReadSize());
+        int batches = (urls + batchSize - 1) / batchSize;
+        for (int i = Math.min(batches, waitingThreads); i > 0; i--) {
+            urlsAvailable.signal();
+        }
+    }
+
+    /**
+     * Waits on urlsAvailable until urls are signalled, the crawl is finished or the
+     * timeout has passed. Callers hold the frontier mutex.
+     *
+     * @param timeout the maximum time to wait in milliseconds, 0 to wait until signalled
+     */
+    protected void awaitURLs(long timeout) {
+        waitingThreads++;
+        try {
+            if (timeout == 0) {
+                urlsAvailable.await();
+            } else {
+                urlsAvailable.await(timeout, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException ignored) {
+            // Do nothing
+        } finally {
+            waitingThreads--;
+        }
+    }
+
+    /**
+     * Hands out up to max urls, waiting until there are some. Returns without urls only when
+     * the crawl is finished.
+     */
     public void getNextURLs(int max, List<WebURL> result) {
-        while (true) {
-            synchronized (mutex) {
-                if (isFinished) {
-                    return;
-                }
+        mutex.lock();
+        try {
+            while (!isFinished) {
+                releaseDelayedURLs(System.currentTimeMillis());
+                List<WebURL> claimed = Collections.emptyList();
                 try {
-                    List<WebURL> curResults = workQueues.get(max);
-                    workQueues.delete(curResults.size());
-                    if (inProcessPages != null) {
-                        for (WebURL curPage : curResults) {
-                            inProcessPages.put(curPage);
-                        }
-                    }
-                    result.addAll(curResults);
+                    claimed = workQueues.claim(max, inProcessPages);
                 } catch (DatabaseException e) {
                     logger.error("Error while getting next urls", e);
                 }
 
-                if (result.size() > 0) {
+                if (!claimed.isEmpty()) {
+                    result.addAll(claimed);
+                    if (claimed.size() == max && waitingThreads > 0) {
+                        // There may be more, pass them on to the next waiting thread
+                        urlsAvailable.signal();
+                    }
                     return;
                 }
+                awaitURLs(getDelayedURLsTimeout(System.currentTimeMillis()));
             }
+        } finally {
+            mutex.unlock();
+        }
+    }
 
+    /**
+     * Moves the in-process pages whose lease has expired back to the queue, so that pages
+     * assigned to a crawler which died or hangs are eventually crawled.
+     *
+     * @return the number of pages which were moved back to the queue
+     */
+    public int requeueExpiredLeases() {
+        if (inProcessPages == null) {
+            return 0;
+        }
+        mutex.lock();
+        try {
             try {
-                synchronized (waitingList) {
-                    waitingList.wait();
+                List<WebURL> requeued =
+                    inProcessPages.requeueExpired(workQueues, System.currentTimeMillis());
+                if (!requeued.isEmpty()) {
+                    logger.warn("Rescheduling {} URLs whose lease has expired.", requeued.size());
+                    onRequeued(requeued);
+                    signalWaiters(requeued.size());
                 }
-            } catch (InterruptedException ignored) {
-                // Do nothing
-            }
-            if (isFinished) {
-                return;
+                return requeued.size();
+            } catch (DatabaseException e) {
+                logger.error("Error while rescheduling expired urls", e);
+                return 0;
             }
+        } finally {
+            mutex.unlock();
         }
     }
 
+    /**
+     * Called, while holding the frontier mutex, with the urls which were moved from the
+     * in-process pages back to the work queues database.
+     *
+     * @param urls the requeued urls
+     */
+    protected void onRequeued(List<WebURL> urls) {
+        // Nothing to do, they are already in the work queues
+    }
+
     public void setProcessed(WebURL webURL) {
         counters.increment(Counters.ReservedCounterNames.PROCESSED_PAGES);
+        if (!retriedURLs.isEmpty()) {
+            forgetAttempts(webURL);
+        }
+        releaseLease(webURL);
+    }
+
+    private void releaseLease(WebURL webURL) {
         if (inProcessPages != null) {
             if (!inProcessPages.removeURL(webURL)) {
                 logger.warn("Could not remove: {} from list of processed pages.", webURL.getURL());
@@ -170,6 +515,41 @@ public class Frontier {
         }
     }
 
+    /**
+     * Forgets the attempts of a url once it was processed without being deferred or retried
+     * again.
+     */
+    private void forgetAttempts(WebURL webURL) {
+        mutex.lock();
+        try {
+            RetriedURL retried = retriedURLs.get(webURL.getDocid());
+            if (retried != null && retried.notBefore == 0) {
+                retriedURLs.remove(webURL.getDocid());
+                if (retriesDB != null) {
+                    retriesDB.delete(webURL.getDocid());
+                }
+            }
+        } catch (DatabaseException e) {
+            logger.error("Error while removing the retry of {}", webURL.getURL(), e);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * @return the queues of the urls which are waiting to be crawled
+     */
+    public WorkQueues getWorkQueues() {
+        return workQueues;
+    }
+
+    /**
+     * @return the counters of the crawl
+     */
+    public Counters getCounters() {
+        return counters;
+    }
+
     public long getQueueLength() {
         return workQueues.getLength();
     }
@@ -200,12 +580,18 @@ public class Frontier {
         if (inProcessPages != null) {
             inProcessPages.close();
         }
+        if (retriesDB != null) {
+            retriesDB.close();
+        }
     }
 
     public void finish() {
-        isFinished = true;
-        synchronized (waitingList) {
-            waitingList.notifyAll();
+        mutex.lock();
+        try {
+            isFinished = true;
+            urlsAvailable.signalAll();
+        } finally {
+            mutex.unlock();
         }
     }
 }
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.frontier;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.fetcher.PolitenessScheduler;
+import edu.uci.ics.crawlerbykc.url.WebURL;
+
+/**
+ * A frontier which keeps one queue per host, plus a heap of the hosts ordered by the time at
+ * which they may be fetched again. {@link #getNextURLs(int, List)} only hands out urls of hosts
+ * which are ready now, at most one per host and batch, so that crawler threads do not pile up
+ * on the politeness delay of a single host.
+ *
+ * The queues are kept in memory. When crawling is resumable, every queued url is also kept in
+ * the work queues database, from which the queues are restored on restart.
+ */
+public class HostPartitionedFrontier extends Frontier {
+
+    /**
+     * Orders the urls of a host the same way the keys of {@link WorkQueues} do.
+     */
+    private static final Comparator<WebURL> URL_ORDER =
+        Comparator.comparingInt(WebURL::getPriority)
+                  .thenComparingInt(url -> Math.min(url.getDepth(), Byte.MAX_VALUE))
+                  .thenComparingInt(WebURL::getDocid);
+
+    private static class HostQueue {
+        final String hostKey;
+        final PriorityQueue<WebURL> urls = new PriorityQueue<>(URL_ORDER);
+        long readyTime;
+
+        HostQueue(String hostKey, long readyTime) {
+            this.hostKey = hostKey;
+            this.readyTime = readyTime;
+        }
+    }
+
+    private final boolean resumable;
+
+    private final PolitenessScheduler politenessScheduler;
+
+    private final Map<String, HostQueue> hostQueues;
+
+    private final PriorityQueue<HostQueue> readyHosts;
+
+    private long queueLength;
+
+    public HostPartitionedFrontier(Environment env, CrawlConfig config,
+                                   PolitenessScheduler politenessScheduler) {
+        super(env, config);
+        this.resumable = config.isResumableCrawling();
+        this.politenessScheduler = politenessScheduler;
+        this.hostQueues = new HashMap<>();
+        this.readyHosts = new PriorityQueue<>(Comparator.comparingLong((HostQueue host) -> host.readyTime));
+
+        if (resumable && workQueues != null) {
+            mutex.lock();
+            try {
+                workQueues.forEach(this::addToHostQueue);
+            } finally {
+                mutex.unlock();
+            }
+            if (queueLength > 0) {
+                logger.info("Loaded {} queued URLs of {} hosts from previous crawl.", queueLength,
+                            hostQueues.size());
+            }
+        }
+    }
+
+    @Override
+    protected void enqueue(WebURL url) {
+        if (resumable) {
+            workQueues.put(url);
+        }
+        addToHostQueue(url);
+    }
+
+    @Override
+    protected void enqueueAll(List<WebURL> urls) {
+        if (resumable) {
+            workQueues.putAll(urls);
+        }
+        for (WebURL url : urls) {
+            addToHostQueue(url);
+        }
+    }
+
+    @Override
+    protected void onRequeued(List<WebURL> urls) {
+        for (WebURL url : urls) {
+            addToHostQueue(url);
+        }
+    }
+
+    private void addToHostQueue(WebURL url) {
+        String hostKey = politenessScheduler.getHostKey(url);
+        HostQueue host = hostQueues.get(hostKey);
+        if (host == null) {
+            host = new HostQueue(hostKey, politenessScheduler.getNextFetchTime(hostKey));
+            hostQueues.put(hostKey, host);
+            readyHosts.add(host);
+        }
+        host.urls.add(url);
+        queueLength++;
+    }
+
+    @Override
+    public void getNextURLs(int max, List<WebURL> result) {
+        mutex.lock();
+        try {
+            while (!isFinished) {
+                long now = System.currentTimeMillis();
+                releaseDelayedURLs(now);
+                List<WebURL> curResults = new ArrayList<>();
+                while (curResults.size() < max && !readyHosts.isEmpty() &&
+                       readyHosts.peek().readyTime <= now) {
+                    HostQueue host = readyHosts.poll();
+                    curResults.add(host.urls.poll());
+                    queueLength--;
+                    if (host.urls.isEmpty()) {
+                        hostQueues.remove(host.hostKey);
+                    } else {
+                        host.readyTime = now + politenessScheduler.getDelay(host.hostKey);
+                        readyHosts.add(host);
+                    }
+                }
+
+                if (!curResults.isEmpty()) {
+                    if (resumable) {
+                        try {
+                            workQueues.claim(curResults, inProcessPages);
+                        } catch (DatabaseException e) {
+                            logger.error("Error while getting next urls", e);
+                        }
+                    }
+                    result.addAll(curResults);
+                    if (curResults.size() == max && waitingThreads > 0) {
+                        // More hosts may be ready, pass them on to the next waiting thread
+                        urlsAvailable.signal();
+                    }
+                    return;
+                }
+                // Wait for the first host to become ready or deferred url to be due, or for new
+                // urls if there are none
+                long hostTimeout = readyHosts.isEmpty() ? 0 : Math.max(1, readyHosts.peek().readyTime - now);
+                long delayedTimeout = getDelayedURLsTimeout(now);
+                awaitURLs(hostTimeout == 0 || delayedTimeout == 0 ? Math.max(hostTimeout, delayedTimeout) :
+                          Math.min(hostTimeout, delayedTimeout));
+            }
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public long getQueueLength() {
+        mutex.lock();
+        try {
+            return queueLength;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * @return the number of hosts which currently have urls waiting to be crawled
+     */
+    public int getNumberOfQueuedHosts() {
+        mutex.lock();
+        try {
+            return hostQueues.size();
+        } finally {
+            mutex.unlock();
+        }
+    }
+}
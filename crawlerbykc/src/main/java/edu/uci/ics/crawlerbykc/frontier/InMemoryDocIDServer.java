@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.frontier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sleepycat.je.Transaction;
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.util.Util;
+
+/**
+ * A {@link DocIDServer} which keeps the docids in memory, for crawls which are not resumable.
+ *
+ * Every lock stripe has an open addressing hash table of primitive arrays, which maps the
+ * 64 bit fingerprint of a url, together with its second 64 bit fingerprint, to its docid.
+ * No url strings are kept.
+ */
+public class InMemoryDocIDServer extends DocIDServer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Open addressing hash table with linear probing. A docid of 0 marks an empty slot, as
+     * docids start at 1.
+     */
+    private static class FingerprintTable {
+        long[] fingerprints = new long[INITIAL_CAPACITY];
+        long[] checkFingerprints = new long[INITIAL_CAPACITY];
+        int[] docIds = new int[INITIAL_CAPACITY];
+        int size;
+
+        int get(long fingerprint, long checkFingerprint) {
+            int mask = docIds.length - 1;
+            for (int i = slot(fingerprint, mask); docIds[i] != 0; i = (i + 1) & mask) {
+                if (fingerprints[i] == fingerprint && checkFingerprints[i] == checkFingerprint) {
+                    return docIds[i];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return {@code true} if the fingerprints were not in the table yet
+         */
+        boolean put(long fingerprint, long checkFingerprint, int docId) {
+            if ((size + 1) * 4 > docIds.length * 3) {
+                resize();
+            }
+            int mask = docIds.length - 1;
+            int i = slot(fingerprint, mask);
+            while (docIds[i] != 0) {
+                if (fingerprints[i] == fingerprint && checkFingerprints[i] == checkFingerprint) {
+                    docIds[i] = docId;
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            fingerprints[i] = fingerprint;
+            checkFingerprints[i] = checkFingerprint;
+            docIds[i] = docId;
+            size++;
+            return true;
+        }
+
+        private void resize() {
+            long[] oldFingerprints = fingerprints;
+            long[] oldCheckFingerprints = checkFingerprints;
+            int[] oldDocIds = docIds;
+            int capacity = oldDocIds.length * 2;
+            fingerprints = new long[capacity];
+            checkFingerprints = new long[capacity];
+            docIds = new int[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldDocIds.length; j++) {
+                if (oldDocIds[j] != 0) {
+                    int i = slot(oldFingerprints[j], mask);
+                    while (docIds[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    fingerprints[i] = oldFingerprints[j];
+                    checkFingerprints[i] = oldCheckFingerprints[j];
+                    docIds[i] = oldDocIds[j];
+                }
+            }
+        }
+
+        private static int slot(long fingerprint, int mask) {
+            // The stripe is picked from the hash code of the fingerprint bytes, use other bits
+            return (int) (fingerprint >>> 32) & mask;
+        }
+    }
+
+    private final FingerprintTable[] tables = new FingerprintTable[STRIPES];
+
+    private final AtomicInteger docCount = new AtomicInteger();
+
+    public InMemoryDocIDServer(CrawlConfig config) {
+        super(config, true);
+        for (int i = 0; i < STRIPES; i++) {
+            tables[i] = new FingerprintTable();
+        }
+    }
+
+    @Override
+    protected int lookup(String url, byte[] key, int stripe) {
+        return tables[stripe].get(Util.byteArray2Long(key), getCheckFingerprint(url));
+    }
+
+    @Override
+    protected void store(Transaction txn, String url, byte[] key, int stripe, int docId) {
+        if (tables[stripe].put(Util.byteArray2Long(key), getCheckFingerprint(url), docId)) {
+            docCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public int getDocCount() {
+        return docCount.get();
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
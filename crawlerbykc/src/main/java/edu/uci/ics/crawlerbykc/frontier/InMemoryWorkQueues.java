@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.frontier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.je.Transaction;
+
+import edu.uci.ics.crawlerbykc.url.WebURL;
+
+/**
+ * {@link WorkQueues} which are kept in memory, for crawls which are not resumable.
+ *
+ * The urls are kept in a binary heap of primitive keys, which order the urls the same way
+ * the keys of the database do, next to the urls encoded as compact byte arrays. As in the
+ * database, a url which is queued again while it is still queued is only handed out once.
+ */
+public class InMemoryWorkQueues extends WorkQueues {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private byte[][] values = new byte[INITIAL_CAPACITY][];
+    private int size;
+
+    public InMemoryWorkQueues() {
+        super();
+    }
+
+    private byte[] encode(WebURL url) {
+        TupleOutput output = new TupleOutput();
+        webURLBinding.objectToEntry(url, output);
+        return output.toByteArray();
+    }
+
+    private WebURL decode(byte[] value) {
+        return webURLBinding.entryToObject(new TupleInput(value));
+    }
+
+    private void push(long key, byte[] value) {
+        if (size == keys.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            keys[i] = keys[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    /**
+     * Removes the entry at the given index of the heap.
+     */
+    private void removeAt(int index) {
+        size--;
+        long key = keys[size];
+        byte[] value = values[size];
+        values[size] = null;
+        if (index == size) {
+            return;
+        }
+        int i = index;
+        // Sift down
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            keys[i] = keys[child];
+            values[i] = values[child];
+            i = child;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (i == index) {
+            // Sift up, needed when removing from the middle of the heap
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                values[i] = values[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+    }
+
+    /**
+     * Removes the head of the heap, and all other entries with the same key.
+     *
+     * @return the url at the head
+     */
+    private byte[] poll() {
+        long key = keys[0];
+        byte[] value = values[0];
+        removeAt(0);
+        while (size > 0 && keys[0] == key) {
+            removeAt(0);
+        }
+        return value;
+    }
+
+    @Override
+    public List<WebURL> get(int max) {
+        synchronized (mutex) {
+            List<WebURL> results = new ArrayList<>(max);
+            InMemoryWorkQueues copy = copy();
+            while (results.size() < max && copy.size > 0) {
+                results.add(decode(copy.poll()));
+            }
+            return results;
+        }
+    }
+
+    @Override
+    public List<WebURL> claim(int max, InProcessPagesDB inProcessPages) {
+        if (inProcessPages != null) {
+            throw new IllegalArgumentException("In memory work queues are not resumable");
+        }
+        synchronized (mutex) {
+            List<WebURL> results = new ArrayList<>(Math.min(max, size));
+            while (results.size() < max && size > 0) {
+                results.add(decode(poll()));
+            }
+            return results;
+        }
+    }
+
+    @Override
+    public void claim(Collection<WebURL> urls, InProcessPagesDB inProcessPages) {
+        if (inProcessPages != null) {
+            throw new IllegalArgumentException("In memory work queues are not resumable");
+        }
+        synchronized (mutex) {
+            for (WebURL url : urls) {
+                removeURL(url);
+            }
+        }
+    }
+
+    @Override
+    public void delete(int count) {
+        synchronized (mutex) {
+            for (int i = 0; i < count && size > 0; i++) {
+                poll();
+            }
+        }
+    }
+
+    @Override
+    public boolean removeURL(WebURL webUrl) {
+        synchronized (mutex) {
+            long key = getKeyAsLong(webUrl);
+            boolean removed = false;
+            for (int i = indexOf(key); i >= 0; i = indexOf(key)) {
+                removeAt(i);
+                removed = true;
+            }
+            return removed;
+        }
+    }
+
+    private int indexOf(long key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void forEach(Consumer<WebURL> consumer) {
+        synchronized (mutex) {
+            InMemoryWorkQueues copy = copy();
+            while (copy.size > 0) {
+                consumer.accept(decode(copy.poll()));
+            }
+        }
+    }
+
+    private InMemoryWorkQueues copy() {
+        InMemoryWorkQueues copy = new InMemoryWorkQueues();
+        copy.keys = Arrays.copyOf(keys, Math.max(1, size));
+        copy.values = Arrays.copyOf(values, Math.max(1, size));
+        copy.size = size;
+        return copy;
+    }
+
+    @Override
+    public void put(WebURL url) {
+        synchronized (mutex) {
+            push(getKeyAsLong(url), encode(url));
+        }
+    }
+
+    @Override
+    protected void put(Transaction txn, WebURL url) {
+        put(url);
+    }
+
+    @Override
+    public void putAll(Collection<WebURL> urls) {
+        synchronized (mutex) {
+            for (WebURL url : urls) {
+                push(getKeyAsLong(url), encode(url));
+            }
+        }
+    }
+
+    @Override
+    public long getLength() {
+        synchronized (mutex) {
+            return size;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (mutex) {
+            keys = new long[0];
+            values = new byte[0][];
+            size = 0;
+        }
+    }
+}
@@ -17,9 +17,15 @@
 
 package edu.uci.ics.crawlerbykc.frontier;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
 import com.sleepycat.je.Cursor;
 import com.sleepycat.je.DatabaseEntry;
 import com.sleepycat.je.Environment;
@@ -33,6 +39,10 @@ import edu.uci.ics.crawlerbykc.url.WebURL;
  * assigned to crawlers but are not yet processed.
  * It is used for resuming a previous crawl.
  *
+ * Every page is stored with a lease. Pages whose lease has expired, because the crawler
+ * they were assigned to has died or hangs, can be moved back to the work queues with
+ * {@link #requeueExpired(WorkQueues, long)}.
+ *
  * @author Yasser Ganjisaffar
  */
 public class InProcessPagesDB extends WorkQueues {
@@ -40,8 +50,20 @@ public class InProcessPagesDB extends WorkQueues {
 
     private static final String DATABASE_NAME = "InProcessPagesDB";
 
+    private final long leaseMillis;
+
     public InProcessPagesDB(Environment env) {
+        this(env, 0);
+    }
+
+    /**
+     * @param env the environment of the database
+     * @param leaseMillis how long a page may stay in process before it is considered
+     * abandoned, in milliseconds. A value of 0 or less means leases never expire.
+     */
+    public InProcessPagesDB(Environment env, long leaseMillis) {
         super(env, DATABASE_NAME, true);
+        this.leaseMillis = leaseMillis;
         long docCount = getLength();
         if (docCount > 0) {
             logger.info("Loaded {} URLs that have been in process in the previous crawl.",
@@ -49,24 +71,58 @@ public class InProcessPagesDB extends WorkQueues {
         }
     }
 
-    public boolean removeURL(WebURL webUrl) {
+    private long newLeaseExpiry() {
+        return leaseMillis > 0 ? System.currentTimeMillis() + leaseMillis : Long.MAX_VALUE;
+    }
+
+    /**
+     * Stores the url followed by the expiry time of its lease.
+     */
+    @Override
+    protected void put(Transaction txn, WebURL url) {
+        TupleOutput output = new TupleOutput();
+        webURLBinding.objectToEntry(url, output);
+        output.writeLong(newLeaseExpiry());
+        DatabaseEntry value = new DatabaseEntry();
+        TupleBinding.outputToEntry(output, value);
+        urlsDB.put(txn, getDatabaseEntryKey(url), value);
+    }
+
+    /**
+     * Moves all pages whose lease has expired back to the given work queues, in a single
+     * transaction. Pages stored without a lease are considered expired.
+     *
+     * @param workQueues the queues to move the pages to
+     * @param now the current time; {@link Long#MAX_VALUE} moves all pages
+     * @return the pages which were moved
+     */
+    public List<WebURL> requeueExpired(WorkQueues workQueues, long now) {
         synchronized (mutex) {
-            DatabaseEntry key = getDatabaseEntryKey(webUrl);
+            List<WebURL> requeued = new ArrayList<>();
+            DatabaseEntry key = new DatabaseEntry();
             DatabaseEntry value = new DatabaseEntry();
             Transaction txn = beginTransaction();
             try (Cursor cursor = openCursor(txn)) {
-                OperationStatus result = cursor.getSearchKey(key, value, null);
-
-                if (result == OperationStatus.SUCCESS) {
-                    result = cursor.delete();
-                    if (result == OperationStatus.SUCCESS) {
-                        return true;
+                OperationStatus result = cursor.getFirst(key, value, null);
+                while (result == OperationStatus.SUCCESS) {
+                    if (value.getData().length > 0) {
+                        TupleInput input = TupleBinding.entryToInput(value);
+                        WebURL url = webURLBinding.entryToObject(input);
+                        long leaseExpiry = input.available() >= 8 ? input.readLong() : 0;
+                        if (leaseExpiry <= now) {
+                            workQueues.put(txn, url);
+                            cursor.delete();
+                            requeued.add(url);
+                        }
                     }
+                    result = cursor.getNext(key, value, null);
                 }
-            } finally {
-                commit(txn);
+            } catch (RuntimeException e) {
+                abort(txn);
+                throw e;
             }
+            commit(txn);
+            return requeued;
         }
-        return false;
     }
 }
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.frontier;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.url.WebURL;
+
+/**
+ * Decides when the pages of a recrawl are visited again. Every visited page is queued for a
+ * revisit after an interval estimated from how often it was seen to change, so that the
+ * fetches go to the pages which actually change. The change rate is estimated as a Poisson
+ * process from the number of revisits which found the content changed (Cho and Garcia-Molina,
+ * "Estimating frequency of change"). The interval at most doubles from one visit to the next
+ * and stays within the configured minimum and maximum.
+ *
+ * A revisit which fails transiently is tried again after twice the interval, up to the
+ * maximum, and the page is dropped from the schedule after {@link #MAX_FAILED_REVISITS} failures
+ * in a row. Pages which are gone are dropped right away, see {@link #forget(WebURL)}.
+ *
+ * The revisit schedule is kept in memory, it does not survive a restart of the crawl.
+ */
+public class RecrawlScheduler {
+
+    protected static final int MAX_FAILED_REVISITS = 5;
+
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+
+    private final Map<Integer, History> histories = new HashMap<>();
+    private final PriorityQueue<History> revisits =
+        new PriorityQueue<>(Comparator.comparingLong((History history) -> history.due));
+
+    public RecrawlScheduler(CrawlConfig config) {
+        this.minIntervalMillis = config.getMinRecrawlIntervalSeconds() * 1000L;
+        this.maxIntervalMillis = config.getMaxRecrawlIntervalSeconds() * 1000L;
+    }
+
+    /**
+     * Records a visit of a page and queues its next one.
+     *
+     * @param url the url of the page
+     * @param contentHash the hash of the fetched content, compared with the one of the last
+     * visit. For a page which the server reported as not modified, the hash of its last version.
+     * @param now the time of the visit
+     */
+    public synchronized void recordVisit(WebURL url, long contentHash, long now) {
+        History history = histories.get(url.getDocid());
+        if (history == null) {
+            history = new History(url, contentHash, now);
+            histories.put(url.getDocid(), history);
+        } else {
+            history.observe(contentHash != history.contentHash, now);
+            history.contentHash = contentHash;
+        }
+        history.failedRevisits = 0;
+        history.interval = nextInterval(history);
+        schedule(history, now);
+    }
+
+    /**
+     * Records a revisit of a page which failed transiently, and queues the next one after twice
+     * the current interval. Pages which have not been visited, or are queued already, are left
+     * alone.
+     *
+     * @param url the url of the page
+     * @param now the time of the failed revisit
+     */
+    public synchronized void recordFailedVisit(WebURL url, long now) {
+        History history = histories.get(url.getDocid());
+        if (history == null || history.due >= 0) {
+            return;
+        }
+        if (++history.failedRevisits >= MAX_FAILED_REVISITS) {
+            histories.remove(url.getDocid());
+            return;
+        }
+        history.interval = Math.max(minIntervalMillis, Math.min(maxIntervalMillis, 2 * history.interval));
+        schedule(history, now);
+    }
+
+    /**
+     * Drops a page from the schedule, when it is gone or has moved.
+     *
+     * @param url the url of the page
+     */
+    public synchronized void forget(WebURL url) {
+        History history = histories.remove(url.getDocid());
+        if (history != null && history.due >= 0) {
+            revisits.remove(history);
+        }
+    }
+
+    /**
+     * Removes the pages whose revisit is due from the queue.
+     *
+     * @param now the current time
+     * @return the urls of the pages, the ones which are due the longest first
+     */
+    public synchronized List<WebURL> pollDue(long now) {
+        List<WebURL> due = new ArrayList<>();
+        while (!revisits.isEmpty() && revisits.peek().due <= now) {
+            History history = revisits.poll();
+            history.due = -1;
+            due.add(history.url);
+        }
+        return due;
+    }
+
+    /**
+     * @return the number of pages queued for a revisit
+     */
+    public synchronized int getPendingCount() {
+        return revisits.size();
+    }
+
+    /**
+     * @return the current revisit interval of the page in milliseconds, or -1 if it has not been
+     *         visited
+     */
+    public synchronized long getRevisitInterval(WebURL url) {
+        History history = histories.get(url.getDocid());
+        return history == null ? -1 : history.interval;
+    }
+
+    private void schedule(History history, long now) {
+        if (history.due >= 0) {
+            revisits.remove(history);
+        }
+        history.due = now + history.interval;
+        revisits.add(history);
+    }
+
+    private long nextInterval(History history) {
+        if (history.revisits == 0) {
+            return minIntervalMillis;
+        }
+        double meanInterval = Math.max(1.0, (double) history.observedMillis / history.revisits);
+        double unchanged = history.revisits - history.changes;
+        double rate = -Math.log((unchanged + 0.5) / (history.revisits + 0.5)) / meanInterval;
+        long interval = rate > 0 ? (long) (1 / rate) : Long.MAX_VALUE;
+        interval = Math.min(interval, 2 * history.interval);
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, interval));
+    }
+
+    private static class History {
+        final WebURL url;
+        long contentHash;
+        long lastVisit;
+        /** Number of visits after the first one, each of which may have seen a change */
+        int revisits;
+        int changes;
+        /** The sum of the intervals between the visits */
+        long observedMillis;
+        long interval;
+        /** Number of revisits in a row which failed */
+        int failedRevisits;
+        /** When the next visit is due, or -1 if it is not queued */
+        long due = -1;
+
+        History(WebURL url, long contentHash, long now) {
+            this.url = url;
+            this.contentHash = contentHash;
+            this.lastVisit = now;
+        }
+
+        void observe(boolean changed, long now) {
+            revisits++;
+            if (changed) {
+                changes++;
+            }
+            observedMillis += Math.max(0, now - lastVisit);
+            lastVisit = now;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.frontier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.OperationStatus;
+
+import edu.uci.ics.crawlerbykc.url.WebURL;
+import edu.uci.ics.crawlerbykc.util.Util;
+
+/**
+ * The pages of a resumable crawl which are retried, with the number of their attempts and the
+ * time of their next one, so that the retries survive a restart of the crawl. Every write is
+ * committed on its own.
+ */
+public class RetriesDB {
+
+    private static final String DATABASE_NAME = "RetriesDB";
+
+    /** A page which is retried, as stored */
+    public static class Retry {
+        public final WebURL url;
+        public final int attempts;
+        /** The time of the next attempt, or 0 if the page is back in the work queues */
+        public final long notBefore;
+
+        public Retry(WebURL url, int attempts, long notBefore) {
+            this.url = url;
+            this.attempts = attempts;
+            this.notBefore = notBefore;
+        }
+    }
+
+    private final Database retriesDB;
+
+    private final WebURLTupleBinding webURLBinding = new WebURLTupleBinding();
+
+    public RetriesDB(Environment env) {
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(true);
+        dbConfig.setDeferredWrite(false);
+        retriesDB = env.openDatabase(null, DATABASE_NAME, dbConfig);
+    }
+
+    /**
+     * Stores a page which is retried, replacing what was stored for it before.
+     */
+    public void put(Retry retry) {
+        TupleOutput output = new TupleOutput();
+        webURLBinding.objectToEntry(retry.url, output);
+        output.writeInt(retry.attempts);
+        output.writeLong(retry.notBefore);
+        DatabaseEntry value = new DatabaseEntry();
+        TupleBinding.outputToEntry(output, value);
+        retriesDB.put(null, new DatabaseEntry(Util.int2ByteArray(retry.url.getDocid())), value);
+    }
+
+    /**
+     * Removes a page which is no longer retried.
+     *
+     * @param docid the docid of the page
+     */
+    public void delete(int docid) {
+        retriesDB.delete(null, new DatabaseEntry(Util.int2ByteArray(docid)));
+    }
+
+    /**
+     * @return all stored pages
+     */
+    public List<Retry> getAll() {
+        List<Retry> retries = new ArrayList<>();
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry value = new DatabaseEntry();
+        try (Cursor cursor = retriesDB.openCursor(null, null)) {
+            OperationStatus result = cursor.getFirst(key, value, null);
+            while (result == OperationStatus.SUCCESS) {
+                TupleInput input = TupleBinding.entryToInput(value);
+                WebURL url = webURLBinding.entryToObject(input);
+                retries.add(new Retry(url, input.readInt(), input.readLong()));
+                result = cursor.getNext(key, value, null);
+            }
+        }
+        return retries;
+    }
+
+    public void close() {
+        retriesDB.close();
+    }
+}
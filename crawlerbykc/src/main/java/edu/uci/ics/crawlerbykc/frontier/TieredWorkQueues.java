@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.frontier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.OperationStatus;
+import com.sleepycat.je.Transaction;
+
+import edu.uci.ics.crawlerbykc.url.WebURL;
+
+/**
+ * {@link WorkQueues} with a bounded in-memory buffer holding the head of the queue, so that
+ * most urls are handed out without going through the database.
+ *
+ * The buffer holds the urls with the smallest keys, up to a boundary key. When it runs empty,
+ * it is refilled with one sequential read of the head of the database. New urls which sort
+ * before the boundary go to the buffer, the others to the database. When the buffer grows
+ * beyond its capacity, the urls with the largest keys are spilled to the database in one
+ * batch and the boundary is lowered.
+ *
+ * When crawling is resumable, every url is also written to the database and only removed
+ * from it when it is claimed, so that the buffer can be lost at any time. Otherwise buffered
+ * urls are only kept in memory.
+ */
+public class TieredWorkQueues extends WorkQueues {
+    private static final Logger logger = LoggerFactory.getLogger(TieredWorkQueues.class);
+
+    private final boolean resumable;
+
+    private final int capacity;
+
+    /** The buffered urls, by {@link #getKeyAsLong(WebURL)} */
+    private final NavigableMap<Long, WebURL> buffer = new TreeMap<>();
+
+    /**
+     * All urls which sort before or at this key are in the buffer. The database only holds
+     * urls which sort after it, unless crawling is resumable, when it holds all urls.
+     */
+    private long boundary = Long.MAX_VALUE;
+
+    private long bufferHits;
+    private long bufferMisses;
+    private long refills;
+    private long refillNanos;
+    private long spills;
+
+    public TieredWorkQueues(Environment env, String dbName, boolean resumable, int capacity) {
+        super(env, dbName, resumable);
+        this.resumable = resumable;
+        this.capacity = capacity;
+        if (super.getLength() > 0) {
+            // Urls of a previous crawl, the buffer is filled on the first claim
+            boundary = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Fills the empty buffer with the head of the database.
+     */
+    private void refill() {
+        long start = System.nanoTime();
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry value = new DatabaseEntry();
+        Transaction txn = beginTransaction();
+        int read = 0;
+        try (Cursor cursor = openCursor(txn)) {
+            OperationStatus result = cursor.getFirst(key, value, null);
+            while ((read < capacity) && (result == OperationStatus.SUCCESS)) {
+                if (value.getData().length > 0) {
+                    WebURL url = webURLBinding.entryToObject(value);
+                    buffer.put(getKeyAsLong(url), url);
+                    read++;
+                }
+                if (!resumable) {
+                    cursor.delete();
+                }
+                result = cursor.getNext(key, value, null);
+            }
+            // If the whole database was read, everything that is queued is in the buffer
+            boundary = (result == OperationStatus.SUCCESS) ? buffer.lastKey() : Long.MAX_VALUE;
+        } catch (RuntimeException e) {
+            abort(txn);
+            throw e;
+        }
+        commit(txn);
+        refills++;
+        refillNanos += System.nanoTime() - start;
+        logger.debug("Refilled the frontier buffer with {} URLs", read);
+    }
+
+    /**
+     * Moves the urls with the largest keys out of the buffer, down to three quarters of its
+     * capacity, so that spills happen in batches.
+     */
+    private void spill() {
+        List<WebURL> spilled = new ArrayList<>(buffer.size() - capacity * 3 / 4);
+        while (buffer.size() > capacity * 3 / 4) {
+            spilled.add(buffer.pollLastEntry().getValue());
+        }
+        boundary = buffer.isEmpty() ? Long.MIN_VALUE : buffer.lastKey();
+        if (!resumable) {
+            Transaction txn = beginTransaction();
+            for (WebURL url : spilled) {
+                super.put(txn, url);
+            }
+            commit(txn);
+        }
+        spills++;
+    }
+
+    /**
+     * Makes sure the buffer is not empty, unless the whole queue is.
+     *
+     * @return {@code true} if the buffer had to be refilled
+     */
+    private boolean ensureBuffered() {
+        if (buffer.isEmpty() && boundary != Long.MAX_VALUE) {
+            refill();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public List<WebURL> get(int max) {
+        synchronized (mutex) {
+            ensureBuffered();
+            List<WebURL> results = new ArrayList<>(max);
+            for (WebURL url : buffer.values()) {
+                if (results.size() >= max) {
+                    break;
+                }
+                results.add(url);
+            }
+            return results;
+        }
+    }
+
+    @Override
+    public List<WebURL> claim(int max, InProcessPagesDB inProcessPages) {
+        synchronized (mutex) {
+            if (ensureBuffered()) {
+                bufferMisses++;
+            } else {
+                bufferHits++;
+            }
+            List<WebURL> results = new ArrayList<>(max);
+            while (results.size() < max && !buffer.isEmpty()) {
+                results.add(buffer.pollFirstEntry().getValue());
+            }
+            if (resumable && !results.isEmpty()) {
+                super.claim(results, inProcessPages);
+            }
+            return results;
+        }
+    }
+
+    @Override
+    public void claim(Collection<WebURL> urls, InProcessPagesDB inProcessPages) {
+        synchronized (mutex) {
+            List<WebURL> notBuffered = new ArrayList<>();
+            for (WebURL url : urls) {
+                if (buffer.remove(getKeyAsLong(url)) == null) {
+                    notBuffered.add(url);
+                }
+            }
+            super.claim(resumable ? urls : notBuffered, inProcessPages);
+        }
+    }
+
+    @Override
+    public void delete(int count) {
+        synchronized (mutex) {
+            claim(count, null);
+        }
+    }
+
+    @Override
+    public boolean removeURL(WebURL webUrl) {
+        synchronized (mutex) {
+            boolean removed = buffer.remove(getKeyAsLong(webUrl)) != null;
+            if (removed && !resumable) {
+                return true;
+            }
+            return super.removeURL(webUrl) || removed;
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<WebURL> consumer) {
+        synchronized (mutex) {
+            if (!resumable) {
+                // All buffered urls sort before the ones in the database
+                buffer.values().forEach(consumer);
+            }
+            super.forEach(consumer);
+        }
+    }
+
+    /**
+     * All writes of {@link WorkQueues#put(WebURL)} and {@link WorkQueues#putAll(Collection)}
+     * end up here.
+     */
+    @Override
+    protected void put(Transaction txn, WebURL url) {
+        synchronized (mutex) {
+            if (!buffer(url) || resumable) {
+                super.put(txn, url);
+            }
+            if (buffer.size() > capacity) {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * Adds the url to the buffer if it sorts before the boundary.
+     *
+     * @return {@code true} if the url was buffered
+     */
+    private boolean buffer(WebURL url) {
+        long key = getKeyAsLong(url);
+        if (key > boundary) {
+            return false;
+        }
+        buffer.put(key, url);
+        return true;
+    }
+
+    @Override
+    public long getLength() {
+        synchronized (mutex) {
+            return resumable ? super.getLength() : buffer.size() + super.getLength();
+        }
+    }
+
+    /**
+     * @return the number of urls in the buffer
+     */
+    public int getBufferedCount() {
+        synchronized (mutex) {
+            return buffer.size();
+        }
+    }
+
+    /**
+     * @return the number of claims which were served from the buffer
+     */
+    public long getBufferHits() {
+        synchronized (mutex) {
+            return bufferHits;
+        }
+    }
+
+    /**
+     * @return the number of claims which had to refill the buffer from the database first
+     */
+    public long getBufferMisses() {
+        synchronized (mutex) {
+            return bufferMisses;
+        }
+    }
+
+    /**
+     * @return the fraction of claims which were served from the buffer
+     */
+    public double getBufferHitRate() {
+        synchronized (mutex) {
+            long claims = bufferHits + bufferMisses;
+            return claims == 0 ? 0 : (double) bufferHits / claims;
+        }
+    }
+
+    /**
+     * @return the number of times the buffer was refilled from the database
+     */
+    public long getRefills() {
+        synchronized (mutex) {
+            return refills;
+        }
+    }
+
+    /**
+     * @return the average time a refill of the buffer took, in milliseconds
+     */
+    public double getAverageRefillMillis() {
+        synchronized (mutex) {
+            return refills == 0 ? 0 : refillNanos / 1e6 / refills;
+        }
+    }
+
+    /**
+     * @return the number of times urls were spilled from the buffer to the database
+     */
+    public long getSpills() {
+        synchronized (mutex) {
+            return spills;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (mutex) {
+            logger.info("Frontier buffer: {} claims, hit rate {}, {} refills of {} ms on average, {} spills",
+                        bufferHits + bufferMisses, String.format("%.3f", getBufferHitRate()), refills,
+                        String.format("%.1f", getAverageRefillMillis()), spills);
+            buffer.clear();
+        }
+        super.close();
+    }
+}
@@ -18,7 +18,9 @@
 package edu.uci.ics.crawlerbykc.frontier;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.sleepycat.je.Cursor;
 import com.sleepycat.je.Database;
@@ -35,15 +37,26 @@ import edu.uci.ics.crawlerbykc.util.Util;
  * @author Yasser Ganjisaffar
  */
 public class WorkQueues {
-    private final Database urlsDB;
+    protected final Database urlsDB;
     private final Environment env;
 
     private final boolean resumable;
 
-    private final WebURLTupleBinding webURLBinding;
+    protected final WebURLTupleBinding webURLBinding;
 
     protected final Object mutex = new Object();
 
+    /**
+     * Creates queues without a database, for subclasses which keep the urls elsewhere and
+     * override all public methods.
+     */
+    protected WorkQueues() {
+        this.env = null;
+        this.resumable = false;
+        this.urlsDB = null;
+        this.webURLBinding = new WebURLTupleBinding();
+    }
+
     public WorkQueues(Environment env, String dbName, boolean resumable) {
         this.env = env;
         this.resumable = resumable;
@@ -65,6 +78,12 @@ public class WorkQueues {
         }
     }
 
+    protected static void abort(Transaction tnx) {
+        if (tnx != null) {
+            tnx.abort();
+        }
+    }
+
     protected Cursor openCursor(Transaction txn) {
         return urlsDB.openCursor(txn, null);
     }
@@ -91,6 +110,68 @@ public class WorkQueues {
         }
     }
 
+    /**
+     * Removes up to max urls from the head of the queue and, if given, moves them to the
+     * in-process pages with a fresh lease. This is done with a single cursor pass and in a
+     * single transaction, so a url is never lost or handed out twice on a crash.
+     *
+     * @param max the maximum number of urls to claim
+     * @param inProcessPages the in-process pages, or null if crawling is not resumable
+     * @return the claimed urls, in crawl order
+     */
+    public List<WebURL> claim(int max, InProcessPagesDB inProcessPages) {
+        synchronized (mutex) {
+            List<WebURL> results = new ArrayList<>(max);
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry value = new DatabaseEntry();
+            Transaction txn = beginTransaction();
+            try (Cursor cursor = openCursor(txn)) {
+                OperationStatus result = cursor.getFirst(key, value, null);
+                while ((results.size() < max) && (result == OperationStatus.SUCCESS)) {
+                    if (value.getData().length > 0) {
+                        WebURL url = webURLBinding.entryToObject(value);
+                        if (inProcessPages != null) {
+                            inProcessPages.put(txn, url);
+                        }
+                        results.add(url);
+                    }
+                    cursor.delete();
+                    result = cursor.getNext(key, value, null);
+                }
+            } catch (RuntimeException e) {
+                abort(txn);
+                throw e;
+            }
+            commit(txn);
+            return results;
+        }
+    }
+
+    /**
+     * Removes the given urls, wherever they are in the queue, and, if given, moves them to
+     * the in-process pages with a fresh lease, all in a single transaction.
+     *
+     * @param urls the urls to claim
+     * @param inProcessPages the in-process pages, or null if crawling is not resumable
+     */
+    public void claim(Collection<WebURL> urls, InProcessPagesDB inProcessPages) {
+        synchronized (mutex) {
+            Transaction txn = beginTransaction();
+            try {
+                for (WebURL url : urls) {
+                    urlsDB.delete(txn, getDatabaseEntryKey(url));
+                    if (inProcessPages != null) {
+                        inProcessPages.put(txn, url);
+                    }
+                }
+            } catch (RuntimeException e) {
+                abort(txn);
+                throw e;
+            }
+            commit(txn);
+        }
+    }
+
     public void delete(int count) {
         synchronized (mutex) {
             DatabaseEntry key = new DatabaseEntry();
@@ -109,6 +190,56 @@ public class WorkQueues {
         }
     }
 
+    /**
+     * Removes the entry of the given url, wherever it is in the queue.
+     *
+     * @param webUrl the url to be removed
+     * @return true if the url was found and removed
+     */
+    public boolean removeURL(WebURL webUrl) {
+        synchronized (mutex) {
+            DatabaseEntry key = getDatabaseEntryKey(webUrl);
+            DatabaseEntry value = new DatabaseEntry();
+            Transaction txn = beginTransaction();
+            try (Cursor cursor = openCursor(txn)) {
+                OperationStatus result = cursor.getSearchKey(key, value, null);
+
+                if (result == OperationStatus.SUCCESS) {
+                    result = cursor.delete();
+                    if (result == OperationStatus.SUCCESS) {
+                        return true;
+                    }
+                }
+            } finally {
+                commit(txn);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passes every url in the queue, in crawl order, to the given consumer.
+     *
+     * @param consumer receives the urls
+     */
+    public void forEach(Consumer<WebURL> consumer) {
+        synchronized (mutex) {
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry value = new DatabaseEntry();
+            Transaction txn = beginTransaction();
+            try (Cursor cursor = openCursor(txn)) {
+                OperationStatus result = cursor.getFirst(key, value, null);
+                while (result == OperationStatus.SUCCESS) {
+                    if (value.getData().length > 0) {
+                        consumer.accept(webURLBinding.entryToObject(value));
+                    }
+                    result = cursor.getNext(key, value, null);
+                }
+            }
+            commit(txn);
+        }
+    }
+
     /*
      * The key that is used for storing URLs determines the order
      * they are crawled. Lower key values results in earlier crawling.
@@ -128,11 +259,46 @@ public class WorkQueues {
         return new DatabaseEntry(keyData);
     }
 
+    /**
+     * Packs the fields of {@link #getDatabaseEntryKey(WebURL)}, as unsigned bytes, into a
+     * long with the same order.
+     *
+     * @param url the url
+     * @return the key of the url as a long
+     */
+    protected static long getKeyAsLong(WebURL url) {
+        byte depth = (url.getDepth() > Byte.MAX_VALUE) ? Byte.MAX_VALUE : (byte) url.getDepth();
+        return ((url.getPriority() & 0xFFL) << 40) | ((depth & 0xFFL) << 32) |
+               (url.getDocid() & 0xFFFFFFFFL);
+    }
+
     public void put(WebURL url) {
+        Transaction txn = beginTransaction();
+        put(txn, url);
+        commit(txn);
+    }
+
+    protected void put(Transaction txn, WebURL url) {
         DatabaseEntry value = new DatabaseEntry();
         webURLBinding.objectToEntry(url, value);
-        Transaction txn = beginTransaction();
         urlsDB.put(txn, getDatabaseEntryKey(url), value);
+    }
+
+    /**
+     * Writes all of the given urls in a single transaction.
+     *
+     * @param urls the urls to be queued
+     */
+    public void putAll(Collection<WebURL> urls) {
+        Transaction txn = beginTransaction();
+        try {
+            for (WebURL url : urls) {
+                put(txn, url);
+            }
+        } catch (RuntimeException e) {
+            abort(txn);
+            throw e;
+        }
         commit(txn);
     }
 
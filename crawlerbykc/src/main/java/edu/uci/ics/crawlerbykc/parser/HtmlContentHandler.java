@@ -62,10 +62,10 @@ public class HtmlContentHandler extends DefaultHandler {
     private String base;
     private String metaRefresh;
     private String metaLocation;
-    private final Map<String, String> metaTags = new HashMap<>();
+    private Map<String, String> metaTags = new HashMap<>();
 
     private boolean isWithinBodyElement;
-    private final StringBuilder bodyText;
+    private StringBuilder bodyText;
 
     private final List<ExtractedUrlAnchorPair> outgoingUrls;
 
@@ -79,6 +79,23 @@ public class HtmlContentHandler extends DefaultHandler {
         outgoingUrls = new ArrayList<>();
     }
 
+    /**
+     * Prepares this handler to be used for another page. The meta tags and the body text of
+     * the previous page are left to whoever took them.
+     */
+    public void reset() {
+        base = null;
+        metaRefresh = null;
+        metaLocation = null;
+        metaTags = new HashMap<>();
+        isWithinBodyElement = false;
+        bodyText = new StringBuilder();
+        outgoingUrls.clear();
+        curUrl = null;
+        anchorFlag = false;
+        anchorText.setLength(0);
+    }
+
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes)
         throws SAXException {
@@ -189,7 +206,7 @@ public class HtmlContentHandler extends DefaultHandler {
             }
             bodyText.append(ch, start, length);
             if (anchorFlag) {
-                anchorText.append(new String(ch, start, length));
+                anchorText.append(ch, start, length);
             }
         }
     }
@@ -198,6 +215,13 @@ public class HtmlContentHandler extends DefaultHandler {
         return bodyText.toString();
     }
 
+    /**
+     * @return the body text as it is being collected, without copying it
+     */
+    public CharSequence getBodyTextBuffer() {
+        return bodyText;
+    }
+
     public List<ExtractedUrlAnchorPair> getOutgoingUrls() {
         return outgoingUrls;
     }
@@ -19,6 +19,7 @@ package edu.uci.ics.crawlerbykc.parser;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import edu.uci.ics.crawlerbykc.url.WebURL;
 
@@ -26,6 +27,12 @@ public class HtmlParseData implements ParseData {
 
     private String html;
     private String text;
+
+    /**
+     * Compute the html and the text when they are first asked for, as many crawlers never do
+     */
+    private Supplier<String> htmlSupplier;
+    private Supplier<String> textSupplier;
     private String title;
     private Map<String, String> metaTags;
 
@@ -33,19 +40,45 @@ public class HtmlParseData implements ParseData {
     private String contentCharset;
 
     public String getHtml() {
+        if (htmlSupplier != null) {
+            html = htmlSupplier.get();
+            htmlSupplier = null;
+        }
         return html;
     }
 
     public void setHtml(String html) {
         this.html = html;
+        this.htmlSupplier = null;
+    }
+
+    /**
+     * @param htmlSupplier computes the html when it is first asked for
+     */
+    public void setHtmlSupplier(Supplier<String> htmlSupplier) {
+        this.html = null;
+        this.htmlSupplier = htmlSupplier;
     }
 
     public String getText() {
+        if (textSupplier != null) {
+            text = textSupplier.get();
+            textSupplier = null;
+        }
         return text;
     }
 
     public void setText(String text) {
         this.text = text;
+        this.textSupplier = null;
+    }
+
+    /**
+     * @param textSupplier computes the text when it is first asked for
+     */
+    public void setTextSupplier(Supplier<String> textSupplier) {
+        this.text = null;
+        this.textSupplier = textSupplier;
     }
 
     public String getTitle() {
@@ -80,7 +113,7 @@ public class HtmlParseData implements ParseData {
 
     @Override
     public String toString() {
-        return text;
+        return getText();
     }
 
     public void setContentCharset(String contentCharset) {
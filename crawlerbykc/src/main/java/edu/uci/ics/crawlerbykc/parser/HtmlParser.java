@@ -1,5 +1,9 @@
 package edu.uci.ics.crawlerbykc.parser;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
 import edu.uci.ics.crawlerbykc.crawler.Page;
 import edu.uci.ics.crawlerbykc.crawler.exceptions.ParseException;
 
@@ -7,5 +11,27 @@ public interface HtmlParser {
 
     HtmlParseData parse(Page page, String contextURL) throws ParseException;
 
+    /**
+     * Parses a page while its content is read from a stream, which is closed afterwards. The
+     * html of the parse data is not set if the content is not kept. By default the content is
+     * loaded into the page and parsed from there.
+     *
+     * @throws ParseException caused by an IOException if the content could not be read
+     */
+    default HtmlParseData parse(Page page, InputStream content, String contextURL) throws ParseException {
+        try (InputStream in = content) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            page.setContentData(out.toByteArray());
+        } catch (IOException e) {
+            throw new ParseException("could not read [" + page.getWebURL().getURL() + "]", e);
+        }
+        return parse(page, contextURL);
+    }
+
 }
 
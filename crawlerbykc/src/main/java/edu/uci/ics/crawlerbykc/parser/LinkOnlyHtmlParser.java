@@ -0,0 +1,588 @@
+package edu.uci.ics.crawlerbykc.parser;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.crawler.Page;
+import edu.uci.ics.crawlerbykc.crawler.exceptions.ParseException;
+import edu.uci.ics.crawlerbykc.url.TLDList;
+
+/**
+ * An HTML parser which only extracts the links, title and meta tags of a page, for crawls which
+ * do not need its text. It scans the raw bytes of the content for the tags it is interested in,
+ * without building a DOM or SAX events, and only decodes the attributes of those tags. The
+ * content must use a charset which is compatible with ASCII, as almost every page does. The
+ * text of the parse data is empty and its html is not set.
+ */
+public class LinkOnlyHtmlParser implements HtmlParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(LinkOnlyHtmlParser.class);
+
+    private static final int MAX_ANCHOR_LENGTH = 100;
+
+    private enum Element {
+        A,
+        AREA,
+        LINK,
+        IMG,
+        IFRAME,
+        FRAME,
+        EMBED,
+        SCRIPT,
+        BASE,
+        META,
+        TITLE,
+        STYLE,
+        TEXTAREA;
+
+        private final String tag = name().toLowerCase();
+    }
+
+    private static final Element[] ELEMENTS = Element.values();
+
+    private final LinkResolver linkResolver;
+
+    public LinkOnlyHtmlParser(CrawlConfig config, TLDList tldList) {
+        this.linkResolver = new LinkResolver(config, tldList);
+    }
+
+    @Override
+    public HtmlParseData parse(Page page, String contextURL) throws ParseException {
+        HtmlParseData parsedData = new HtmlParseData();
+
+        String pageCharset = page.getContentCharset();
+        Tokenizer tokenizer = new Tokenizer(page.getContentBuffer(), forName(pageCharset));
+        try {
+            tokenizer.run();
+        } catch (RuntimeException e) {
+            logger.error("{}, while parsing: {}", e.getMessage(), page.getWebURL().getURL());
+            throw new ParseException("could not parse [" + page.getWebURL().getURL() + "]", e);
+        }
+
+        String contentCharset = pageCharset == null || pageCharset.isEmpty() ? tokenizer.metaCharset : pageCharset;
+        parsedData.setContentCharset(contentCharset);
+
+        parsedData.setText("");
+        parsedData.setTitle(tokenizer.title);
+        parsedData.setMetaTags(tokenizer.metaTags);
+
+        try {
+            parsedData.setOutgoingUrls(linkResolver.getOutgoingUrls(contextURL, tokenizer.base, tokenizer.urls,
+                                                                    contentCharset));
+            return parsedData;
+        } catch (UnsupportedEncodingException e) {
+            logger.error("error parsing the html: " + page.getWebURL().getURL(), e);
+            throw new ParseException("could not parse [" + page.getWebURL().getURL() + "]", e);
+        }
+    }
+
+    /**
+     * @return the charset of the given name, or {@code null} if it is not known
+     */
+    private static Charset forName(String charsetName) {
+        if (charsetName == null || charsetName.isEmpty()) {
+            return null;
+        }
+        try {
+            return Charset.forName(charsetName.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scans the content of one page.
+     */
+    private static final class Tokenizer {
+
+        private final ByteBuffer content;
+        private final int end;
+        private int pos;
+
+        /**
+         * The charset to decode attributes with, which is taken from the meta tags if the page
+         * has none.
+         */
+        private Charset charset;
+        private final boolean hasCharset;
+
+        private final List<ExtractedUrlAnchorPair> urls = new ArrayList<>();
+        private final Map<String, String> metaTags = new HashMap<>();
+        private String base;
+        private String title;
+        private String metaCharset;
+        private boolean hasMetaRefresh;
+        private boolean hasMetaLocation;
+
+        private ExtractedUrlAnchorPair curAnchor;
+        private final StringBuilder anchorText = new StringBuilder();
+
+        private char[] chars = new char[256];
+
+        Tokenizer(ByteBuffer content, Charset charset) {
+            this.content = content;
+            this.end = content == null ? 0 : content.limit();
+            this.pos = 0;
+            this.hasCharset = charset != null;
+            this.charset = hasCharset ? charset : StandardCharsets.UTF_8;
+        }
+
+        void run() {
+            while (pos < end) {
+                int lt = indexOf((byte) '<', pos);
+                if (lt == -1) {
+                    text(pos, end);
+                    break;
+                }
+                text(pos, lt);
+                pos = lt + 1;
+                if (pos == end) {
+                    break;
+                }
+                byte b = content.get(pos);
+                if (b == '!') {
+                    pos = startsWith("!--", pos) ? skipPast("-->", pos + 3) : skipPast(">", pos);
+                } else if (b == '?') {
+                    pos = skipPast(">", pos);
+                } else if (b == '/') {
+                    pos++;
+                    endTag();
+                } else if (isLetter(b)) {
+                    startTag();
+                } else {
+                    // A '<' in the text
+                    text(lt, pos);
+                }
+            }
+            endAnchor();
+        }
+
+        private void startTag() {
+            int nameStart = pos;
+            skipName();
+            Element element = element(nameStart, pos);
+            if (element == null) {
+                attributes(null);
+                return;
+            }
+            Map<String, String> attributes = new HashMap<>();
+            attributes(attributes);
+            switch (element) {
+                case A:
+                case AREA:
+                case LINK:
+                    String href = attributes.get("href");
+                    if (href != null) {
+                        ExtractedUrlAnchorPair url = addToOutgoingUrls(href, element);
+                        url.setAttributes(attributes);
+                        if (element == Element.A) {
+                            endAnchor();
+                            curAnchor = url;
+                        }
+                    }
+                    break;
+                case IMG:
+                case IFRAME:
+                case FRAME:
+                case EMBED:
+                    addSrc(attributes, element);
+                    break;
+                case SCRIPT:
+                    addSrc(attributes, element);
+                    skipRawText(element);
+                    break;
+                case STYLE:
+                case TEXTAREA:
+                    skipRawText(element);
+                    break;
+                case TITLE:
+                    int textStart = pos;
+                    int textEnd = skipRawText(element);
+                    if (title == null) {
+                        title = decode(textStart, textEnd).trim();
+                    }
+                    break;
+                case BASE:
+                    // We only consider the first occurrence of the Base element.
+                    if (base == null) {
+                        base = attributes.get("href");
+                    }
+                    break;
+                case META:
+                    meta(attributes);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void addSrc(Map<String, String> attributes, Element element) {
+            String src = attributes.get("src");
+            if (src != null) {
+                addToOutgoingUrls(src, element);
+            }
+        }
+
+        private void meta(Map<String, String> attributes) {
+            String charsetAttribute = attributes.get("charset");
+            if (charsetAttribute != null) {
+                setMetaCharset(charsetAttribute);
+            }
+
+            String equiv = attributes.get("http-equiv");
+            if (equiv == null) { // This condition covers several cases of XHTML meta
+                equiv = attributes.get("name");
+            }
+            String value = attributes.get("content");
+            if (equiv == null || value == null) {
+                return;
+            }
+            equiv = equiv.toLowerCase();
+            metaTags.put(equiv, value);
+
+            if ("content-type".equals(equiv)) {
+                int index = value.toLowerCase().indexOf("charset=");
+                if (index != -1) {
+                    setMetaCharset(value.substring(index + 8));
+                }
+            } else if ("refresh".equals(equiv) && !hasMetaRefresh) {
+                // http-equiv="refresh" content="0;URL=http://foo.bar/..."
+                int index = value.toLowerCase().indexOf("url=");
+                if (index != -1) {
+                    hasMetaRefresh = true;
+                    addToOutgoingUrls(value.substring(index + 4), Element.META);
+                }
+            } else if ("location".equals(equiv) && !hasMetaLocation) {
+                // http-equiv="location" content="http://foo.bar/..."
+                hasMetaLocation = true;
+                addToOutgoingUrls(value, Element.META);
+            }
+        }
+
+        private void setMetaCharset(String name) {
+            if (metaCharset == null) {
+                metaCharset = name.trim();
+                Charset found = forName(metaCharset);
+                if (!hasCharset && found != null) {
+                    charset = found;
+                }
+            }
+        }
+
+        private ExtractedUrlAnchorPair addToOutgoingUrls(String href, Element element) {
+            ExtractedUrlAnchorPair url = new ExtractedUrlAnchorPair();
+            url.setHref(href);
+            url.setTag(element.tag);
+            urls.add(url);
+            return url;
+        }
+
+        private void endTag() {
+            int nameStart = pos;
+            skipName();
+            if (curAnchor != null && element(nameStart, pos) == Element.A) {
+                endAnchor();
+            }
+            pos = skipPast(">", pos);
+        }
+
+        private void endAnchor() {
+            if (curAnchor != null) {
+                String anchor = anchorText.toString().replace('\n', ' ').replace('\t', ' ').trim();
+                if (!anchor.isEmpty()) {
+                    if (anchor.length() > MAX_ANCHOR_LENGTH) {
+                        anchor = anchor.substring(0, MAX_ANCHOR_LENGTH) + "...";
+                    }
+                    curAnchor.setAnchor(anchor);
+                }
+                anchorText.setLength(0);
+                curAnchor = null;
+            }
+        }
+
+        /**
+         * Collects the text between tags within an anchor, which is the only text we need.
+         */
+        private void text(int from, int to) {
+            if (curAnchor != null && from < to && anchorText.length() <= MAX_ANCHOR_LENGTH) {
+                anchorText.append(decode(from, to));
+            }
+        }
+
+        /**
+         * Reads the attributes of a tag up to its end.
+         *
+         * @param attributes the map to put the attributes into, with their names in lower case,
+         *                   or {@code null} to skip them
+         */
+        private void attributes(Map<String, String> attributes) {
+            while (pos < end) {
+                skipSpaces();
+                if (pos == end) {
+                    return;
+                }
+                byte b = content.get(pos);
+                if (b == '>') {
+                    pos++;
+                    return;
+                }
+                int nameStart = pos;
+                skipName();
+                int nameEnd = pos;
+                if (nameEnd == nameStart) {
+                    // A stray character, like a '/' or a quote
+                    pos++;
+                    continue;
+                }
+                while (pos < end && isSpace(content.get(pos))) {
+                    pos++;
+                }
+                String value = "";
+                if (pos < end && content.get(pos) == '=') {
+                    pos++;
+                    while (pos < end && isSpace(content.get(pos))) {
+                        pos++;
+                    }
+                    int valueStart;
+                    int valueEnd;
+                    if (pos < end && (content.get(pos) == '"' || content.get(pos) == '\'')) {
+                        byte quote = content.get(pos);
+                        valueStart = pos + 1;
+                        int close = indexOf(quote, valueStart);
+                        valueEnd = close == -1 ? end : close;
+                        pos = close == -1 ? end : close + 1;
+                    } else {
+                        valueStart = pos;
+                        while (pos < end && !isSpace(content.get(pos)) && content.get(pos) != '>') {
+                            pos++;
+                        }
+                        valueEnd = pos;
+                    }
+                    if (attributes != null) {
+                        value = decode(valueStart, valueEnd);
+                    }
+                }
+                if (attributes != null) {
+                    attributes.putIfAbsent(lowerCase(nameStart, nameEnd), value);
+                }
+            }
+        }
+
+        /**
+         * Skips the content of an element which holds no tags, up to its end tag.
+         *
+         * @return where the content ends
+         */
+        private int skipRawText(Element element) {
+            int from = pos;
+            while (from < end) {
+                int lt = indexOf((byte) '<', from);
+                if (lt == -1 || lt + 1 == end) {
+                    break;
+                }
+                if (content.get(lt + 1) == '/') {
+                    int nameStart = lt + 2;
+                    int nameEnd = nameStart;
+                    while (nameEnd < end && isLetter(content.get(nameEnd))) {
+                        nameEnd++;
+                    }
+                    if (nameIs(nameStart, nameEnd, element.tag)) {
+                        pos = skipPast(">", nameEnd);
+                        return lt;
+                    }
+                }
+                from = lt + 1;
+            }
+            pos = end;
+            return end;
+        }
+
+        private Element element(int nameStart, int nameEnd) {
+            for (Element element : ELEMENTS) {
+                if (nameIs(nameStart, nameEnd, element.tag)) {
+                    return element;
+                }
+            }
+            return null;
+        }
+
+        private boolean nameIs(int nameStart, int nameEnd, String name) {
+            if (nameEnd - nameStart != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < name.length(); i++) {
+                if (toLowerCase(content.get(nameStart + i)) != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void skipName() {
+            while (pos < end) {
+                byte b = content.get(pos);
+                if (isSpace(b) || b == '>' || b == '/' || b == '=') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private void skipSpaces() {
+            while (pos < end && (isSpace(content.get(pos)) || content.get(pos) == '/')) {
+                pos++;
+            }
+        }
+
+        private boolean startsWith(String s, int from) {
+            if (end - from < s.length()) {
+                return false;
+            }
+            for (int i = 0; i < s.length(); i++) {
+                if (content.get(from + i) != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the position after the next occurrence of the given string, or the end
+         */
+        private int skipPast(String s, int from) {
+            byte first = (byte) s.charAt(0);
+            while (true) {
+                int i = indexOf(first, from);
+                if (i == -1) {
+                    return end;
+                }
+                if (startsWith(s, i)) {
+                    return i + s.length();
+                }
+                from = i + 1;
+            }
+        }
+
+        private int indexOf(byte b, int from) {
+            for (int i = from; i < end; i++) {
+                if (content.get(i) == b) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private String lowerCase(int from, int to) {
+            char[] buffer = chars(to - from);
+            for (int i = from; i < to; i++) {
+                buffer[i - from] = toLowerCase(content.get(i));
+            }
+            return new String(buffer, 0, to - from);
+        }
+
+        /**
+         * Decodes the bytes in the given range, and their character references. ASCII is copied
+         * as is, only other bytes are decoded with the charset.
+         */
+        private String decode(int from, int to) {
+            char[] buffer = chars(to - from);
+            boolean hasReferences = false;
+            for (int i = from; i < to; i++) {
+                byte b = content.get(i);
+                if (b < 0) {
+                    ByteBuffer bytes = content.duplicate();
+                    bytes.limit(to).position(from);
+                    return decodeReferences(charset.decode(bytes).toString());
+                }
+                hasReferences |= b == '&';
+                buffer[i - from] = (char) b;
+            }
+            String s = new String(buffer, 0, to - from);
+            return hasReferences ? decodeReferences(s) : s;
+        }
+
+        private char[] chars(int length) {
+            if (chars.length < length) {
+                chars = new char[Math.max(length, 2 * chars.length)];
+            }
+            return chars;
+        }
+    }
+
+    /**
+     * Decodes the character references of the given text which are common in links: the
+     * numeric ones and those of the characters which HTML needs to escape.
+     */
+    static String decodeReferences(String s) {
+        int amp = s.indexOf('&');
+        if (amp == -1) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        int from = 0;
+        while (amp != -1) {
+            int semicolon = s.indexOf(';', amp);
+            String decoded = semicolon == -1 || semicolon - amp > 10 ? null :
+                             decodeReference(s.substring(amp + 1, semicolon));
+            if (decoded == null) {
+                sb.append(s, from, amp + 1);
+                from = amp + 1;
+            } else {
+                sb.append(s, from, amp).append(decoded);
+                from = semicolon + 1;
+            }
+            amp = s.indexOf('&', from);
+        }
+        return sb.append(s, from, s.length()).toString();
+    }
+
+    private static String decodeReference(String name) {
+        switch (name) {
+            case "amp":
+                return "&";
+            case "lt":
+                return "<";
+            case "gt":
+                return ">";
+            case "quot":
+                return "\"";
+            case "apos":
+                return "'";
+            case "nbsp":
+                return "\u00a0";
+            default:
+                if (name.length() > 1 && name.charAt(0) == '#') {
+                    try {
+                        boolean hex = name.charAt(1) == 'x' || name.charAt(1) == 'X';
+                        int codePoint = Integer.parseInt(name.substring(hex ? 2 : 1), hex ? 16 : 10);
+                        return new String(Character.toChars(codePoint));
+                    } catch (IllegalArgumentException e) {
+                        return null;
+                    }
+                }
+                return null;
+        }
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+    }
+
+    private static boolean isLetter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static char toLowerCase(byte b) {
+        return (char) (b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b & 0xff);
+    }
+}
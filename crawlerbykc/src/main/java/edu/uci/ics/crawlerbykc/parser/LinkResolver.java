@@ -0,0 +1,71 @@
+package edu.uci.ics.crawlerbykc.parser;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.url.TLDList;
+import edu.uci.ics.crawlerbykc.url.URLCanonicalizer;
+import edu.uci.ics.crawlerbykc.url.WebURL;
+
+/**
+ * Resolves the links extracted from an HTML page into the outgoing urls of the page.
+ */
+class LinkResolver {
+
+    private final CrawlConfig config;
+    private final TLDList tldList;
+
+    LinkResolver(CrawlConfig config, TLDList tldList) {
+        this.config = config;
+        this.tldList = tldList;
+    }
+
+    /**
+     * @param baseURL the href of the base element of the page, or {@code null}
+     */
+    Set<WebURL> getOutgoingUrls(String contextURL, String baseURL, List<ExtractedUrlAnchorPair> urlAnchorPairs,
+                                String contentCharset) throws UnsupportedEncodingException {
+        Set<WebURL> outgoingUrls = new HashSet<>();
+
+        if (baseURL != null) {
+            contextURL = baseURL;
+        }
+
+        int urlCount = 0;
+        for (ExtractedUrlAnchorPair urlAnchorPair : urlAnchorPairs) {
+
+            String href = urlAnchorPair.getHref();
+            if ((href == null) || href.trim().isEmpty()) {
+                continue;
+            }
+
+            String hrefLoweredCase = href.trim().toLowerCase();
+            if (!hrefLoweredCase.contains("javascript:") &&
+                    !hrefLoweredCase.contains("mailto:") && !hrefLoweredCase.contains("@")) {
+                // Prefer page's content charset to encode href url
+                Charset hrefCharset = ((contentCharset == null) || contentCharset.isEmpty()) ?
+                        StandardCharsets.UTF_8 : Charset.forName(contentCharset);
+                String url = URLCanonicalizer.getCanonicalURL(href, contextURL, hrefCharset);
+                if (url != null) {
+                    WebURL webURL = new WebURL();
+                    webURL.setTldList(tldList);
+                    webURL.setURL(url);
+                    webURL.setTag(urlAnchorPair.getTag());
+                    webURL.setAnchor(urlAnchorPair.getAnchor());
+                    webURL.setAttributes(urlAnchorPair.getAttributes());
+                    outgoingUrls.add(webURL);
+                    urlCount++;
+                    if (urlCount > config.getMaxOutgoingLinksToFollow()) {
+                        break;
+                    }
+                }
+            }
+        }
+        return outgoingUrls;
+    }
+}
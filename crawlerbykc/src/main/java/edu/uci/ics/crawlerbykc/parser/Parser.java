@@ -17,6 +17,8 @@
 
 package edu.uci.ics.crawlerbykc.parser;
 
+import java.io.InputStream;
+
 import org.apache.tika.language.LanguageIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,11 +45,11 @@ public class Parser {
 
     @Deprecated
     public Parser(CrawlConfig config) throws IllegalAccessException, InstantiationException {
-        this(config, new TikaHtmlParser(config, null));
+        this(config, newHtmlParser(config, null));
     }
 
     public Parser(CrawlConfig config, TLDList tldList) throws IllegalAccessException, InstantiationException {
-        this(config, new TikaHtmlParser(config, tldList), tldList);
+        this(config, newHtmlParser(config, tldList), tldList);
     }
 
     @Deprecated
@@ -61,6 +63,14 @@ public class Parser {
         this.net = new Net(config, tldList);
     }
 
+    private static HtmlParser newHtmlParser(CrawlConfig config, TLDList tldList)
+        throws IllegalAccessException, InstantiationException {
+        if (config.isLinkOnlyParsing()) {
+            return new LinkOnlyHtmlParser(config, tldList);
+        }
+        return new TikaHtmlParser(config, tldList);
+    }
+
     public void parse(Page page, String contextURL) throws NotAllowedContentException, ParseException {
         if (Util.hasBinaryContent(page.getContentType())) { // BINARY
             BinaryParseData parseData = new BinaryParseData();
@@ -89,12 +99,7 @@ public class Parser {
         } else if (Util.hasCssTextContent(page.getContentType())) { // text/css
             try {
                 CssParseData parseData = new CssParseData();
-                if (page.getContentCharset() == null) {
-                    parseData.setTextContent(new String(page.getContentData()));
-                } else {
-                    parseData.setTextContent(
-                        new String(page.getContentData(), page.getContentCharset()));
-                }
+                parseData.setTextContent(page.getContentString(page.getContentCharset()));
                 parseData.setOutgoingUrls(page.getWebURL());
                 page.setParseData(parseData);
             } catch (Exception e) {
@@ -104,12 +109,7 @@ public class Parser {
         } else if (Util.hasPlainTextContent(page.getContentType())) { // plain Text
             try {
                 TextParseData parseData = new TextParseData();
-                if (page.getContentCharset() == null) {
-                    parseData.setTextContent(new String(page.getContentData()));
-                } else {
-                    parseData.setTextContent(
-                        new String(page.getContentData(), page.getContentCharset()));
-                }
+                parseData.setTextContent(page.getContentString(page.getContentCharset()));
                 parseData.setOutgoingUrls(net.extractUrls(parseData.getTextContent()));
                 page.setParseData(parseData);
             } catch (Exception e) {
@@ -118,19 +118,41 @@ public class Parser {
             }
         } else { // isHTML
 
-            HtmlParseData parsedData = this.htmlContentParser.parse(page, contextURL);
+            setHtmlParseData(page, this.htmlContentParser.parse(page, contextURL));
+        }
+    }
 
-            if (page.getContentCharset() == null) {
-                page.setContentCharset(parsedData.getContentCharset());
-            }
+    /**
+     * Parses an HTML page while its content is read from a stream, without loading it into the
+     * page. The content type of the page must have been loaded.
+     *
+     * @param content the content of the page, which is closed afterwards
+     * @throws ParseException caused by an IOException if the content could not be read
+     */
+    public void parse(Page page, InputStream content, String contextURL) throws ParseException {
+        setHtmlParseData(page, this.htmlContentParser.parse(page, content, contextURL));
+    }
 
-            // Please note that identifying language takes less than 10 milliseconds
-            LanguageIdentifier languageIdentifier = new LanguageIdentifier(parsedData.getText());
-            page.setLanguage(languageIdentifier.getLanguage());
+    /**
+     * @return whether pages of the given content type are parsed as HTML
+     */
+    public boolean isHtml(String contentType) {
+        return !Util.hasBinaryContent(contentType) && !Util.hasCssTextContent(contentType) &&
+               !Util.hasPlainTextContent(contentType);
+    }
 
-            page.setParseData(parsedData);
+    private void setHtmlParseData(Page page, HtmlParseData parsedData) {
+        if (page.getContentCharset() == null) {
+            page.setContentCharset(parsedData.getContentCharset());
+        }
 
+        if (config.isLanguageDetection()) {
+            // Identifying the language takes up to 10 milliseconds, and needs the text, so both
+            // are only done when the language is asked for
+            page.setLanguageSupplier(() -> new LanguageIdentifier(parsedData.getText()).getLanguage());
         }
+
+        page.setParseData(parsedData);
     }
 }
 
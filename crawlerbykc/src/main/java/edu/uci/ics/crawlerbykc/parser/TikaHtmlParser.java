@@ -1,11 +1,8 @@
 package edu.uci.ics.crawlerbykc.parser;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
 import java.util.Set;
 
 import org.apache.tika.metadata.DublinCore;
@@ -20,38 +17,74 @@ import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
 import edu.uci.ics.crawlerbykc.crawler.Page;
 import edu.uci.ics.crawlerbykc.crawler.exceptions.ParseException;
 import edu.uci.ics.crawlerbykc.url.TLDList;
-import edu.uci.ics.crawlerbykc.url.URLCanonicalizer;
 import edu.uci.ics.crawlerbykc.url.WebURL;
 
 public class TikaHtmlParser implements edu.uci.ics.crawlerbykc.parser.HtmlParser {
     protected static final Logger logger = LoggerFactory.getLogger(TikaHtmlParser.class);
 
-    private final CrawlConfig config;
-    private final TLDList tldList;
+    private final LinkResolver linkResolver;
 
     private final HtmlParser htmlParser;
     private final ParseContext parseContext;
 
+    /**
+     * The handler and the metadata are reused for the pages which a thread parses
+     */
+    private final ThreadLocal<HtmlContentHandler> contentHandlers = ThreadLocal.withInitial(HtmlContentHandler::new);
+    private final ThreadLocal<Metadata> metadatas = ThreadLocal.withInitial(Metadata::new);
+
     public TikaHtmlParser(CrawlConfig config, TLDList tldList) throws InstantiationException, IllegalAccessException {
-        this.config = config;
-        this.tldList = tldList;
+        this.linkResolver = new LinkResolver(config, tldList);
 
         htmlParser = new HtmlParser();
         parseContext = new ParseContext();
         parseContext.set(HtmlMapper.class, AllTagMapper.class.newInstance());
     }
 
+    /**
+     * Parses a page from its content. The html of the parse data is only decoded from the
+     * content when it is first asked for, so it must be asked for before the content of the
+     * page is released.
+     */
     public HtmlParseData parse(Page page, String contextURL) throws ParseException {
+        String charsetName = page.getContentCharset();
+        if (charsetName != null && !isSupported(charsetName)) {
+            UnsupportedEncodingException e = new UnsupportedEncodingException(charsetName);
+            logger.error("error parsing the html: " + page.getWebURL().getURL(), e);
+            throw new ParseException("could not parse [" + page.getWebURL().getURL() + "]", e);
+        }
+        HtmlParseData parsedData = parse(page, page.getContentStream(), contextURL);
+        parsedData.setHtmlSupplier(() -> {
+            try {
+                return page.getContentString(charsetName);
+            } catch (UnsupportedEncodingException e) {
+                // The charset was checked before
+                throw new IllegalStateException(e);
+            }
+        });
+        return parsedData;
+    }
+
+    /**
+     * Parses a page while its content is read from a stream, which is how it is received in
+     * streaming mode. The html of the parse data is not set.
+     */
+    @Override
+    public HtmlParseData parse(Page page, InputStream content, String contextURL) throws ParseException {
         HtmlParseData parsedData = new HtmlParseData();
 
-        HtmlContentHandler contentHandler = new HtmlContentHandler();
-        Metadata metadata = new Metadata();
+        HtmlContentHandler contentHandler = contentHandlers.get();
+        contentHandler.reset();
+        Metadata metadata = metadatas.get();
+        for (String name : metadata.names()) {
+            metadata.remove(name);
+        }
 
         if (page.getContentType() != null) {
             metadata.add(Metadata.CONTENT_TYPE, page.getContentType());
         }
 
-        try (InputStream inputStream = new ByteArrayInputStream(page.getContentData())) {
+        try (InputStream inputStream = content) {
             htmlParser.parse(inputStream, contentHandler, metadata, parseContext);
         } catch (Exception e) {
             logger.error("{}, while parsing: {}", e.getMessage(), page.getWebURL().getURL());
@@ -61,20 +94,17 @@ public class TikaHtmlParser implements edu.uci.ics.crawlerbykc.parser.HtmlParser
         String contentCharset = chooseEncoding(page, metadata);
         parsedData.setContentCharset(contentCharset);
 
-        parsedData.setText(contentHandler.getBodyText().trim());
+        CharSequence bodyText = contentHandler.getBodyTextBuffer();
+        parsedData.setTextSupplier(() -> bodyText.toString().trim());
         parsedData.setTitle(metadata.get(DublinCore.TITLE));
         parsedData.setMetaTags(contentHandler.getMetaTags());
 
         try {
-            Set<WebURL> outgoingUrls = getOutgoingUrls(contextURL, contentHandler, contentCharset);
+            Set<WebURL> outgoingUrls = linkResolver.getOutgoingUrls(contextURL, contentHandler.getBaseUrl(),
+                                                                    contentHandler.getOutgoingUrls(),
+                                                                    contentCharset);
             parsedData.setOutgoingUrls(outgoingUrls);
 
-            if (page.getContentCharset() == null) {
-                parsedData.setHtml(new String(page.getContentData()));
-            } else {
-                parsedData.setHtml(new String(page.getContentData(), page.getContentCharset()));
-            }
-
             return parsedData;
         } catch (UnsupportedEncodingException e) {
             logger.error("error parsing the html: " + page.getWebURL().getURL(), e);
@@ -83,46 +113,12 @@ public class TikaHtmlParser implements edu.uci.ics.crawlerbykc.parser.HtmlParser
 
     }
 
-    private Set<WebURL> getOutgoingUrls(String contextURL, HtmlContentHandler contentHandler, String contentCharset)
-            throws UnsupportedEncodingException {
-        Set<WebURL> outgoingUrls = new HashSet<>();
-
-        String baseURL = contentHandler.getBaseUrl();
-        if (baseURL != null) {
-            contextURL = baseURL;
-        }
-
-        int urlCount = 0;
-        for (ExtractedUrlAnchorPair urlAnchorPair : contentHandler.getOutgoingUrls()) {
-
-            String href = urlAnchorPair.getHref();
-            if ((href == null) || href.trim().isEmpty()) {
-                continue;
-            }
-
-            String hrefLoweredCase = href.trim().toLowerCase();
-            if (!hrefLoweredCase.contains("javascript:") &&
-                    !hrefLoweredCase.contains("mailto:") && !hrefLoweredCase.contains("@")) {
-                // Prefer page's content charset to encode href url
-                Charset hrefCharset = ((contentCharset == null) || contentCharset.isEmpty()) ?
-                        StandardCharsets.UTF_8 : Charset.forName(contentCharset);
-                String url = URLCanonicalizer.getCanonicalURL(href, contextURL, hrefCharset);
-                if (url != null) {
-                    WebURL webURL = new WebURL();
-                    webURL.setTldList(tldList);
-                    webURL.setURL(url);
-                    webURL.setTag(urlAnchorPair.getTag());
-                    webURL.setAnchor(urlAnchorPair.getAnchor());
-                    webURL.setAttributes(urlAnchorPair.getAttributes());
-                    outgoingUrls.add(webURL);
-                    urlCount++;
-                    if (urlCount > config.getMaxOutgoingLinksToFollow()) {
-                        break;
-                    }
-                }
-            }
+    private static boolean isSupported(String charsetName) {
+        try {
+            return Charset.isSupported(charsetName);
+        } catch (IllegalArgumentException e) {
+            return false;
         }
-        return outgoingUrls;
     }
 
     private String chooseEncoding(Page page, Metadata metadata) {
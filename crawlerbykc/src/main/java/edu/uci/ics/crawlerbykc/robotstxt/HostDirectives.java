@@ -145,6 +145,27 @@ public class HostDirectives {
         rules.add(directives);
     }
 
+    /**
+     * Returns the Crawl-delay which applies to the configured user agent: the one of the most
+     * specific user agent clause which has one, capped at the configured maximum.
+     *
+     * @return the Crawl-delay in milliseconds, or 0 if there is none
+     * @see RobotstxtConfig#setMaxCrawlDelay(long)
+     */
+    public long getCrawlDelayMillis() {
+        String myUA = config.getUserAgentName();
+        for (UserAgentDirectives ua : rules) {
+            if (ua.match(myUA) == 0) {
+                break;
+            }
+            Double crawlDelay = ua.getCrawlDelay();
+            if (crawlDelay != null && crawlDelay > 0) {
+                return (long) Math.min(crawlDelay * 1000, config.getMaxCrawlDelay());
+            }
+        }
+        return 0;
+    }
+
     public long getLastAccessTime() {
         return timeLastAccessed;
     }
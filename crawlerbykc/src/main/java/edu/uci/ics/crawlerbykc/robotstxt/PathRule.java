@@ -11,6 +11,9 @@ public class PathRule {
     public int type;
     public Pattern pattern;
 
+    /** The pattern as written in robots.txt */
+    public String robotsPattern;
+
     /**
      * Match a pattern defined in a robots.txt file to a path
      * Following the pattern definition as stated on:
@@ -117,6 +120,7 @@ public class PathRule {
     public PathRule(int type, String pattern) {
         this.type = type;
         this.pattern = robotsPatternToRegexp(pattern);
+        this.robotsPattern = pattern;
     }
 
     /**
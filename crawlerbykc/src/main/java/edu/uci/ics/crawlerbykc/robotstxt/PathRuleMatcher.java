@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.robotstxt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The path rules of a user agent, compiled once so that a path is checked against all of them
+ * in one pass. Rules without inner wildcards are kept in a trie of their literal prefixes, which
+ * is walked along the path. Rules with inner wildcards are matched literal by literal, without
+ * regular expressions.
+ *
+ * The verdict is the one of the matching rule with the longest regular expression, then of the
+ * alphabetically first one, as the rules were ordered before. Of an allow and a disallow rule
+ * with the same pattern, the allow rule wins.
+ */
+class PathRuleMatcher {
+
+    /** Orders the rules the way they are tried, the first matching one decides */
+    private static final Comparator<CompiledRule> RULE_ORDER =
+        Comparator.comparingInt((CompiledRule rule) -> -rule.regexp.length())
+                  .thenComparing(rule -> rule.regexp)
+                  .thenComparingInt(rule -> rule.type == HostDirectives.ALLOWED ? 0 : 1);
+
+    private static class CompiledRule {
+        final int type;
+        final PathRule rule;
+        final String regexp;
+        /** The literal parts of the pattern, the first one at the start of the path */
+        final String[] literals;
+        /** The minimum number of characters before each literal, matched by wildcards */
+        final int[] gaps;
+        /** Whether the pattern ends with $, so that the last literal ends the path */
+        final boolean anchored;
+
+        CompiledRule(PathRule rule, String[] literals, int[] gaps, boolean anchored) {
+            this.type = rule.type;
+            this.rule = rule;
+            this.regexp = rule.pattern.toString();
+            this.literals = literals;
+            this.gaps = gaps;
+            this.anchored = anchored;
+        }
+
+        boolean matches(String path) {
+            if (!path.startsWith(literals[0])) {
+                return false;
+            }
+            int pos = literals[0].length();
+            int last = literals.length - 1;
+            if (last == 0) {
+                return !anchored || pos == path.length();
+            }
+            // The gaps have no maximum length, so the leftmost match of each literal leaves
+            // the most room for the ones after it
+            for (int i = 1; i < last; i++) {
+                int from = pos + gaps[i];
+                int found = from > path.length() ? -1 : path.indexOf(literals[i], from);
+                if (found < 0) {
+                    return false;
+                }
+                pos = found + literals[i].length();
+            }
+            int from = pos + gaps[last];
+            if (anchored) {
+                int start = path.length() - literals[last].length();
+                return start >= from && path.startsWith(literals[last], start);
+            }
+            return from <= path.length() && path.indexOf(literals[last], from) >= 0;
+        }
+    }
+
+    private static class Node {
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        /** The first rule matching the paths which start with the prefix of this node */
+        CompiledRule prefixRule;
+        /** The first rule matching only the path which is the prefix of this node */
+        CompiledRule exactRule;
+
+        Node child(char label) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == label) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(char label) {
+            Node child = child(label);
+            if (child == null) {
+                child = new Node();
+                labels = Arrays.copyOf(labels, labels.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                labels[labels.length - 1] = label;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+
+    private final Node root = new Node();
+
+    /** The rules with inner wildcards, in the order in which they are tried */
+    private final List<CompiledRule> wildcardRules = new ArrayList<>();
+
+    /** All of the rules in the order in which they are tried */
+    private final List<CompiledRule> allRules = new ArrayList<>();
+
+    PathRuleMatcher(Collection<PathRule> pathRules) {
+        for (PathRule pathRule : pathRules) {
+            CompiledRule rule = compile(pathRule);
+            allRules.add(rule);
+            if (rule.literals.length == 1) {
+                Node node = root;
+                for (int i = 0; i < rule.literals[0].length(); i++) {
+                    node = node.addChild(rule.literals[0].charAt(i));
+                }
+                if (rule.anchored) {
+                    node.exactRule = first(node.exactRule, rule);
+                } else {
+                    node.prefixRule = first(node.prefixRule, rule);
+                }
+            } else {
+                wildcardRules.add(rule);
+            }
+        }
+        wildcardRules.sort(RULE_ORDER);
+        allRules.sort(RULE_ORDER);
+    }
+
+    /**
+     * @param path the path to check
+     * @return the type of the first matching rule, or UNDEFINED if none matches
+     */
+    int checkAccess(String path) {
+        if (hasLineTerminator(path)) {
+            // The wildcards of the regular expressions do not match line terminators
+            for (CompiledRule rule : allRules) {
+                if (rule.rule.matches(path)) {
+                    return rule.type;
+                }
+            }
+            return HostDirectives.UNDEFINED;
+        }
+
+        CompiledRule best = null;
+        Node node = root;
+        for (int i = 0; node != null; i++) {
+            best = first(best, node.prefixRule);
+            if (i == path.length()) {
+                best = first(best, node.exactRule);
+                break;
+            }
+            node = node.child(path.charAt(i));
+        }
+        for (CompiledRule rule : wildcardRules) {
+            if (best != null && RULE_ORDER.compare(rule, best) > 0) {
+                break;
+            }
+            if (rule.matches(path)) {
+                best = rule;
+                break;
+            }
+        }
+        return best == null ? HostDirectives.UNDEFINED : best.type;
+    }
+
+    private static CompiledRule first(CompiledRule current, CompiledRule rule) {
+        if (current == null) {
+            return rule;
+        }
+        return rule == null || RULE_ORDER.compare(current, rule) <= 0 ? current : rule;
+    }
+
+    private static boolean hasLineTerminator(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            char ch = path.charAt(i);
+            if (ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits a robots.txt pattern into literals and wildcards the same way
+     * {@link PathRule#robotsPatternToRegexp(String)} does: a * matches one or more characters,
+     * or any characters at the end of the pattern, and a $ at the end anchors the pattern at
+     * the end of the path.
+     */
+    private static CompiledRule compile(PathRule rule) {
+        String pattern = rule.robotsPattern;
+        List<String> literals = new ArrayList<>();
+        List<Integer> gaps = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int gap = 0;
+        boolean anchored = pattern.isEmpty();
+
+        for (int pos = 0; pos < pattern.length(); ++pos) {
+            char ch = pattern.charAt(pos);
+            boolean last = pos == pattern.length() - 1;
+            if (ch == '\\') {
+                if (!last && pattern.charAt(pos + 1) == '*') {
+                    literal.append('*');
+                    ++pos;
+                } else {
+                    literal.append(ch);
+                }
+            } else if (ch == '*') {
+                if (literals.isEmpty() || literal.length() > 0) {
+                    literals.add(literal.toString());
+                    gaps.add(gap);
+                    literal.setLength(0);
+                    gap = 0;
+                }
+                if (!last) {
+                    gap++;
+                }
+            } else if (ch == '$' && last) {
+                anchored = true;
+            } else {
+                literal.append(ch);
+            }
+        }
+        if (literals.isEmpty() || literal.length() > 0 || gap > 0 || anchored) {
+            literals.add(literal.toString());
+            gaps.add(gap);
+        }
+
+        int[] gapArray = new int[gaps.size()];
+        for (int i = 0; i < gapArray.length; i++) {
+            gapArray[i] = gaps.get(i);
+        }
+        return new CompiledRule(rule, literals.toArray(new String[0]), gapArray, anchored);
+    }
+}
@@ -46,6 +46,18 @@ public class RobotstxtConfig {
      */
     private int cacheSize = 500;
 
+    /**
+     * Whether to keep the Crawl-delay of robots.txt between the requests to a host, when it is
+     * longer than the politeness delay.
+     */
+    private boolean honorCrawlDelay = true;
+
+    /**
+     * The longest Crawl-delay which is honored, in milliseconds. Longer Crawl-delays are cut to
+     * it, so that a host cannot stall the crawl of its pages for hours.
+     */
+    private long maxCrawlDelay = 30000;
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -70,6 +82,26 @@ public class RobotstxtConfig {
         this.cacheSize = cacheSize;
     }
 
+    public boolean isHonorCrawlDelay() {
+        return honorCrawlDelay;
+    }
+
+    public void setHonorCrawlDelay(boolean honorCrawlDelay) {
+        this.honorCrawlDelay = honorCrawlDelay;
+    }
+
+    public long getMaxCrawlDelay() {
+        return maxCrawlDelay;
+    }
+
+    /**
+     * @param maxCrawlDelay the longest Crawl-delay which is honored, in milliseconds. Default is
+     * 30000.
+     */
+    public void setMaxCrawlDelay(long maxCrawlDelay) {
+        this.maxCrawlDelay = maxCrawlDelay;
+    }
+
     public void setIgnoreUADiscrimination(boolean ignore) {
         this.ignoreUADiscrimination = ignore;
     }
@@ -22,7 +22,13 @@ import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.http.HttpStatus;
 import org.apache.http.NoHttpResponseException;
@@ -34,6 +40,7 @@ import edu.uci.ics.crawlerbykc.crawler.Page;
 import edu.uci.ics.crawlerbykc.crawler.exceptions.PageBiggerThanMaxSizeException;
 import edu.uci.ics.crawlerbykc.fetcher.PageFetchResult;
 import edu.uci.ics.crawlerbykc.fetcher.PageFetcher;
+import edu.uci.ics.crawlerbykc.fetcher.PolitenessScheduler;
 import edu.uci.ics.crawlerbykc.url.WebURL;
 import edu.uci.ics.crawlerbykc.util.Util;
 
@@ -48,7 +55,37 @@ public class RobotstxtServer {
 
     protected CrawlConfig crawlConfig;
 
-    protected final Map<String, HostDirectives> host2directivesCache = new HashMap<>();
+    /**
+     * The directives of the most recently used hosts, in access order so that the least recently
+     * used one is evicted in constant time. Hosts are keyed with their port, if it is not the
+     * default one. Guarded by cacheLock. The Crawl-delays of the cached hosts are kept in the
+     * politeness scheduler.
+     */
+    protected final Map<String, HostDirectives> host2directivesCache =
+        new LinkedHashMap<String, HostDirectives>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, HostDirectives> eldest) {
+                if (size() > config.getCacheSize()) {
+                    removeCrawlDelay(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    /** The politeness keys of the cached hosts whose Crawl-delay was set. Guarded by cacheLock. */
+    private final Map<String, String> host2hostKey = new HashMap<>();
+
+    /** The fetches of robots.txt in progress, awaited by all of the callers which need them */
+    private final Map<String, CompletableFuture<HostDirectives>> inFlightFetches = new HashMap<>();
+
+    private final ReentrantLock cacheLock = new ReentrantLock();
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder coalescedFetches = new LongAdder();
+    private final LongAdder fetchNanos = new LongAdder();
 
     protected PageFetcher pageFetcher;
 
@@ -65,7 +102,11 @@ public class RobotstxtServer {
     }
 
     private static String getHost(URL url) {
-        return url.getHost().toLowerCase();
+        return url.getHost().toLowerCase() + getPort(url);
+    }
+
+    private static String getPort(URL url) {
+        return ((url.getPort() == url.getDefaultPort()) || (url.getPort() == -1)) ? "" : (":" + url.getPort());
     }
 
     /**
@@ -80,36 +121,68 @@ public class RobotstxtServer {
         }
         try {
             URL url = new URL(webURL.getURL());
-            String host = getHost(url);
             String path = url.getPath();
+            return getDirectives(url, webURL).allows(path);
+        } catch (MalformedURLException e) {
+            logger.error("Bad URL in Robots.txt: " + webURL.getURL(), e);
+        }
 
-            HostDirectives directives = host2directivesCache.get(host);
+        logger.warn("RobotstxtServer: default: allow", webURL.getURL());
+        return true;
+    }
 
+    /**
+     * Returns the cached directives of the host of the url. On a miss, the first caller fetches
+     * robots.txt while the other callers for the same host wait for that fetch.
+     */
+    private HostDirectives getDirectives(URL url, WebURL webURL) throws IOException, InterruptedException {
+        String host = getHost(url);
+        CompletableFuture<HostDirectives> fetch;
+        boolean fetching = false;
+        cacheLock.lock();
+        try {
+            HostDirectives directives = host2directivesCache.get(host);
             if (directives != null && directives.needsRefetch()) {
-                synchronized (host2directivesCache) {
-                    host2directivesCache.remove(host);
-                    directives = null;
-                }
+                host2directivesCache.remove(host);
+                directives = null;
             }
-            if (directives == null) {
-                directives = fetchDirectives(url);
+            if (directives != null) {
+                cacheHits.increment();
+                return directives;
             }
-            return directives.allows(path);
-        } catch (MalformedURLException e) {
-            logger.error("Bad URL in Robots.txt: " + webURL.getURL(), e);
+            cacheMisses.increment();
+            fetch = inFlightFetches.get(host);
+            if (fetch != null) {
+                coalescedFetches.increment();
+            } else {
+                fetch = new CompletableFuture<>();
+                inFlightFetches.put(host, fetch);
+                fetching = true;
+            }
+        } finally {
+            cacheLock.unlock();
+        }
+        if (!fetching) {
+            return await(fetch);
         }
 
-        logger.warn("RobotstxtServer: default: allow", webURL.getURL());
-        return true;
+        long start = System.nanoTime();
+        HostDirectives directives;
+        try {
+            directives = fetchDirectives(url);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            completeFetch(host, webURL, fetch, null, start);
+            fetch.completeExceptionally(e);
+            throw e;
+        }
+        completeFetch(host, webURL, fetch, directives, start);
+        fetch.complete(directives);
+        return directives;
     }
 
     private HostDirectives fetchDirectives(URL url) throws IOException, InterruptedException {
         WebURL robotsTxtUrl = new WebURL();
-        String host = getHost(url);
-        String port = ((url.getPort() == url.getDefaultPort()) || (url.getPort() == -1)) ? "" :
-                      (":" + url.getPort());
-        String proto = url.getProtocol();
-        robotsTxtUrl.setURL(proto + "://" + host + port + "/robots.txt");
+        robotsTxtUrl.setURL(url.getProtocol() + "://" + getHost(url) + "/robots.txt");
         HostDirectives directives = null;
         PageFetchResult fetchResult = null;
         try {
@@ -186,26 +259,139 @@ public class RobotstxtServer {
             // We still need to have this object to keep track of the time we fetched it
             directives = new HostDirectives(config);
         }
-        synchronized (host2directivesCache) {
-            if (host2directivesCache.size() == config.getCacheSize()) {
-                String minHost = null;
-                long minAccessTime = Long.MAX_VALUE;
-                for (Map.Entry<String, HostDirectives> entry : host2directivesCache.entrySet()) {
-                    long entryAccessTime = entry.getValue().getLastAccessTime();
-                    if (entryAccessTime < minAccessTime) {
-                        minAccessTime = entryAccessTime;
-                        minHost = entry.getKey();
-                    }
-                }
-                host2directivesCache.remove(minHost);
+        return directives;
+    }
+
+    /**
+     * Returns the Crawl-delay of a host from its cached robots.txt.
+     *
+     * @param host the host name, followed by its port if it is not the default one
+     * @return the Crawl-delay in milliseconds, or 0 if the host has none or is not cached
+     */
+    public long getCrawlDelay(String host) {
+        cacheLock.lock();
+        try {
+            HostDirectives directives = host2directivesCache.get(host);
+            return directives == null ? 0 : directives.getCrawlDelayMillis();
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    /**
+     * Caches the directives of a fetch, if it succeeded, and ends it. From then on callers get
+     * them from the cache.
+     */
+    private void completeFetch(String host, WebURL webURL, CompletableFuture<HostDirectives> fetch,
+                               HostDirectives directives, long startNanos) {
+        fetches.increment();
+        fetchNanos.add(System.nanoTime() - startNanos);
+        cacheLock.lock();
+        try {
+            if (directives != null) {
+                host2directivesCache.put(host, directives);
+                setCrawlDelay(host, webURL, directives);
             }
-            host2directivesCache.put(host, directives);
+            inFlightFetches.remove(host, fetch);
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    /**
+     * Passes the Crawl-delay of a host on to the politeness scheduler, if it is honored, so that
+     * it is not looked up in the cache for every fetch. Hosts are only fetched after their
+     * robots.txt was checked. The delay is set under the politeness key of the url the directives
+     * were fetched for, which is the one the scheduler looks up when fetching it. Hosts which
+     * share a key, with politeness per registered domain, share the delay set last.
+     */
+    private void setCrawlDelay(String host, WebURL webURL, HostDirectives directives) {
+        if (config.isEnabled() && config.isHonorCrawlDelay()) {
+            PolitenessScheduler politenessScheduler = pageFetcher.getPolitenessScheduler();
+            String hostKey = politenessScheduler.getHostKey(webURL);
+            host2hostKey.put(host, hostKey);
+            politenessScheduler.setCrawlDelay(hostKey, directives.getCrawlDelayMillis());
+        }
+    }
+
+    /**
+     * Removes the Crawl-delay of an evicted host from the politeness scheduler, unless another
+     * cached host shares its politeness key.
+     */
+    private void removeCrawlDelay(String host) {
+        String hostKey = host2hostKey.remove(host);
+        if (hostKey != null && !host2hostKey.containsValue(hostKey)) {
+            pageFetcher.getPolitenessScheduler().setCrawlDelay(hostKey, 0);
+        }
+    }
+
+    private static HostDirectives await(CompletableFuture<HostDirectives> fetch)
+        throws IOException, InterruptedException {
+        try {
+            return fetch.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
         }
-        return directives;
     }
 
     public void setCrawlConfig(CrawlConfig crawlConfig) {
         this.crawlConfig = crawlConfig;
     }
+
+    /**
+     * @return the number of hosts whose directives are cached
+     */
+    public int getCachedHosts() {
+        cacheLock.lock();
+        try {
+            return host2directivesCache.size();
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return the number of lookups which were not cached or had expired
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * @return the number of robots.txt fetches
+     */
+    public long getFetches() {
+        return fetches.sum();
+    }
+
+    /**
+     * @return the number of misses which waited for a fetch of the same host already in progress
+     */
+    public long getCoalescedFetches() {
+        return coalescedFetches.sum();
+    }
+
+    /**
+     * @return the average time a robots.txt fetch took, in milliseconds
+     */
+    public double getAverageFetchMillis() {
+        long count = fetches.sum();
+        return count == 0 ? 0 : (double) fetchNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
 }
 
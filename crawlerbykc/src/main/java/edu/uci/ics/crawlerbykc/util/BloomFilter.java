@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over byte arrays. {@link #mightContain(byte[])} never returns {@code false}
+ * for a key which was added, and returns {@code true} for a key which was not added with
+ * roughly the false positive probability the filter was sized for.
+ *
+ * This class is thread safe. A key which is being added concurrently may or may not be reported
+ * as contained.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashes;
+
+    /**
+     * @param expectedKeys the number of keys the filter is sized for
+     * @param falsePositiveProbability the wanted false positive probability once the
+     * expected number of keys has been added
+     */
+    public BloomFilter(long expectedKeys, double falsePositiveProbability) {
+        if (expectedKeys <= 0) {
+            throw new IllegalArgumentException("Invalid number of expected keys: " + expectedKeys);
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException(
+                "Invalid false positive probability: " + falsePositiveProbability);
+        }
+        double ln2 = Math.log(2);
+        long wantedBits = (long) Math.ceil(
+            -expectedKeys * Math.log(falsePositiveProbability) / (ln2 * ln2));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (Math.max(64, wantedBits) + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.numBits = words * 64L;
+        this.numHashes = (int) Math.max(1, Math.round((double) numBits / expectedKeys * ln2));
+    }
+
+    public void put(byte[] key) {
+        long hash1 = Util.hash64(key, 0);
+        long hash2 = Util.hash64(key, hash1) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, numBits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    public boolean mightContain(byte[] key) {
+        long hash1 = Util.hash64(key, 0);
+        long hash2 = Util.hash64(key, hash1) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, numBits);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of byte arrays in power of two size classes, from {@link #MIN_BUFFER_SIZE} up to a
+ * maximum buffer size. Arrays larger than that are allocated as needed and not pooled. Each
+ * size class keeps at most as many arrays as fit in the given number of bytes, the others are
+ * left to the garbage collector.
+ *
+ * This class is thread safe.
+ */
+public class BufferPool {
+
+    public static final int MIN_BUFFER_SIZE = 4096;
+
+    private static final int MIN_SIZE_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+
+    private final List<BlockingQueue<byte[]>> sizeClasses = new ArrayList<>();
+
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+
+    /**
+     * @param maxBufferSize the size of the largest pooled arrays, rounded up to a power of two
+     * @param maxPooledBytesPerClass the number of bytes each size class may keep
+     */
+    public BufferPool(int maxBufferSize, long maxPooledBytesPerClass) {
+        int classes = sizeClass(Math.max(MIN_BUFFER_SIZE, maxBufferSize)) + 1;
+        for (int i = 0; i < classes; i++) {
+            long size = (long) MIN_BUFFER_SIZE << i;
+            sizeClasses.add(new ArrayBlockingQueue<>((int) Math.max(1, maxPooledBytesPerClass / size)));
+        }
+    }
+
+    private static int sizeClass(int minLength) {
+        if (minLength <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(minLength - 1) - MIN_SIZE_SHIFT;
+    }
+
+    /**
+     * Takes an array of at least the given length from the pool, or allocates one.
+     *
+     * @param minLength the minimum length of the array
+     * @return an array whose content is undefined
+     */
+    public byte[] acquire(int minLength) {
+        int sizeClass = sizeClass(minLength);
+        if (sizeClass >= sizeClasses.size()) {
+            allocated.increment();
+            return new byte[minLength];
+        }
+        byte[] buffer = sizeClasses.get(sizeClass).poll();
+        if (buffer != null) {
+            reused.increment();
+            return buffer;
+        }
+        allocated.increment();
+        return new byte[MIN_BUFFER_SIZE << sizeClass];
+    }
+
+    /**
+     * Returns an array to the pool. The caller must not use it anymore.
+     *
+     * @param buffer an array taken from this pool
+     */
+    public void release(byte[] buffer) {
+        int sizeClass = sizeClass(buffer.length);
+        if (sizeClass < sizeClasses.size() && buffer.length == MIN_BUFFER_SIZE << sizeClass) {
+            sizeClasses.get(sizeClass).offer(buffer);
+        }
+    }
+
+    /**
+     * @return the number of arrays which were allocated rather than taken from the pool
+     */
+    public long getAllocated() {
+        return allocated.sum();
+    }
+
+    /**
+     * @return the number of arrays which were taken from the pool
+     */
+    public long getReused() {
+        return reused.sum();
+    }
+
+    /**
+     * @return the number of arrays in the pool
+     */
+    public int getPooled() {
+        int pooled = 0;
+        for (BlockingQueue<byte[]> sizeClass : sizeClasses) {
+            pooled += sizeClass.size();
+        }
+        return pooled;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawlerbykc.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An input stream which ends after a maximum number of bytes, as the content of a page is
+ * truncated to the maximum download size, and optionally copies the bytes it reads to an
+ * output stream. Closing it does not close that output stream.
+ */
+public class LimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private final OutputStream tee;
+
+    private long count;
+    private boolean truncated;
+
+    /**
+     * @param in the stream to read from
+     * @param maxBytes the maximum number of bytes to read, or 0 or less to read all of them
+     * @param tee the stream to copy the bytes read to, or {@code null}
+     */
+    public LimitedInputStream(InputStream in, int maxBytes, OutputStream tee) {
+        super(in);
+        this.limit = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        this.tee = tee;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (count == limit) {
+            return end();
+        }
+        int b = in.read();
+        if (b != -1) {
+            count++;
+            if (tee != null) {
+                tee.write(b);
+            }
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (count == limit) {
+            return end();
+        }
+        int read = in.read(b, off, (int) Math.min(len, limit - count));
+        if (read > 0) {
+            count += read;
+            if (tee != null) {
+                tee.write(b, off, read);
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Probes whether there is more than the limit, the way the content of a page is truncated.
+     */
+    private int end() throws IOException {
+        if (!truncated && in.read() != -1) {
+            truncated = true;
+        }
+        return -1;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes would be missing from the copy
+        byte[] buffer = new byte[(int) Math.min(n, 4096)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), limit - count);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        // Not supported
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * @return the number of bytes read
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return whether the stream ended at the limit while there were more bytes
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
@@ -17,6 +17,8 @@
 
 package edu.uci.ics.crawlerbykc.util;
 
+import java.nio.ByteBuffer;
+
 /**
  * @author Yasser Ganjisaffar
  */
@@ -58,14 +60,57 @@ public class Util {
     }
 
     public static long byteArray2Long(byte[] b) {
-        int value = 0;
+        long value = 0;
         for (int i = 0; i < 8; i++) {
             int shift = (8 - 1 - i) * 8;
-            value += (b[i] & 0x000000FF) << shift;
+            value += (b[i] & 0xFFL) << shift;
         }
         return value;
     }
 
+    /**
+     * 64 bit FNV-1a hash of the data, with the result run through the finalizer of
+     * MurmurHash3 so that all bits depend on all input bytes.
+     *
+     * @param data the data to hash
+     * @param seed a seed, to derive independent hashes of the same data
+     * @return the hash
+     */
+    public static long hash64(byte[] data, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (byte b : data) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return finalizeHash(h);
+    }
+
+    /**
+     * The same hash as {@link #hash64(byte[], long)} of the remaining bytes of a buffer, whose
+     * position is left unchanged.
+     *
+     * @param data the data to hash
+     * @param seed a seed, to derive independent hashes of the same data
+     * @return the hash
+     */
+    public static long hash64(ByteBuffer data, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = data.position(); i < data.limit(); i++) {
+            h ^= data.get(i) & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return finalizeHash(h);
+    }
+
+    private static long finalizeHash(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
     public static boolean hasBinaryContent(String contentType) {
         String typeStr = (contentType != null) ? contentType.toLowerCase() : "";
 
@@ -0,0 +1,118 @@
+package edu.uci.ics.crawlerbykc.crawler
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import edu.uci.ics.crawlerbykc.fetcher.PageFetcher
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtConfig
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtServer
+import edu.uci.ics.crawlerbykc.url.WebURL
+import org.apache.http.message.BasicHeader
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*
+
+class ConditionalFetchTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(new WireMockConfiguration().dynamicPort())
+
+    static Queue<String> visited = new ConcurrentLinkedQueue<>()
+    static Queue<String> notModified = new ConcurrentLinkedQueue<>()
+
+    def "pages are fetched again only if they were modified"() {
+        given: "a page with an ETag, one with a Last-Modified date and one without validators"
+        stubFor(get(urlEqualTo("/etag.html")).willReturn(page().withHeader("ETag", '"v1"')))
+        stubFor(get(urlEqualTo("/etag.html")).withHeader("If-None-Match", equalTo('"v1"'))
+                .willReturn(aResponse().withStatus(304)))
+        stubFor(get(urlEqualTo("/date.html"))
+                .willReturn(page().withHeader("Last-Modified", "Tue, 15 Nov 1994 12:45:26 GMT")))
+        stubFor(get(urlEqualTo("/date.html"))
+                .withHeader("If-Modified-Since", equalTo("Tue, 15 Nov 1994 12:45:26 GMT"))
+                .willReturn(aResponse().withStatus(304)))
+        stubFor(get(urlEqualTo("/plain.html")).willReturn(page()))
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse().withStatus(404)))
+
+        when: "crawling them twice"
+        crawl(["/etag.html", "/date.html", "/plain.html"])
+        visited.clear()
+        crawl(["/etag.html", "/date.html", "/plain.html"])
+
+        then: "the second crawl only visits the page without validators"
+        visited as List == [url("/plain.html")]
+        notModified.sort() == [url("/date.html"), url("/etag.html")]
+        verify(exactly(2), getRequestedFor(urlEqualTo("/plain.html")).withoutHeader("If-None-Match")
+                .withoutHeader("If-Modified-Since"))
+    }
+
+    def "the links of a page which was not modified are followed"() {
+        given: "an unchanged page with a link to a page without validators"
+        stubFor(get(urlEqualTo("/hub.html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withHeader("ETag", '"v1"')
+                .withBody('<html><body><a href="child.html">child</a></body></html>')))
+        stubFor(get(urlEqualTo("/hub.html")).withHeader("If-None-Match", equalTo('"v1"'))
+                .willReturn(aResponse().withStatus(304)))
+        stubFor(get(urlEqualTo("/child.html")).willReturn(page()))
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse().withStatus(404)))
+
+        when: "crawling it twice"
+        crawl(["/hub.html"])
+        visited.clear()
+        notModified.clear()
+        crawl(["/hub.html"])
+
+        then: "the second crawl still reaches the linked page"
+        notModified as List == [url("/hub.html")]
+        visited as List == [url("/child.html")]
+    }
+
+    private void crawl(List<String> seeds) {
+        CrawlConfig config = new CrawlConfig(
+                crawlStorageFolder: temp.getRoot().getAbsolutePath()
+                , politenessDelay: 0
+                , conditionalFetching: true
+                // Without compression, for which the server appends --gzip to the ETags
+                , defaultHeaders: [new BasicHeader("Accept-Encoding", "identity")]
+                , threadShutdownDelaySeconds: 1
+                , threadMonitoringDelaySeconds: 1
+                , cleanupDelaySeconds: 1
+        )
+        PageFetcher pageFetcher = new PageFetcher(config)
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher)
+        CrawlController controller = new CrawlController(config, pageFetcher, robotstxtServer)
+        seeds.each { controller.addSeed url(it) }
+        controller.start(NotModifiedRecordingCrawler.class, 1)
+    }
+
+    private static page() {
+        return aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>page</body></html>')
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + wireMockRule.port() + path
+    }
+
+    static class NotModifiedRecordingCrawler extends WebCrawler {
+
+        @Override
+        void visit(Page page) {
+            visited.add(page.getWebURL().getURL())
+        }
+
+        @Override
+        protected void onNotModified(WebURL webUrl) {
+            notModified.add(webUrl.getURL())
+        }
+    }
+}
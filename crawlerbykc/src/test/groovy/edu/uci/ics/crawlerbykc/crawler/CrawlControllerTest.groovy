@@ -0,0 +1,46 @@
+package edu.uci.ics.crawlerbykc.crawler
+
+import com.sleepycat.je.Durability
+import edu.uci.ics.crawlerbykc.fetcher.PageFetcher
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtConfig
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtServer
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class CrawlControllerTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    @Unroll
+    def "the db durability #dbDurability applies to the environment of a resumable crawl"() {
+        given:
+        CrawlConfig config = new CrawlConfig(
+                crawlStorageFolder: temp.getRoot().getAbsolutePath()
+                , resumableCrawling: true
+                , dbDurability: dbDurability
+        )
+        PageFetcher pageFetcher = new PageFetcher(config)
+
+        when:
+        CrawlController controller = new CrawlController(config, pageFetcher,
+                                                         new RobotstxtServer(new RobotstxtConfig(), pageFetcher))
+
+        then:
+        controller.env.getConfig().getDurability() == durability
+
+        cleanup:
+        controller?.frontier?.close()
+        controller?.docIdServer?.close()
+        controller?.env?.close()
+        pageFetcher.shutDown()
+
+        where:
+        dbDurability                           | durability
+        CrawlConfig.DbDurability.SYNC          | Durability.COMMIT_SYNC
+        CrawlConfig.DbDurability.WRITE_NO_SYNC | Durability.COMMIT_WRITE_NO_SYNC
+        CrawlConfig.DbDurability.NO_SYNC       | Durability.COMMIT_NO_SYNC
+    }
+}
@@ -0,0 +1,148 @@
+package edu.uci.ics.crawlerbykc.crawler
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import edu.uci.ics.crawlerbykc.fetcher.PageFetcher
+import edu.uci.ics.crawlerbykc.frontier.Frontier
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtConfig
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtServer
+import edu.uci.ics.crawlerbykc.url.WebURL
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*
+
+class CrawlPipelineTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(new WireMockConfiguration().dynamicPort())
+
+    static Queue<String> visitingThreads = new ConcurrentLinkedQueue<>()
+
+    def "pages are parsed, mined for links and visited by the pipeline"() {
+        given: "an index page linking to three pages"
+        stubFor(get(urlEqualTo("/index.html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>' + (1..3).collect { "<a href=\"/page${it}.html\">$it</a>" }.join() +
+                          '</body></html>')))
+        stubFor(get(urlPathMatching("/page[1-3].html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>page</body></html>')))
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse().withStatus(404)))
+
+        when:
+        CrawlConfig config = new CrawlConfig(
+                crawlStorageFolder: temp.getRoot().getAbsolutePath()
+                , politenessDelay: 0
+                , pipelinedProcessing: true
+                , pooledPageBuffers: true
+                , threadShutdownDelaySeconds: 1
+                , threadMonitoringDelaySeconds: 1
+                , cleanupDelaySeconds: 1
+        )
+        PageFetcher pageFetcher = new PageFetcher(config)
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher)
+        CrawlController controller = new CrawlController(config, pageFetcher, robotstxtServer)
+        controller.addSeed "http://localhost:${wireMockRule.port()}/index.html"
+        controller.start(ThreadRecordingCrawler.class, 2)
+
+        then:
+        visitingThreads.size() == 4
+        visitingThreads.every { it.startsWith("Visitor ") }
+        controller.getPipeline().getStats()*.processedPages == [4L, 4L, 4L]
+        controller.getFrontier().getNumberOfProcessedPages() == 4
+
+        and: "the buffers of the pages went back to the pool"
+        controller.getPageBufferPool().getAllocated() + controller.getPageBufferPool().getReused() == 4
+        controller.getPageBufferPool().getPooled() == controller.getPageBufferPool().getAllocated()
+    }
+
+    @Timeout(10)
+    def "a stage which falls behind holds back the crawler threads"() {
+        given: "a pipeline whose visitor is blocked, with room for one page in each queue"
+        CrawlConfig config = new CrawlConfig(inMemoryStorage: true, parserThreads: 1, linkProcessorThreads: 1,
+                                             visitorThreads: 1, pipelineQueueSize: 1)
+        Frontier frontier = new Frontier(null, config)
+        CrawlPipeline pipeline = new CrawlPipeline(config, frontier)
+        CountDownLatch visiting = new CountDownLatch(1)
+        BlockedVisitCrawler crawler = new BlockedVisitCrawler(visiting)
+        pipeline.start()
+
+        when: "a crawler thread submits more pages than the pipeline holds"
+        int submitted = 0
+        Thread fetcher = Thread.start {
+            10.times {
+                pipeline.submit(crawler, new Page(url(it)))
+                submitted++
+            }
+        }
+        waitFor { pipeline.getStats()*.queueDepth == [1, 1, 1] }
+        Thread.sleep(200)
+
+        then: "it blocks, with one page being processed and one queued by each stage"
+        fetcher.isAlive()
+        submitted == 6
+        !pipeline.isIdle()
+
+        when:
+        visiting.countDown()
+        fetcher.join()
+        waitFor { pipeline.isIdle() }
+
+        then: "all pages pass through and are marked as processed"
+        pipeline.getStats(CrawlPipeline.Stage.VISIT).processedPages == 10
+        frontier.getNumberOfProcessedPages() == 10
+
+        cleanup:
+        pipeline.shutDown()
+        frontier.close()
+    }
+
+    private static void waitFor(Closure<Boolean> condition) {
+        while (!condition()) {
+            Thread.sleep(10)
+        }
+    }
+
+    private static WebURL url(int docid) {
+        WebURL webUrl = new WebURL()
+        webUrl.setURL("http://a.com/" + docid)
+        webUrl.setDocid(docid)
+        return webUrl
+    }
+
+    static class ThreadRecordingCrawler extends WebCrawler {
+
+        @Override
+        void visit(Page page) {
+            visitingThreads.add(Thread.currentThread().getName())
+        }
+    }
+
+    static class BlockedVisitCrawler extends WebCrawler {
+
+        final CountDownLatch visiting
+
+        BlockedVisitCrawler(CountDownLatch visiting) {
+            this.visiting = visiting
+        }
+
+        @Override
+        boolean processStage(CrawlPipeline.Stage stage, Page page) {
+            if (stage == CrawlPipeline.Stage.VISIT) {
+                visiting.await()
+            }
+            return true
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package edu.uci.ics.crawlerbykc.crawler
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration
+import com.github.tomakehurst.wiremock.http.Fault
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import com.github.tomakehurst.wiremock.stubbing.Scenario
+import edu.uci.ics.crawlerbykc.fetcher.PageFetcher
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtConfig
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtServer
+import edu.uci.ics.crawlerbykc.url.WebURL
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*
+
+class FetchRetryTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(new WireMockConfiguration().dynamicPort())
+
+    static Queue<String> visited = new ConcurrentLinkedQueue<>()
+    static Queue<String> failed = new ConcurrentLinkedQueue<>()
+
+    @Timeout(30)
+    def "transiently failing pages are retried until they succeed or their retries are used up"() {
+        given: "a page which fails with 500 once"
+        stubFor(get(urlEqualTo("/flaky.html")).inScenario("flaky")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(500))
+                .willSetStateTo("recovered"))
+        stubFor(get(urlEqualTo("/flaky.html")).inScenario("flaky")
+                .whenScenarioStateIs("recovered")
+                .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>flaky</body></html>')))
+
+        and: "a page whose connection is always reset"
+        stubFor(get(urlEqualTo("/broken.html")).willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)))
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse().withStatus(404)))
+
+        when:
+        CrawlConfig config = new CrawlConfig(
+                crawlStorageFolder: temp.getRoot().getAbsolutePath()
+                , politenessDelay: 0
+                , maxFetchRetries: 2
+                , retryDelayMillis: 200
+                , threadShutdownDelaySeconds: 1
+                , threadMonitoringDelaySeconds: 1
+                , cleanupDelaySeconds: 1
+        )
+        PageFetcher pageFetcher = new PageFetcher(config)
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher)
+        CrawlController controller = new CrawlController(config, pageFetcher, robotstxtServer)
+        controller.addSeed url("/flaky.html")
+        controller.addSeed url("/broken.html")
+        controller.start(RecordingCrawler.class, 1)
+
+        then: "the flaky page is visited on its retry"
+        visited as List == [url("/flaky.html")]
+        verify(exactly(2), getRequestedFor(urlEqualTo("/flaky.html")))
+
+        and: "the broken page is reported once its two retries failed too"
+        failed as List == [url("/broken.html")]
+        // The HTTP client itself sends every request up to three more times right away
+        verify(exactly(3 * 4), getRequestedFor(urlEqualTo("/broken.html")))
+
+        and: "each page is counted as processed once"
+        controller.getFrontier().getNumberOfProcessedPages() == 2
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + wireMockRule.port() + path
+    }
+
+    static class RecordingCrawler extends WebCrawler {
+
+        @Override
+        void visit(Page page) {
+            visited.add(page.getWebURL().getURL())
+        }
+
+        @Override
+        protected void onUnhandledException(WebURL webUrl, Throwable e) {
+            failed.add(webUrl.getURL())
+        }
+
+        @Override
+        protected void onUnexpectedStatusCode(String urlStr, int statusCode, String contentType,
+                                              String description) {
+            failed.add(urlStr)
+        }
+    }
+}
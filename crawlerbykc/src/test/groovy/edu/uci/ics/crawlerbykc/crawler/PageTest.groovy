@@ -1,11 +1,15 @@
 ﻿package edu.uci.ics.crawlerbykc.crawler
 
+import java.nio.charset.StandardCharsets
+
 import edu.uci.ics.crawlerbykc.url.WebURL
+import edu.uci.ics.crawlerbykc.util.BufferPool
 import org.apache.commons.io.IOUtils
 import org.apache.http.HttpEntity
 import org.apache.http.entity.BasicHttpEntity
 import org.apache.http.message.BasicHeader
 import spock.lang.Specification
+import spock.lang.Unroll
 
 class PageTest extends Specification {
 
@@ -25,5 +29,96 @@ class PageTest extends Specification {
         then: "charset should fallback to UTF-8"
         "UTF-8".equals(page.getContentCharset())
     }
+
+    @Unroll
+    def "content of #length bytes with #description is read up to #maxBytes bytes"() {
+        given:
+        byte[] content = (0..<length).collect { (byte) it } as byte[]
+        BasicHttpEntity entity = new BasicHttpEntity()
+        entity.setContent(new ByteArrayInputStream(content))
+        entity.setContentLength(contentLength)
+
+        when:
+        Page page = new Page(new WebURL())
+        page.setBufferPool(pooled ? new BufferPool(65536, 65536) : null)
+        page.load(entity, maxBytes)
+
+        then:
+        page.contentLength == Math.min(length, maxBytes)
+        page.contentData == Arrays.copyOf(content, Math.min(length, maxBytes))
+        page.truncated == length > maxBytes
+
+        where:
+        length | contentLength | maxBytes | pooled
+        100    | 100           | 1024     | false
+        100    | -1            | 1024     | false
+        10000  | -1            | 20000    | false
+        10000  | 10000         | 10000    | false
+        10000  | 10000         | 9999     | false
+        10000  | 5000          | 20000    | false
+        10000  | 20000         | 20000    | false
+        100    | 100           | 1024     | true
+        10000  | -1            | 20000    | true
+        10000  | 10000         | 9999     | true
+        10000  | 5000          | 20000    | true
+        0      | -1            | 1024     | true
+
+        description = contentLength < 0 ? "no length" : "a length of $contentLength"
+    }
+
+    def "pooled content is viewed without copying and returned to the pool once released"() {
+        given:
+        BufferPool pool = new BufferPool(65536, 65536)
+        String content = "<html>pooled</html>"
+        BasicHttpEntity entity = new BasicHttpEntity()
+        entity.setContent(IOUtils.toInputStream(content, "UTF-8"))
+        entity.setContentLength(content.size())
+
+        when:
+        Page page = new Page(new WebURL())
+        page.setBufferPool(pool)
+        page.load(entity, 1024)
+
+        then:
+        page.getContentString("UTF-8") == content
+        IOUtils.toString(page.contentStream, StandardCharsets.UTF_8) == content
+        page.contentBuffer.remaining() == content.size()
+        page.contentBuffer.readOnly
+
+        when: "the content is released"
+        page.releaseContent()
+
+        then: "its buffer is back in the pool and the content is gone"
+        pool.pooled == 1
+        page.contentData == null
+        page.contentLength == 0
+
+        when: "the next page is loaded"
+        Page next = new Page(new WebURL())
+        next.setBufferPool(pool)
+        entity.setContent(IOUtils.toInputStream(content, "UTF-8"))
+        next.load(entity, 1024)
+
+        then: "it reuses the buffer"
+        pool.reused == 1
+        pool.pooled == 0
+    }
+
+    def "content copied out of a pooled buffer stays available after the release"() {
+        given:
+        BasicHttpEntity entity = new BasicHttpEntity()
+        entity.setContent(IOUtils.toInputStream("content", "UTF-8"))
+        Page page = new Page(new WebURL())
+        page.setBufferPool(new BufferPool(65536, 65536))
+        page.load(entity, 1024)
+
+        when:
+        byte[] data = page.contentData
+        page.releaseContent()
+
+        then:
+        page.contentData.is(data)
+        page.getContentString("UTF-8") == "content"
+    }
 }
 
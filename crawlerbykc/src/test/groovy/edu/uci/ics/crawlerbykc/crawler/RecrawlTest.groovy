@@ -0,0 +1,110 @@
+package edu.uci.ics.crawlerbykc.crawler
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import com.github.tomakehurst.wiremock.stubbing.Scenario
+import edu.uci.ics.crawlerbykc.fetcher.PageFetcher
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtConfig
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtServer
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*
+
+class RecrawlTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(new WireMockConfiguration().dynamicPort())
+
+    @Timeout(30)
+    def "visited pages are visited again until the crawl is shut down"() {
+        given:
+        stubFor(get(urlEqualTo("/page.html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>page</body></html>')))
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse().withStatus(404)))
+
+        when:
+        CrawlConfig config = new CrawlConfig(
+                crawlStorageFolder: temp.getRoot().getAbsolutePath()
+                , politenessDelay: 0
+                , recrawling: true
+                , minRecrawlIntervalSeconds: 1
+                , maxRecrawlIntervalSeconds: 2
+                , threadShutdownDelaySeconds: 1
+                , threadMonitoringDelaySeconds: 1
+                , cleanupDelaySeconds: 1
+        )
+        PageFetcher pageFetcher = new PageFetcher(config)
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher)
+        CrawlController controller = new CrawlController(config, pageFetcher, robotstxtServer)
+        controller.addSeed "http://localhost:${wireMockRule.port()}/page.html"
+        controller.startNonBlocking(WebCrawler.class, 1)
+        while (findAll(getRequestedFor(urlEqualTo("/page.html"))).size() < 3) {
+            Thread.sleep(100)
+        }
+
+        then: "the crawl keeps going although the queue ran dry in between"
+        !controller.isFinished()
+        controller.getFrontier().getNumberOfProcessedPages() >= 2
+
+        cleanup:
+        controller.shutdown()
+        controller.waitUntilFinish()
+    }
+
+    @Timeout(30)
+    def "a page whose revisit failed is visited again"() {
+        given: "a page which fails at its first revisit"
+        stubFor(get(urlEqualTo("/page.html")).inScenario("revisits")
+                .whenScenarioStateIs(Scenario.STARTED).willSetStateTo("failing")
+                .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>page</body></html>')))
+        stubFor(get(urlEqualTo("/page.html")).inScenario("revisits")
+                .whenScenarioStateIs("failing").willSetStateTo("recovered")
+                .willReturn(aResponse().withStatus(503)))
+        stubFor(get(urlEqualTo("/page.html")).inScenario("revisits")
+                .whenScenarioStateIs("recovered")
+                .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>page</body></html>')))
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse().withStatus(404)))
+
+        when:
+        CrawlConfig config = new CrawlConfig(
+                crawlStorageFolder: temp.getRoot().getAbsolutePath()
+                , politenessDelay: 0
+                , recrawling: true
+                , minRecrawlIntervalSeconds: 1
+                , maxRecrawlIntervalSeconds: 2
+                , maxFetchRetries: 0
+                , threadShutdownDelaySeconds: 1
+                , threadMonitoringDelaySeconds: 1
+                , cleanupDelaySeconds: 1
+        )
+        PageFetcher pageFetcher = new PageFetcher(config)
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher)
+        CrawlController controller = new CrawlController(config, pageFetcher, robotstxtServer)
+        controller.addSeed "http://localhost:${wireMockRule.port()}/page.html"
+        controller.startNonBlocking(WebCrawler.class, 1)
+        while (findAll(getRequestedFor(urlEqualTo("/page.html"))).size() < 3) {
+            Thread.sleep(100)
+        }
+
+        then: "it stays on the schedule"
+        !controller.isFinished()
+
+        cleanup:
+        controller.shutdown()
+        controller.waitUntilFinish()
+    }
+}
@@ -0,0 +1,86 @@
+package edu.uci.ics.crawlerbykc.crawler
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import com.github.tomakehurst.wiremock.stubbing.Scenario
+import edu.uci.ics.crawlerbykc.fetcher.PageFetcher
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtConfig
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtServer
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*
+
+class RetryAfterTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(new WireMockConfiguration().dynamicPort())
+
+    static Queue<String> visited = new ConcurrentLinkedQueue<>()
+    static Queue<Integer> unexpected = new ConcurrentLinkedQueue<>()
+
+    @Timeout(30)
+    def "a page is fetched again after the Retry-After of its server"() {
+        given: "a page which is unavailable for a second the first time"
+        stubFor(get(urlEqualTo("/page.html")).inScenario("retry")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(503).withHeader("Retry-After", "1"))
+                .willSetStateTo("available"))
+        stubFor(get(urlEqualTo("/page.html")).inScenario("retry")
+                .whenScenarioStateIs("available")
+                .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>page</body></html>')))
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse().withStatus(404)))
+
+        when:
+        CrawlConfig config = new CrawlConfig(
+                crawlStorageFolder: temp.getRoot().getAbsolutePath()
+                , politenessDelay: 0
+                , adaptivePoliteness: true
+                , minPolitenessDelay: 0
+                , threadShutdownDelaySeconds: 1
+                , threadMonitoringDelaySeconds: 1
+                , cleanupDelaySeconds: 1
+        )
+        PageFetcher pageFetcher = new PageFetcher(config)
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher)
+        CrawlController controller = new CrawlController(config, pageFetcher, robotstxtServer)
+        controller.addSeed "http://localhost:${wireMockRule.port()}/page.html"
+        long start = System.currentTimeMillis()
+        controller.start(RecordingCrawler.class, 1)
+
+        then: "the page is visited once the server is available again"
+        visited as List == ["http://localhost:${wireMockRule.port()}/page.html".toString()]
+        unexpected.isEmpty()
+        verify(exactly(2), getRequestedFor(urlEqualTo("/page.html")))
+        findAll(getRequestedFor(urlEqualTo("/page.html")))*.loggedDate*.time.with { it[1] - it[0] } >= 1000
+        System.currentTimeMillis() - start >= 1000
+        controller.getFrontier().getNumberOfProcessedPages() == 1
+
+        and: "the rate of the host was adapted"
+        pageFetcher.politenessScheduler.getRates().keySet() == ["localhost:${wireMockRule.port()}".toString()] as Set
+    }
+
+    static class RecordingCrawler extends WebCrawler {
+
+        @Override
+        void visit(Page page) {
+            visited.add(page.getWebURL().getURL())
+        }
+
+        @Override
+        protected void onUnexpectedStatusCode(String urlStr, int statusCode, String contentType,
+                                              String description) {
+            unexpected.add(statusCode)
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package edu.uci.ics.crawlerbykc.crawler
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration
+import com.github.tomakehurst.wiremock.http.Fault
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import edu.uci.ics.crawlerbykc.fetcher.PageFetcher
+import edu.uci.ics.crawlerbykc.parser.HtmlParseData
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtConfig
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtServer
+import edu.uci.ics.crawlerbykc.url.WebURL
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*
+
+class StreamingParsingTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(new WireMockConfiguration().dynamicPort())
+
+    static Map<String, Page> visited = new ConcurrentHashMap<>()
+    static Map<String, ByteArrayOutputStream> copies = new ConcurrentHashMap<>()
+    static Queue<String> failed = new ConcurrentLinkedQueue<>()
+
+    def setup() {
+        visited.clear()
+        copies.clear()
+        failed.clear()
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse().withStatus(404)))
+    }
+
+    @Timeout(30)
+    def "html pages are parsed from the response stream and copied to the tee"() {
+        given:
+        String index = '<html><head><title>Index</title></head><body>index ' +
+                '<a href="/page.html">page</a> <a href="/style.css">css</a></body></html>'
+        stubFor(get(urlEqualTo("/index.html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody(index)))
+        stubFor(get(urlEqualTo("/page.html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>page</body></html>')))
+        stubFor(get(urlEqualTo("/style.css")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/css")
+                .withBody('body { color: red; }')))
+
+        when:
+        crawl(new CrawlConfig(crawlStorageFolder: temp.getRoot().getAbsolutePath(), streamingParsing: true),
+              "/index.html")
+
+        then: "links and text are extracted without loading the content"
+        visited.keySet() == [url("/index.html"), url("/page.html"), url("/style.css")] as Set
+        Page page = visited[url("/index.html")]
+        HtmlParseData parseData = page.getParseData() as HtmlParseData
+        parseData.title == "Index"
+        parseData.text.contains("index")
+        parseData.html == null
+        page.contentData == null
+        !page.truncated
+
+        and: "the raw content is copied to the tee"
+        copies[url("/index.html")].toString("UTF-8") == index
+
+        and: "other content is still loaded"
+        copies[url("/style.css")] == null
+        new String(visited[url("/style.css")].contentData, "UTF-8") == 'body { color: red; }'
+    }
+
+    @Timeout(30)
+    def "the content is parsed up to the maximum download size"() {
+        given: "a page with a link after the maximum download size"
+        String head = '<html><body><a href="/page.html">page</a>'
+        stubFor(get(urlEqualTo("/index.html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody(head + ' ' * 200 + '<a href="/other.html">other</a></body></html>')))
+        stubFor(get(urlMatching("/(page|other).html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>page</body></html>')))
+
+        when:
+        crawl(new CrawlConfig(crawlStorageFolder: temp.getRoot().getAbsolutePath(), streamingParsing: true,
+                              maxDownloadSize: head.length() + 100), "/index.html")
+
+        then:
+        visited.keySet() == [url("/index.html"), url("/page.html")] as Set
+        visited[url("/index.html")].truncated
+        copies[url("/index.html")].size() == head.length() + 100
+    }
+
+    @Timeout(30)
+    def "a response which breaks off while it is parsed is a content fetch error"() {
+        given:
+        stubFor(get(urlEqualTo("/index.html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withFault(Fault.MALFORMED_RESPONSE_CHUNK)))
+
+        when:
+        crawl(new CrawlConfig(crawlStorageFolder: temp.getRoot().getAbsolutePath(), streamingParsing: true),
+              "/index.html")
+
+        then:
+        visited.isEmpty()
+        failed as List == [url("/index.html")]
+    }
+
+    private void crawl(CrawlConfig config, String seed) {
+        config.politenessDelay = 0
+        config.threadShutdownDelaySeconds = 1
+        config.threadMonitoringDelaySeconds = 1
+        config.cleanupDelaySeconds = 1
+        PageFetcher pageFetcher = new PageFetcher(config)
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher)
+        CrawlController controller = new CrawlController(config, pageFetcher, robotstxtServer)
+        controller.addSeed url(seed)
+        controller.start(StreamingCrawler.class, 1)
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + wireMockRule.port() + path
+    }
+
+    static class StreamingCrawler extends WebCrawler {
+
+        @Override
+        protected OutputStream openContentTee(Page page) throws IOException {
+            ByteArrayOutputStream copy = new ByteArrayOutputStream()
+            copies.put(page.getWebURL().getURL(), copy)
+            return copy
+        }
+
+        @Override
+        void visit(Page page) {
+            visited.put(page.getWebURL().getURL(), page)
+        }
+
+        @Override
+        protected void onContentFetchError(WebURL webUrl) {
+            failed.add(webUrl.getURL())
+        }
+
+        @Override
+        protected void onParseError(WebURL webUrl) {
+            failed.add("parse error " + webUrl.getURL())
+        }
+
+        @Override
+        protected void onUnhandledException(WebURL webUrl, Throwable e) {
+            failed.add("unhandled " + webUrl.getURL())
+        }
+    }
+}
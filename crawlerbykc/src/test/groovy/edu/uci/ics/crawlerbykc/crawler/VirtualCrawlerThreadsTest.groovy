@@ -0,0 +1,85 @@
+package edu.uci.ics.crawlerbykc.crawler
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import edu.uci.ics.crawlerbykc.fetcher.PageFetcher
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtConfig
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtServer
+import edu.uci.ics.crawlerbykc.util.VirtualThreads
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.IgnoreIf
+import spock.lang.Requires
+import spock.lang.Specification
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*
+
+class VirtualCrawlerThreadsTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(new WireMockConfiguration().dynamicPort())
+
+    static Queue<String> visitingThreads = new ConcurrentLinkedQueue<>()
+
+    @Requires({ VirtualThreads.isSupported() })
+    def "crawlers run on virtual threads"() {
+        given: "an index page linking to three pages"
+        stubFor(get(urlEqualTo("/index.html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>' + (1..3).collect { "<a href=\"/page${it}.html\">$it</a>" }.join() +
+                          '</body></html>')))
+        stubFor(get(urlPathMatching("/page[1-3].html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>page</body></html>')))
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse().withStatus(404)))
+
+        when:
+        CrawlConfig config = crawlConfig()
+        config.setVirtualCrawlerThreads(true)
+        PageFetcher pageFetcher = new PageFetcher(config)
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher)
+        CrawlController controller = new CrawlController(config, pageFetcher, robotstxtServer)
+        controller.addSeed "http://localhost:${wireMockRule.port()}/index.html"
+        controller.start(ThreadRecordingCrawler.class, 4)
+
+        then:
+        visitingThreads.size() == 4
+        visitingThreads.every { it.startsWith("VirtualThread") && it.contains("Crawler ") }
+    }
+
+    @IgnoreIf({ VirtualThreads.isSupported() })
+    def "virtual crawler threads are rejected on a JVM without them"() {
+        when:
+        CrawlConfig config = crawlConfig()
+        config.setVirtualCrawlerThreads(true)
+        config.validate()
+
+        then:
+        thrown(Exception)
+    }
+
+    private CrawlConfig crawlConfig() {
+        return new CrawlConfig(
+                crawlStorageFolder: temp.getRoot().getAbsolutePath()
+                , politenessDelay: 0
+                , threadShutdownDelaySeconds: 1
+                , threadMonitoringDelaySeconds: 1
+                , cleanupDelaySeconds: 1
+        )
+    }
+
+    static class ThreadRecordingCrawler extends WebCrawler {
+
+        @Override
+        void visit(Page page) {
+            visitingThreads.add(Thread.currentThread().toString())
+        }
+    }
+}
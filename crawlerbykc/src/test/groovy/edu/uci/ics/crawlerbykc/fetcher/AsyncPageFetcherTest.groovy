@@ -0,0 +1,155 @@
+package edu.uci.ics.crawlerbykc.fetcher
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig
+import edu.uci.ics.crawlerbykc.crawler.CrawlController
+import edu.uci.ics.crawlerbykc.crawler.Page
+import edu.uci.ics.crawlerbykc.crawler.WebCrawler
+import edu.uci.ics.crawlerbykc.crawler.exceptions.PageBiggerThanMaxSizeException
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtConfig
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtServer
+import edu.uci.ics.crawlerbykc.url.WebURL
+import org.apache.http.message.BasicHeader
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*
+
+class AsyncPageFetcherTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(new WireMockConfiguration().dynamicPort())
+
+    // Without compression, so that the declared lengths are the ones of the bodies
+    CrawlConfig config = new CrawlConfig(politenessDelay: 0, maxDownloadSize: 100,
+                                         defaultHeaders: [new BasicHeader("Accept-Encoding", "identity")])
+    AsyncPageFetcher pageFetcher
+
+    def setup() {
+        pageFetcher = new AsyncPageFetcher(config)
+    }
+
+    def cleanup() {
+        pageFetcher.shutDown()
+    }
+
+    def "the content of a page is fetched"() {
+        given:
+        stubFor(get(urlEqualTo("/page.html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html")
+                .withBody("<html><body>hello</body></html>")))
+
+        when:
+        PageFetchResult result = fetch("/page.html")
+        Page page = new Page(url("/page.html"))
+        result.fetchContent(page, config.getMaxDownloadSize())
+
+        then:
+        result.statusCode == 200
+        result.fetchedUrl == url("/page.html").getURL()
+        new String(page.contentData) == "<html><body>hello</body></html>"
+        page.contentType == "text/html"
+        !page.isTruncated()
+    }
+
+    def "a redirect is not followed but its target is reported"() {
+        given:
+        stubFor(get(urlEqualTo("/old.html")).willReturn(aResponse()
+                .withStatus(301)
+                .withHeader("Location", "/new.html")))
+
+        when:
+        PageFetchResult result = fetch("/old.html")
+
+        then:
+        result.statusCode == 301
+        result.movedToUrl == url("/new.html").getURL()
+        verify(exactly(0), getRequestedFor(urlEqualTo("/new.html")))
+    }
+
+    def "a page which declares a length above the maximum download size is rejected"() {
+        given:
+        stubFor(get(urlEqualTo("/big.html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html")
+                .withHeader("Content-Length", "200")
+                .withBody("x" * 200)))
+
+        when:
+        fetch("/big.html")
+
+        then:
+        ExecutionException e = thrown()
+        e.cause instanceof PageBiggerThanMaxSizeException
+        ((PageBiggerThanMaxSizeException) e.cause).pageSize == 200
+    }
+
+    def "a page of unknown length above the maximum download size is truncated"() {
+        given:
+        stubFor(get(urlEqualTo("/chunked.html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html")
+                .withHeader("Transfer-Encoding", "chunked")
+                .withBody("x" * 200)))
+
+        when:
+        PageFetchResult result = fetch("/chunked.html")
+        Page page = new Page(url("/chunked.html"))
+        result.fetchContent(page, config.getMaxDownloadSize())
+
+        then:
+        page.isTruncated()
+        page.contentData.length == 100
+    }
+
+    def "pages are crawled with the async page fetcher"() {
+        given: "an index page linking to three pages"
+        stubFor(get(urlEqualTo("/index.html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>' + (1..3).collect { "<a href=\"/page${it}.html\">$it</a>" }.join() +
+                          '</body></html>')))
+        stubFor(get(urlPathMatching("/page[1-3].html")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/html; charset=UTF-8")
+                .withBody('<html><body>page</body></html>')))
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse().withStatus(404)))
+
+        when:
+        CrawlConfig crawlConfig = new CrawlConfig(
+                crawlStorageFolder: temp.getRoot().getAbsolutePath()
+                , politenessDelay: 0
+                , threadShutdownDelaySeconds: 1
+                , threadMonitoringDelaySeconds: 1
+                , cleanupDelaySeconds: 1
+        )
+        AsyncPageFetcher crawlFetcher = new AsyncPageFetcher(crawlConfig)
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), crawlFetcher)
+        CrawlController controller = new CrawlController(crawlConfig, crawlFetcher, robotstxtServer)
+        controller.addSeed url("/index.html").getURL()
+        controller.start(WebCrawler.class, 1)
+
+        then:
+        (1..3).each { verify(exactly(1), getRequestedFor(urlEqualTo("/page${it}.html"))) }
+        controller.getFrontier().getNumberOfProcessedPages() == 4
+    }
+
+    private PageFetchResult fetch(String path) {
+        return pageFetcher.fetchPageAsync(url(path)).get(10, TimeUnit.SECONDS)
+    }
+
+    private WebURL url(String path) {
+        WebURL webUrl = new WebURL()
+        webUrl.setURL("http://localhost:" + wireMockRule.port() + path)
+        return webUrl
+    }
+}
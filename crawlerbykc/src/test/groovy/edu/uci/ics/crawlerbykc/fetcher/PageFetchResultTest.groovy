@@ -0,0 +1,25 @@
+package edu.uci.ics.crawlerbykc.fetcher
+
+import org.apache.http.client.utils.DateUtils
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class PageFetchResultTest extends Specification {
+
+    static final long NOW = DateUtils.parseDate("Wed, 21 Oct 2015 07:28:00 GMT").time
+
+    @Unroll
+    def "a Retry-After of '#value' waits #expected ms"() {
+        expect:
+        PageFetchResult.parseRetryAfter(value, NOW) == expected
+
+        where:
+        value                           | expected
+        "120"                           | 120000
+        " 0 "                           | 0
+        "Wed, 21 Oct 2015 07:28:30 GMT" | 30000
+        "Wed, 21 Oct 2015 07:27:00 GMT" | 0
+        "soon"                          | -1
+        null                            | -1
+    }
+}
@@ -0,0 +1,169 @@
+package edu.uci.ics.crawlerbykc.fetcher
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig
+import edu.uci.ics.crawlerbykc.url.WebURL
+import spock.lang.Specification
+
+class PolitenessSchedulerTest extends Specification {
+
+    def "requests to the same host are spaced by the politeness delay"() {
+        given: "a scheduler with a 200ms politeness delay"
+        PolitenessScheduler scheduler = new PolitenessScheduler(new CrawlConfig(politenessDelay: 200))
+
+        when: "fetching the same host three times"
+        long start = System.currentTimeMillis()
+        3.times { scheduler.acquire(url("http://www.example.com/page${it}.html")) }
+        long elapsed = System.currentTimeMillis() - start
+
+        then: "the second and third requests had to wait"
+        elapsed >= 400
+    }
+
+    def "requests to different hosts do not wait for each other"() {
+        given: "a scheduler with a long politeness delay"
+        PolitenessScheduler scheduler = new PolitenessScheduler(new CrawlConfig(politenessDelay: 5000))
+
+        when: "fetching three different hosts"
+        long waited = 0
+        ["http://a.example.com/", "http://b.example.com/", "http://c.example.org/"].each {
+            waited += scheduler.acquire(url(it))
+        }
+
+        then: "none of them had to wait"
+        waited == 0
+    }
+
+    def "waiting requests are counted per host"() {
+        given: "a scheduler with a 500ms politeness delay"
+        PolitenessScheduler scheduler = new PolitenessScheduler(new CrawlConfig(politenessDelay: 500))
+        WebURL webUrl = url("http://www.example.com/")
+        scheduler.acquire(webUrl)
+
+        when: "two more threads fetch the same host"
+        def threads = (1..2).collect { Thread.start { scheduler.acquire(webUrl) } }
+        Thread.sleep(100)
+        def counts = scheduler.getWaitingCounts()
+        threads*.join()
+
+        then: "both are reported as waiting on that host"
+        counts == ["www.example.com": 2]
+        scheduler.getWaitingCount("www.example.com") == 0
+    }
+
+    def "a crawl delay longer than the politeness delay spaces the requests to its host"() {
+        given: "a host with a 300ms crawl delay and a 50ms politeness delay"
+        PolitenessScheduler scheduler = new PolitenessScheduler(new CrawlConfig(politenessDelay: 50))
+        scheduler.setCrawlDelay("slow.example.com", 300)
+
+        expect:
+        scheduler.getDelay("slow.example.com") == 300
+        scheduler.getDelay("fast.example.com") == 50
+
+        when: "fetching the host twice"
+        long start = System.currentTimeMillis()
+        2.times { scheduler.acquire(url("http://slow.example.com/page${it}.html")) }
+
+        then:
+        System.currentTimeMillis() - start >= 300
+    }
+
+    def "the rate of a host grows with healthy responses and is halved when it is overloaded"() {
+        given: "a scheduler with adaptive politeness and a 200ms politeness delay"
+        PolitenessScheduler scheduler = new PolitenessScheduler(new CrawlConfig(politenessDelay: 200,
+                adaptivePoliteness: true, minPolitenessDelay: 50, maxPolitenessDelay: 1000))
+
+        expect: "the rate is not adapted before the first response"
+        scheduler.getRate("www.example.com") == -1
+        scheduler.getDelay("www.example.com") == 200
+
+        when: "the host answers quickly twice"
+        2.times { scheduler.onResponse("www.example.com", 200, 20) }
+
+        then: "the rate grew by a tenth of the configured rate each time"
+        scheduler.getRate("www.example.com") == 1000d / scheduler.getDelay("www.example.com")
+        scheduler.getDelay("www.example.com") == Math.round(1000 / 6.0)
+
+        when: "the host answers with 503"
+        long before = scheduler.getDelay("www.example.com")
+        scheduler.onResponse("www.example.com", 503, 20)
+
+        then: "the delay doubled"
+        Math.abs(scheduler.getDelay("www.example.com") - 2 * before) <= 1
+
+        when: "the host answers much slower than before, then with 429, then fails"
+        before = scheduler.getDelay("www.example.com")
+        scheduler.onResponse("www.example.com", 200, 500)
+        scheduler.onResponse("www.example.com", 429, 20)
+        scheduler.onFailure("www.example.com")
+
+        then: "the delay kept doubling up to the maximum"
+        scheduler.getDelay("www.example.com") == 1000
+
+        and: "the other hosts keep the politeness delay"
+        scheduler.getDelay("other.example.com") == 200
+        scheduler.getRates().keySet() == ["www.example.com"] as Set
+    }
+
+    def "the delay of a host does not fall below the minimum"() {
+        given:
+        PolitenessScheduler scheduler = new PolitenessScheduler(new CrawlConfig(politenessDelay: 100,
+                adaptivePoliteness: true, minPolitenessDelay: 80))
+
+        when:
+        20.times { scheduler.onResponse("www.example.com", 200, 10) }
+
+        then:
+        scheduler.getDelay("www.example.com") == 80
+    }
+
+    def "a deferred host is not fetched before the given time"() {
+        given:
+        PolitenessScheduler scheduler = new PolitenessScheduler(new CrawlConfig(politenessDelay: 0,
+                adaptivePoliteness: true, minPolitenessDelay: 0))
+        long start = System.currentTimeMillis()
+
+        when:
+        scheduler.deferHost("www.example.com", start + 300)
+        scheduler.acquire(url("http://www.example.com/"))
+
+        then:
+        System.currentTimeMillis() - start >= 300
+    }
+
+    def "idle hosts are dropped once too many are tracked, but not the ones which were slowed down"() {
+        given: "a slowed down host among more hosts than are kept"
+        PolitenessScheduler scheduler = new PolitenessScheduler(new CrawlConfig(politenessDelay: 200,
+                adaptivePoliteness: true, minPolitenessDelay: 50, maxPolitenessDelay: 1000))
+        scheduler.onResponse("slow.example.com", 503, 20)
+        PolitenessScheduler.PURGE_THRESHOLD.times { scheduler.onResponse("host${it}.example.com", 200, 20) }
+
+        when: "a request to another host is sent"
+        scheduler.acquire(url("http://www.example.com/"))
+
+        then: "only the slowed down host keeps its delay"
+        scheduler.getRates().keySet() == ["slow.example.com"] as Set
+        scheduler.getDelay("slow.example.com") == 400
+        scheduler.getDelay("host0.example.com") == 200
+    }
+
+    def "responses do not change the delays without adaptive politeness"() {
+        given:
+        PolitenessScheduler scheduler = new PolitenessScheduler(new CrawlConfig(politenessDelay: 200))
+
+        when:
+        scheduler.onResponse("www.example.com", 503, 20)
+        scheduler.onFailure("www.example.com")
+        scheduler.deferHost("www.example.com", System.currentTimeMillis() + 60000)
+
+        then:
+        scheduler.getDelay("www.example.com") == 200
+        scheduler.getNextFetchTime("www.example.com") == 0
+        scheduler.getRates().isEmpty()
+    }
+
+    private static WebURL url(String url) {
+        WebURL webUrl = new WebURL()
+        webUrl.setURL(url)
+        return webUrl
+    }
+}
@@ -0,0 +1,108 @@
+package edu.uci.ics.crawlerbykc.frontier
+
+import java.util.concurrent.atomic.LongAdder
+
+import com.sleepycat.je.Environment
+import com.sleepycat.je.EnvironmentConfig
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class CountersTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    Environment env
+    CrawlConfig config
+
+    def setup() {
+        env = new Environment(temp.getRoot(), new EnvironmentConfig(allowCreate: true, transactional: true))
+        config = new CrawlConfig(resumableCrawling: true, counterFlushIntervalSeconds: 0)
+    }
+
+    def cleanup() {
+        env.close()
+    }
+
+    def "concurrent increments are all counted"() {
+        given:
+        Counters counters = new Counters(env, config)
+
+        when:
+        List<Thread> threads = (1..8).collect {
+            Thread.start {
+                10000.times { counters.increment(Counters.ReservedCounterNames.PROCESSED_PAGES) }
+            }
+        }
+        threads*.join()
+
+        then:
+        counters.getValue(Counters.ReservedCounterNames.PROCESSED_PAGES) == 80000
+
+        cleanup:
+        counters.close()
+    }
+
+    def "counters are written on close and restored on resume"() {
+        given:
+        Counters counters = new Counters(env, config)
+        counters.increment(Counters.ReservedCounterNames.SCHEDULED_PAGES, 5)
+        counters.register("Pages-With-Forms").add(3)
+
+        when:
+        counters.close()
+        Counters resumed = new Counters(env, config)
+
+        then:
+        resumed.getValues() == ["Pages-With-Forms": 3L, (Counters.ReservedCounterNames.SCHEDULED_PAGES): 5L]
+
+        cleanup:
+        resumed.close()
+    }
+
+    def "increments are only written when the counters are flushed"() {
+        given:
+        Counters counters = new Counters(env, config)
+        counters.increment(Counters.ReservedCounterNames.PROCESSED_PAGES, 2)
+        counters.flush()
+        counters.increment(Counters.ReservedCounterNames.PROCESSED_PAGES, 2)
+
+        when: "reading the database as a crashed crawl would on resume"
+        Counters resumed = new Counters(env, config)
+
+        then:
+        resumed.getValue(Counters.ReservedCounterNames.PROCESSED_PAGES) == 2
+
+        cleanup:
+        counters.close()
+        resumed.close()
+    }
+
+    def "registering a name again returns the same counter"() {
+        given:
+        Counters counters = new Counters(env, config)
+
+        expect:
+        LongAdder counter = counters.register("Broken-Links")
+        counters.register("Broken-Links").is(counter)
+
+        cleanup:
+        counters.close()
+    }
+
+    def "reserved counters can not be registered"() {
+        given:
+        Counters counters = new Counters(env, config)
+
+        when:
+        counters.register(Counters.ReservedCounterNames.PROCESSED_PAGES)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        cleanup:
+        counters.close()
+    }
+}
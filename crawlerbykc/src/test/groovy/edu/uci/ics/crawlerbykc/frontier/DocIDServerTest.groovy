@@ -0,0 +1,203 @@
+package edu.uci.ics.crawlerbykc.frontier
+
+import com.sleepycat.je.Environment
+import com.sleepycat.je.EnvironmentConfig
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class DocIDServerTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    CrawlConfig config = new CrawlConfig(resumableCrawling: true, docIdFilterSize: 1000, docIdCacheSize: 10)
+
+    def "unseen urls are answered by the filter and seen urls by the cache"() {
+        given:
+        Environment env = openEnvironment()
+        DocIDServer docIdServer = new DocIDServer(env, config)
+        int docId = docIdServer.getNewDocID("http://a.com/")
+
+        when:
+        int seen = docIdServer.getDocId("http://a.com/")
+        int unseen = docIdServer.getDocId("http://b.com/")
+
+        then:
+        seen == docId
+        unseen == -1
+        docIdServer.getCacheHits() == 1
+        docIdServer.getFilterMisses() == 2 // including the check of getNewDocID
+        docIdServer.getFalsePositives() == 0
+
+        cleanup:
+        docIdServer.close()
+        env.close()
+    }
+
+    def "the filter is rebuilt from the database when resuming"() {
+        given: "urls seen in a previous crawl"
+        Environment env = openEnvironment()
+        DocIDServer docIdServer = new DocIDServer(env, config)
+        (1..100).each { docIdServer.getNewDocID("http://a.com/page" + it) }
+        docIdServer.close()
+        env.close()
+
+        when: "resuming"
+        env = openEnvironment()
+        docIdServer = new DocIDServer(env, config)
+
+        then: "all of them are still seen"
+        (1..100).every { docIdServer.isSeenBefore("http://a.com/page" + it) }
+        docIdServer.getNewDocID("http://a.com/new") == 101
+
+        cleanup:
+        docIdServer.close()
+        env.close()
+    }
+
+    def "docids are not reused when resuming a crawl which left gaps"() {
+        given: "docids with gaps, as left by a crash"
+        CrawlConfig config = new CrawlConfig(resumableCrawling: true, docIdFingerprintKeys: fingerprintKeys)
+        Environment env = openEnvironment()
+        DocIDServer docIdServer = new DocIDServer(env, config)
+        docIdServer.addUrlAndDocId("http://a.com/page1", 1)
+        docIdServer.addUrlAndDocId("http://a.com/page5", 5)
+        docIdServer.close()
+        env.close()
+
+        when: "resuming"
+        env = openEnvironment()
+        docIdServer = new DocIDServer(env, config)
+
+        then: "new docids follow the highest stored one"
+        docIdServer.getNewDocID("http://a.com/new") == 6
+
+        cleanup:
+        docIdServer.close()
+        env.close()
+
+        where:
+        fingerprintKeys << [false, true]
+    }
+
+    def "docids of a batch are assigned once per url and kept for seen urls"() {
+        given:
+        Environment env = openEnvironment()
+        DocIDServer docIdServer = new DocIDServer(env, config)
+        int seenDocId = docIdServer.getNewDocID("http://a.com/seen")
+
+        when:
+        Map<String, Integer> docIds = docIdServer.getOrCreateDocIds(
+                ["http://a.com/new1", "http://a.com/seen", "http://a.com/new2", "http://a.com/new1"])
+
+        then:
+        docIds.keySet() as List == ["http://a.com/new1", "http://a.com/seen", "http://a.com/new2"]
+        docIds["http://a.com/seen"] == seenDocId
+        docIds.values() as Set == [1, 2, 3] as Set
+        docIdServer.getDocId("http://a.com/new2") == docIds["http://a.com/new2"]
+
+        cleanup:
+        docIdServer.close()
+        env.close()
+    }
+
+    def "concurrent threads get distinct docids"() {
+        given:
+        Environment env = openEnvironment()
+        DocIDServer docIdServer = new DocIDServer(env, config)
+
+        when: "four threads create docids for overlapping urls"
+        List<Map<String, Integer>> results = Collections.synchronizedList([])
+        List<Thread> threads = (0..3).collect { t ->
+            Thread.start {
+                results << docIdServer.getOrCreateDocIds((0..499).collect { "http://a.com/page" + ((it + t * 100) % 800) })
+            }
+        }
+        threads*.join()
+
+        then: "every url has exactly one docid and no docid is shared"
+        Map<String, Integer> merged = [:]
+        results.every { result -> result.every { url, docId -> merged.putIfAbsent(url, docId) in [null, docId] } }
+        merged.size() == 800
+        merged.values() as Set == (1..800) as Set
+
+        cleanup:
+        docIdServer.close()
+        env.close()
+    }
+
+    def "the docids of a batch are looked up without assigning new ones"() {
+        given:
+        Environment env = openEnvironment()
+        DocIDServer docIdServer = new DocIDServer(env, config)
+        int seenDocId = docIdServer.getNewDocID("http://a.com/seen")
+
+        when:
+        Map<String, Integer> docIds = docIdServer.getDocIds(["http://a.com/new", "http://a.com/seen"])
+
+        then:
+        docIds == ["http://a.com/new": -1, "http://a.com/seen": seenDocId]
+        !docIdServer.isSeenBefore("http://a.com/new")
+
+        cleanup:
+        docIdServer.close()
+        env.close()
+    }
+
+    def "of threads which create docids for the same urls, only one gets each new docid"() {
+        given:
+        Environment env = openEnvironment()
+        DocIDServer docIdServer = new DocIDServer(env, config)
+        docIdServer.getNewDocID("http://a.com/page0")
+
+        when: "four threads create docids for overlapping urls"
+        List<Map<String, Integer>> results = Collections.synchronizedList([])
+        List<Thread> threads = (0..3).collect { t ->
+            Thread.start {
+                results << docIdServer.createDocIds((0..499).collect { "http://a.com/page" + ((it + t * 100) % 800) })
+            }
+        }
+        threads*.join()
+
+        then: "every new url is returned to exactly one thread, and the seen url to none"
+        List<String> created = results.collectMany { it.keySet() }
+        created.size() == 799
+        created as Set == (1..799).collect { "http://a.com/page" + it } as Set
+        results.collectMany { it.values() } as Set == (2..800) as Set
+
+        cleanup:
+        docIdServer.close()
+        env.close()
+    }
+
+    def "a crawl with url keys is migrated to fingerprint keys when resuming"() {
+        given: "urls seen in a previous crawl with url keys"
+        Environment env = openEnvironment()
+        DocIDServer docIdServer = new DocIDServer(env, config)
+        (1..100).each { docIdServer.getNewDocID("http://a.com/page" + it) }
+        docIdServer.close()
+        env.close()
+
+        when: "resuming with fingerprint keys"
+        config.setDocIdFingerprintKeys(true)
+        env = openEnvironment()
+        docIdServer = new DocIDServer(env, config)
+
+        then: "the doc ids are kept"
+        !env.getDatabaseNames().contains("DocIDs")
+        docIdServer.getDocCount() == 100
+        (1..100).every { docIdServer.getDocId("http://a.com/page" + it) == it }
+        docIdServer.getDocId("http://a.com/new") == -1
+        docIdServer.getNewDocID("http://a.com/new") == 101
+
+        cleanup:
+        docIdServer.close()
+        env.close()
+    }
+
+    private Environment openEnvironment() {
+        return new Environment(temp.getRoot(), new EnvironmentConfig(allowCreate: true, transactional: true))
+    }
+}
@@ -0,0 +1,237 @@
+package edu.uci.ics.crawlerbykc.frontier
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+import com.sleepycat.je.Environment
+import com.sleepycat.je.EnvironmentConfig
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig
+import edu.uci.ics.crawlerbykc.url.WebURL
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Timeout
+
+@Timeout(10)
+class FrontierTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    Frontier frontier = new Frontier(null, new CrawlConfig(inMemoryStorage: true))
+
+    def cleanup() {
+        frontier.close()
+    }
+
+    def "a waiting crawler is woken up by a single scheduled url"() {
+        given: "a crawler waiting for urls"
+        CompletableFuture<List<WebURL>> next = nextURLs()
+        waitForWaitingThreads(1)
+
+        when:
+        frontier.schedule(url("http://a.com/", 1))
+
+        then:
+        next.get(5, TimeUnit.SECONDS)*.URL == ["http://a.com/"]
+    }
+
+    def "new urls are shared by the waiting crawlers and finishing releases the others"() {
+        given: "four crawlers waiting for batches of up to 50 urls"
+        List<CompletableFuture<List<WebURL>>> next = (1..4).collect { nextURLs() }
+        waitForWaitingThreads(4)
+
+        when: "scheduling 60 urls"
+        frontier.scheduleAll((1..60).collect { url("http://a.com/" + it, it) })
+        waitFor { next.count { it.isDone() } == 2 }
+
+        then: "two crawlers take them and the other two keep waiting"
+        next.findAll { it.isDone() }.sum { it.get().size() } == 60
+        waitForWaitingThreads(2)
+
+        when:
+        frontier.finish()
+
+        then: "finishing the crawl releases the others without urls"
+        next.findAll { it.get(5, TimeUnit.SECONDS).isEmpty() }.size() == 2
+    }
+
+    def "a batch of urls is cut at the maximum number of pages to fetch"() {
+        given:
+        frontier = new Frontier(null, new CrawlConfig(inMemoryStorage: true, maxPagesToFetch: 5))
+
+        when:
+        frontier.scheduleAll((1..3).collect { url("http://a.com/" + it, it) })
+        frontier.scheduleAll((4..7).collect { url("http://a.com/" + it, it) })
+        frontier.scheduleAll([url("http://a.com/8", 8)])
+
+        then: "only the urls up to the maximum are queued and counted"
+        frontier.numberOfScheduledPages == 5
+        frontier.counters.getValue(Counters.ReservedCounterNames.SCHEDULED_PAGES) == 5
+        nextURLs().get(5, TimeUnit.SECONDS)*.URL == (1..5).collect { "http://a.com/" + it }
+    }
+
+    def "a failed url is retried after a growing backoff until its retries are used up"() {
+        given:
+        frontier = new Frontier(null, new CrawlConfig(inMemoryStorage: true, maxFetchRetries: 2,
+                retryDelayMillis: 200))
+        WebURL webUrl = url("http://a.com/", 1)
+
+        when: "the url is retried the first time"
+        long start = System.currentTimeMillis()
+        boolean retried = frontier.retry(webUrl, "a.com")
+
+        then: "it is handed out again after 100 to 200 ms"
+        retried
+        frontier.numberOfDelayedURLs == 1
+        nextURLs().get(5, TimeUnit.SECONDS)*.URL == ["http://a.com/"]
+        System.currentTimeMillis() - start >= 100
+        frontier.numberOfDelayedURLs == 0
+
+        when: "it fails again"
+        start = System.currentTimeMillis()
+        retried = frontier.retry(webUrl, "a.com")
+
+        then: "it is handed out again after 200 to 400 ms"
+        retried
+        nextURLs().get(5, TimeUnit.SECONDS)*.URL == ["http://a.com/"]
+        System.currentTimeMillis() - start >= 200
+
+        and: "it is given up after that"
+        !frontier.retry(webUrl, "a.com")
+    }
+
+    def "the attempts of a url are forgotten once it was processed"() {
+        given:
+        frontier = new Frontier(null, new CrawlConfig(inMemoryStorage: true, maxFetchRetries: 1,
+                retryDelayMillis: 0))
+        WebURL webUrl = url("http://a.com/", 1)
+
+        when: "the retried url is processed"
+        frontier.retry(webUrl, "a.com")
+        nextURLs().get(5, TimeUnit.SECONDS)
+        frontier.setProcessed(webUrl)
+
+        then: "it can be retried again"
+        frontier.retry(webUrl, "a.com")
+    }
+
+    def "a retried url is not counted as processed and keeps its attempts"() {
+        given:
+        frontier = new Frontier(null, new CrawlConfig(inMemoryStorage: true, maxFetchRetries: 1,
+                retryDelayMillis: 0))
+        WebURL webUrl = url("http://a.com/", 1)
+
+        when: "the url is retried"
+        frontier.retry(webUrl, "a.com")
+        nextURLs().get(5, TimeUnit.SECONDS)
+
+        then:
+        frontier.numberOfProcessedPages == 0
+        !frontier.retry(webUrl, "a.com")
+
+        when: "it is given up"
+        frontier.setProcessed(webUrl)
+
+        then:
+        frontier.numberOfProcessedPages == 1
+    }
+
+    def "the retries of a host are capped"() {
+        given:
+        frontier = new Frontier(null, new CrawlConfig(inMemoryStorage: true, maxFetchRetries: 3,
+                maxRetriesPerHost: 2))
+
+        expect:
+        frontier.retry(url("http://a.com/1", 1), "a.com")
+        frontier.retry(url("http://a.com/2", 2), "a.com")
+        !frontier.retry(url("http://a.com/3", 3), "a.com")
+        frontier.retry(url("http://b.com/1", 4), "b.com")
+    }
+
+    def "a retried url leaves the in-process pages before it can be claimed again"() {
+        given: "a resumable crawl with a claimed url"
+        frontier.close()
+        Environment env = new Environment(temp.getRoot(), new EnvironmentConfig(allowCreate: true, transactional: true))
+        frontier = new Frontier(env, new CrawlConfig(resumableCrawling: true, maxFetchRetries: 1, retryDelayMillis: 0))
+        frontier.schedule(url("http://a.com/", 1))
+        nextURLs().get(5, TimeUnit.SECONDS)
+
+        expect:
+        frontier.numberOfAssignedPages == 1
+
+        when: "it is retried"
+        boolean retried = frontier.retry(url("http://a.com/", 1), "a.com")
+
+        then: "its lease is released at once"
+        retried
+        frontier.numberOfAssignedPages == 0
+
+        when: "another crawler claims it again"
+        nextURLs().get(5, TimeUnit.SECONDS)
+
+        then: "that crawler holds the only lease"
+        frontier.numberOfAssignedPages == 1
+
+        cleanup:
+        frontier.close()
+        frontier = new Frontier(null, new CrawlConfig(inMemoryStorage: true))
+        env.close()
+    }
+
+    def "the retries of a resumable crawl are restored on restart"() {
+        given: "a resumable crawl with a retried url"
+        frontier.close()
+        Environment env = new Environment(temp.getRoot(), new EnvironmentConfig(allowCreate: true, transactional: true))
+        CrawlConfig config = new CrawlConfig(resumableCrawling: true, maxFetchRetries: 2, retryDelayMillis: 100)
+        frontier = new Frontier(env, config)
+        frontier.retry(url("http://a.com/", 1), "a.com")
+
+        when: "the crawl is restarted"
+        frontier.close()
+        frontier = new Frontier(env, config)
+
+        then: "the url is handed out again, and retried once more at most"
+        frontier.numberOfDelayedURLs == 1
+        nextURLs().get(5, TimeUnit.SECONDS)*.URL == ["http://a.com/"]
+        frontier.retry(url("http://a.com/", 1), "a.com")
+        !frontier.retry(url("http://a.com/", 1), "a.com")
+
+        cleanup:
+        frontier.close()
+        frontier = new Frontier(null, new CrawlConfig(inMemoryStorage: true))
+        env.close()
+    }
+
+    private CompletableFuture<List<WebURL>> nextURLs() {
+        return CompletableFuture.supplyAsync({
+            List<WebURL> batch = []
+            frontier.getNextURLs(50, batch)
+            return batch
+        }, { Runnable r -> new Thread(r).start() })
+    }
+
+    private void waitForWaitingThreads(int count) {
+        waitFor {
+            frontier.mutex.lock()
+            try {
+                return frontier.waitingThreads == count
+            } finally {
+                frontier.mutex.unlock()
+            }
+        }
+    }
+
+    private static void waitFor(Closure<Boolean> condition) {
+        while (!condition()) {
+            Thread.sleep(10)
+        }
+    }
+
+    private static WebURL url(String url, int docid) {
+        WebURL webUrl = new WebURL()
+        webUrl.setURL(url)
+        webUrl.setDocid(docid)
+        return webUrl
+    }
+}
@@ -0,0 +1,70 @@
+package edu.uci.ics.crawlerbykc.frontier
+
+import com.sleepycat.je.Environment
+import com.sleepycat.je.EnvironmentConfig
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig
+import edu.uci.ics.crawlerbykc.fetcher.PolitenessScheduler
+import edu.uci.ics.crawlerbykc.url.WebURL
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class HostPartitionedFrontierTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    Environment env
+    HostPartitionedFrontier frontier
+
+    def setup() {
+        CrawlConfig config = new CrawlConfig(
+                crawlStorageFolder: temp.getRoot().getAbsolutePath()
+                , politenessDelay: 60000
+        )
+        env = new Environment(temp.getRoot(), new EnvironmentConfig(allowCreate: true))
+        frontier = new HostPartitionedFrontier(env, config, new PolitenessScheduler(config))
+    }
+
+    def cleanup() {
+        frontier.close()
+        env.close()
+    }
+
+    def "hands out at most one url per ready host"() {
+        given: "three urls on each of two hosts"
+        int docid = 0
+        frontier.scheduleAll(["http://a.com/", "http://b.com/"].collectMany { host ->
+            (1..3).collect { url(host + "page" + it, ++docid) }
+        })
+
+        when: "asking for a batch of ten urls"
+        List<WebURL> batch = []
+        frontier.getNextURLs(10, batch)
+
+        then: "the first url of each host is returned and the rest stays queued"
+        batch*.URL as Set == ["http://a.com/page1", "http://b.com/page1"] as Set
+        frontier.getQueueLength() == 4
+        frontier.getNumberOfQueuedHosts() == 2
+    }
+
+    def "urls of a host are handed out in priority order"() {
+        given: "urls of one host with different priorities"
+        frontier.scheduleAll([url("http://a.com/low", 1, (byte) 2), url("http://a.com/high", 2, (byte) 0)])
+
+        when:
+        List<WebURL> batch = []
+        frontier.getNextURLs(10, batch)
+
+        then:
+        batch*.URL == ["http://a.com/high"]
+    }
+
+    private static WebURL url(String url, int docid, byte priority = 0) {
+        WebURL webUrl = new WebURL()
+        webUrl.setURL(url)
+        webUrl.setDocid(docid)
+        webUrl.setPriority(priority)
+        return webUrl
+    }
+}
@@ -0,0 +1,30 @@
+package edu.uci.ics.crawlerbykc.frontier
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig
+import spock.lang.Specification
+
+class InMemoryDocIDServerTest extends Specification {
+
+    InMemoryDocIDServer docIdServer = new InMemoryDocIDServer(new CrawlConfig(inMemoryStorage: true))
+
+    def "docids are remembered"() {
+        when:
+        Map<String, Integer> docIds = docIdServer.getOrCreateDocIds((1..100000).collect { "http://a.com/page" + it })
+
+        then:
+        docIdServer.getDocCount() == 100000
+        docIds.values() as Set == (1..100000) as Set
+        (1..100000).every { docIdServer.getDocId("http://a.com/page" + it) == docIds["http://a.com/page" + it] }
+        docIdServer.getDocId("http://a.com/other") == -1
+        docIdServer.getNewDocID("http://a.com/page1") == docIds["http://a.com/page1"]
+    }
+
+    def "seeds can be added with a given docid"() {
+        when:
+        docIdServer.addUrlAndDocId("http://a.com/", 10)
+
+        then:
+        docIdServer.getDocId("http://a.com/") == 10
+        docIdServer.getNewDocID("http://b.com/") == 11
+    }
+}
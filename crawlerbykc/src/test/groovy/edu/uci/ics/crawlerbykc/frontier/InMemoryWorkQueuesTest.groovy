@@ -0,0 +1,59 @@
+package edu.uci.ics.crawlerbykc.frontier
+
+import edu.uci.ics.crawlerbykc.url.WebURL
+import spock.lang.Specification
+
+class InMemoryWorkQueuesTest extends Specification {
+
+    InMemoryWorkQueues workQueues = new InMemoryWorkQueues()
+
+    def "urls are claimed in the order of the database keys"() {
+        given:
+        workQueues.putAll([
+                url("http://a.com/deep", 1, (short) 3),
+                url("http://a.com/late", 5, (short) 1),
+                url("http://a.com/early", 4, (short) 1),
+                url("http://a.com/urgent", 9, (short) 2, (byte) -1),
+                url("http://a.com/first", 7, (short) 0)
+        ])
+
+        expect:
+        workQueues.claim(10, null)*.URL == ["http://a.com/first", "http://a.com/early", "http://a.com/late",
+                                            "http://a.com/deep", "http://a.com/urgent"]
+        workQueues.getLength() == 0
+    }
+
+    def "a url queued twice is handed out once"() {
+        given:
+        workQueues.put(url("http://a.com/", 1, (short) 0))
+        workQueues.put(url("http://a.com/", 1, (short) 0))
+        workQueues.put(url("http://b.com/", 2, (short) 0))
+
+        expect:
+        workQueues.claim(10, null)*.URL == ["http://a.com/", "http://b.com/"]
+    }
+
+    def "urls are kept in order through many inserts and removals"() {
+        given:
+        Random random = new Random(1)
+        List<Integer> docids = (1..5000).toList()
+        Collections.shuffle(docids, random)
+        workQueues.putAll(docids.collect { url("http://a.com/" + it, it, (short) 0) })
+
+        when:
+        (1..5000).step(3) { workQueues.removeURL(url("http://a.com/" + it, it, (short) 0)) }
+        List<WebURL> claimed = workQueues.claim(10000, null)
+
+        then:
+        claimed*.docid == (1..5000).findAll { (it - 1) % 3 != 0 }
+    }
+
+    private static WebURL url(String url, int docid, short depth, byte priority = 0) {
+        WebURL webUrl = new WebURL()
+        webUrl.setURL(url)
+        webUrl.setDocid(docid)
+        webUrl.setDepth(depth)
+        webUrl.setPriority(priority)
+        return webUrl
+    }
+}
@@ -0,0 +1,72 @@
+package edu.uci.ics.crawlerbykc.frontier
+
+import com.sleepycat.je.Environment
+import com.sleepycat.je.EnvironmentConfig
+import edu.uci.ics.crawlerbykc.url.WebURL
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class InProcessPagesDBTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    Environment env
+    WorkQueues workQueues
+
+    def setup() {
+        env = new Environment(temp.getRoot(), new EnvironmentConfig(allowCreate: true, transactional: true))
+        workQueues = new WorkQueues(env, "PendingURLsDB", true)
+        workQueues.putAll((1..5).collect { url("http://a.com/page" + it, it) })
+    }
+
+    def cleanup() {
+        workQueues.close()
+        env.close()
+    }
+
+    def "claimed urls move from the queue to the in process pages"() {
+        given:
+        InProcessPagesDB inProcessPages = new InProcessPagesDB(env, 60000)
+
+        when:
+        List<WebURL> claimed = workQueues.claim(3, inProcessPages)
+
+        then:
+        claimed*.URL == ["http://a.com/page1", "http://a.com/page2", "http://a.com/page3"]
+        workQueues.getLength() == 2
+        inProcessPages.getLength() == 3
+
+        cleanup:
+        inProcessPages.close()
+    }
+
+    def "only pages with an expired lease are requeued"() {
+        given: "pages claimed with a one minute lease"
+        InProcessPagesDB inProcessPages = new InProcessPagesDB(env, 60000)
+        workQueues.claim(3, inProcessPages)
+
+        expect: "nothing is requeued before the lease expires"
+        inProcessPages.requeueExpired(workQueues, System.currentTimeMillis()).isEmpty()
+
+        when: "the lease has expired"
+        List<WebURL> requeued = inProcessPages.requeueExpired(workQueues,
+                                                              System.currentTimeMillis() + 120000)
+
+        then:
+        requeued.size() == 3
+        inProcessPages.getLength() == 0
+        workQueues.getLength() == 5
+
+        cleanup:
+        inProcessPages.close()
+    }
+
+    private static WebURL url(String url, int docid) {
+        WebURL webUrl = new WebURL()
+        webUrl.setURL(url)
+        webUrl.setDocid(docid)
+        return webUrl
+    }
+}
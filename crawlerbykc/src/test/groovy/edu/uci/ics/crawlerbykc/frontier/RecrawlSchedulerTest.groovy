@@ -0,0 +1,167 @@
+package edu.uci.ics.crawlerbykc.frontier
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig
+import edu.uci.ics.crawlerbykc.url.WebURL
+import spock.lang.Specification
+
+class RecrawlSchedulerTest extends Specification {
+
+    static final long MIN = 60 * 1000L
+    static final long MAX = 16 * MIN
+
+    RecrawlScheduler scheduler = new RecrawlScheduler(new CrawlConfig(minRecrawlIntervalSeconds: 60,
+                                                                      maxRecrawlIntervalSeconds: 16 * 60))
+
+    def "a page is first revisited after the minimum interval"() {
+        given:
+        WebURL page = url(1)
+
+        when:
+        scheduler.recordVisit(page, 42, 0)
+
+        then:
+        scheduler.pollDue(MIN - 1).isEmpty()
+        scheduler.pollDue(MIN) == [page]
+        scheduler.getPendingCount() == 0
+    }
+
+    def "the interval of a page which does not change doubles up to the maximum"() {
+        given:
+        WebURL page = url(1)
+        List<Long> intervals = []
+
+        when: "visiting it whenever it is due, always with the same content"
+        long now = 0
+        7.times {
+            scheduler.recordVisit(page, 42, now)
+            intervals << scheduler.getRevisitInterval(page)
+            now += scheduler.getRevisitInterval(page)
+        }
+
+        then:
+        intervals == [MIN, 2 * MIN, 4 * MIN, 8 * MIN, MAX, MAX, MAX]
+    }
+
+    def "a page which changes at every visit stays at the minimum interval"() {
+        given:
+        WebURL page = url(1)
+
+        when:
+        long now = 0
+        5.times {
+            scheduler.recordVisit(page, it, now)
+            now += scheduler.getRevisitInterval(page)
+        }
+
+        then:
+        scheduler.getRevisitInterval(page) == MIN
+    }
+
+    def "the interval follows the estimated change rate"() {
+        given: "a page which changed at one of its three revisits, an interval apart"
+        WebURL page = url(1)
+        long interval = MIN
+        scheduler.recordVisit(page, 1, 0)
+        scheduler.recordVisit(page, 1, interval)
+        scheduler.recordVisit(page, 2, 2 * interval)
+
+        when:
+        scheduler.recordVisit(page, 2, 3 * interval)
+
+        then: "the next one is a change interval away, at a rate of -ln(2.5 / 3.5) changes per interval"
+        Math.abs(scheduler.getRevisitInterval(page) - interval / -Math.log(2.5 / 3.5)) < 1
+    }
+
+    def "due pages are returned the ones due the longest first"() {
+        given:
+        scheduler.recordVisit(url(1), 0, 20)
+        scheduler.recordVisit(url(2), 0, 10)
+        scheduler.recordVisit(url(3), 0, 30)
+
+        expect:
+        scheduler.pollDue(MIN + 25)*.docid == [2, 1]
+        scheduler.getPendingCount() == 1
+    }
+
+    def "a failed revisit is retried after twice the interval, until it failed too often"() {
+        given: "a page due for its revisit"
+        WebURL page = url(1)
+        scheduler.recordVisit(page, 42, 0)
+        long now = MIN
+        scheduler.pollDue(now)
+        List<Long> intervals = []
+
+        when: "every revisit fails"
+        RecrawlScheduler.MAX_FAILED_REVISITS.times {
+            scheduler.recordFailedVisit(page, now)
+            intervals << scheduler.getRevisitInterval(page)
+            now += Math.max(0, scheduler.getRevisitInterval(page))
+            scheduler.pollDue(now)
+        }
+
+        then:
+        intervals == [2 * MIN, 4 * MIN, 8 * MIN, MAX, -1]
+        scheduler.getPendingCount() == 0
+    }
+
+    def "a successful revisit resets the failures"() {
+        given: "a page whose revisits failed all but one time too often"
+        WebURL page = url(1)
+        scheduler.recordVisit(page, 42, 0)
+        long now = MIN
+        scheduler.pollDue(now)
+        (RecrawlScheduler.MAX_FAILED_REVISITS - 1).times {
+            scheduler.recordFailedVisit(page, now)
+            now += scheduler.getRevisitInterval(page)
+            scheduler.pollDue(now)
+        }
+
+        when: "a revisit succeeds before the next one fails"
+        scheduler.recordVisit(page, 42, now)
+        now += scheduler.getRevisitInterval(page)
+        scheduler.pollDue(now)
+        scheduler.recordFailedVisit(page, now)
+
+        then:
+        scheduler.getRevisitInterval(page) == MAX
+        scheduler.getPendingCount() == 1
+    }
+
+    def "failed visits of pages which are queued or were never visited are ignored"() {
+        given:
+        scheduler.recordVisit(url(1), 42, 0)
+
+        when:
+        scheduler.recordFailedVisit(url(1), 10)
+        scheduler.recordFailedVisit(url(2), 10)
+
+        then:
+        scheduler.getRevisitInterval(url(1)) == MIN
+        scheduler.getRevisitInterval(url(2)) == -1
+        scheduler.pollDue(MIN) == [url(1)]
+    }
+
+    def "forgotten pages are dropped from the schedule"() {
+        given:
+        scheduler.recordVisit(url(1), 42, 0)
+        scheduler.recordVisit(url(2), 42, 0)
+        scheduler.pollDue(MIN)
+
+        when:
+        scheduler.forget(url(1))
+        scheduler.recordVisit(url(2), 42, MIN)
+        scheduler.forget(url(2))
+
+        then:
+        scheduler.getRevisitInterval(url(1)) == -1
+        scheduler.getRevisitInterval(url(2)) == -1
+        scheduler.getPendingCount() == 0
+    }
+
+    private static WebURL url(int docid) {
+        WebURL webUrl = new WebURL()
+        webUrl.setURL("http://a.com/" + docid)
+        webUrl.setDocid(docid)
+        return webUrl
+    }
+}
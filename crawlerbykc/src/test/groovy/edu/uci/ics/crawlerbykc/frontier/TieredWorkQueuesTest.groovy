@@ -0,0 +1,82 @@
+package edu.uci.ics.crawlerbykc.frontier
+
+import com.sleepycat.je.Environment
+import com.sleepycat.je.EnvironmentConfig
+import edu.uci.ics.crawlerbykc.url.WebURL
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class TieredWorkQueuesTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    @Unroll
+    def "urls are claimed in key order while the buffer spills and refills (resumable: #resumable)"() {
+        given: "a buffer of 10 urls"
+        Environment env = openEnvironment(resumable)
+        TieredWorkQueues workQueues = new TieredWorkQueues(env, "PendingURLsDB", resumable, 10)
+        List<Integer> docids = (1..200).toList()
+        Collections.shuffle(docids, new Random(1))
+
+        when: "urls are queued in random order, in between claims"
+        List<Integer> claimed = []
+        docids.collate(20).each { batch ->
+            workQueues.putAll(batch.collect { url(it) })
+            claimed.addAll(workQueues.claim(3, null)*.docid)
+        }
+        while (workQueues.getLength() > 0) {
+            claimed.addAll(workQueues.claim(7, null)*.docid)
+        }
+
+        then: "every url is claimed once, and urls queued before a claim in key order"
+        claimed.size() == 200
+        claimed as Set == (1..200) as Set
+        claimed.drop(30) == claimed.drop(30).sort()
+        workQueues.getRefills() > 0
+        workQueues.getSpills() > 0
+        workQueues.getBufferHits() > 0
+
+        cleanup:
+        workQueues.close()
+        env.close()
+
+        where:
+        resumable << [false, true]
+    }
+
+    def "buffered urls survive a restart when crawling is resumable"() {
+        given:
+        Environment env = openEnvironment(true)
+        TieredWorkQueues workQueues = new TieredWorkQueues(env, "PendingURLsDB", true, 10)
+        workQueues.putAll((1..5).collect { url(it) })
+        workQueues.claim(2, null)
+        workQueues.close()
+        env.close()
+
+        when:
+        env = openEnvironment(true)
+        workQueues = new TieredWorkQueues(env, "PendingURLsDB", true, 10)
+
+        then:
+        workQueues.getLength() == 3
+        workQueues.claim(10, null)*.docid == [3, 4, 5]
+
+        cleanup:
+        workQueues.close()
+        env.close()
+    }
+
+    private Environment openEnvironment(boolean resumable) {
+        return new Environment(temp.getRoot(), new EnvironmentConfig(allowCreate: true, transactional: resumable))
+    }
+
+    private static WebURL url(int docid) {
+        WebURL webUrl = new WebURL()
+        webUrl.setURL("http://a.com/page" + docid)
+        webUrl.setDocid(docid)
+        return webUrl
+    }
+}
@@ -0,0 +1,83 @@
+package edu.uci.ics.crawlerbykc.frontier
+
+import com.sleepycat.je.Environment
+import com.sleepycat.je.EnvironmentConfig
+import com.sleepycat.je.Transaction
+import edu.uci.ics.crawlerbykc.url.WebURL
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class WorkQueuesTest extends Specification {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder()
+
+    Environment env
+
+    def setup() {
+        env = new Environment(temp.getRoot(), new EnvironmentConfig(allowCreate: true, transactional: true))
+    }
+
+    def cleanup() {
+        env.close()
+    }
+
+    def "a batch of urls is queued in crawl order"() {
+        given:
+        WorkQueues workQueues = new WorkQueues(env, "PendingURLsDB", true)
+
+        when:
+        workQueues.putAll([url("http://a.com/3", 3), url("http://a.com/1", 1), url("http://a.com/2", 2)])
+
+        then:
+        workQueues.getLength() == 3
+        workQueues.get(10)*.URL == ["http://a.com/1", "http://a.com/2", "http://a.com/3"]
+
+        cleanup:
+        workQueues.close()
+    }
+
+    def "a batch which fails part way leaves nothing behind"() {
+        given: "queues which fail to write the third url"
+        WorkQueues workQueues = new FailingWorkQueues(env, 3)
+        workQueues.put(url("http://a.com/0", 10))
+
+        when:
+        workQueues.putAll((1..5).collect { url("http://a.com/" + it, it) })
+
+        then:
+        thrown(IllegalStateException)
+
+        and: "only the url queued before is there"
+        workQueues.get(10)*.URL == ["http://a.com/0"]
+
+        cleanup:
+        workQueues.close()
+    }
+
+    private static WebURL url(String url, int docid) {
+        WebURL webUrl = new WebURL()
+        webUrl.setURL(url)
+        webUrl.setDocid(docid)
+        return webUrl
+    }
+
+    static class FailingWorkQueues extends WorkQueues {
+
+        final int failingDocid
+
+        FailingWorkQueues(Environment env, int failingDocid) {
+            super(env, "PendingURLsDB", true)
+            this.failingDocid = failingDocid
+        }
+
+        @Override
+        protected void put(Transaction txn, WebURL url) {
+            if (url.getDocid() == failingDocid) {
+                throw new IllegalStateException("Failed to write: " + url.getURL())
+            }
+            super.put(txn, url)
+        }
+    }
+}
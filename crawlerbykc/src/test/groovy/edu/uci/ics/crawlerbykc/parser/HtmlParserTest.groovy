@@ -24,5 +24,53 @@ class HtmlParserTest extends Specification {
         noExceptionThrown()
     }
 
+    def "pages parsed one after the other by a thread do not share their data"() {
+        given:
+        def parser = new TikaHtmlParser(new CrawlConfig(), null)
+        def first = page('<html><head><meta name="robots" content="noindex"></head>' +
+                         '<body>first <a href="/first.html">first link</a></body></html>')
+        def second = page('<html><body>second <a href="/second.html">second link</a></body></html>')
+
+        when:
+        def firstData = parser.parse(first, "http://example.com/")
+        def secondData = parser.parse(second, "http://example.com/")
+
+        then: "the text and the html are only computed now, and still those of their page"
+        firstData.text.contains("first")
+        !firstData.text.contains("second")
+        firstData.html.contains("first link")
+        firstData.outgoingUrls*.URL == ["http://example.com/first.html"]
+        firstData.metaTags.robots == "noindex"
+
+        and:
+        secondData.text.contains("second")
+        secondData.outgoingUrls*.URL == ["http://example.com/second.html"]
+        !secondData.metaTags.containsKey("robots")
+    }
+
+    def "the language is identified when it is asked for, unless disabled"() {
+        given:
+        def parser = new Parser(new CrawlConfig(languageDetection: languageDetection), new TLDList(new CrawlConfig()))
+        def page = page('<html><body>This is a page in English, with sentences which are long enough ' +
+                        'for the language of the page to be identified from its text.</body></html>')
+
+        when:
+        parser.parse(page, "http://example.com/")
+
+        then:
+        page.language == language
+
+        where:
+        languageDetection || language
+        true              || "en"
+        false             || null
+    }
+
+    private static Page page(String html) {
+        def page = new Page(new WebURL(url: "http://example.com/"))
+        page.load new StringEntity(html, ContentType.TEXT_HTML.withCharset("UTF-8")), 1000000
+        return page
+    }
+
 }
 
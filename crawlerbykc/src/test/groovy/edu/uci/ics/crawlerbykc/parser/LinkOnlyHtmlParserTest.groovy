@@ -0,0 +1,139 @@
+package edu.uci.ics.crawlerbykc.parser
+
+import java.nio.charset.Charset
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig
+import edu.uci.ics.crawlerbykc.crawler.Page
+import edu.uci.ics.crawlerbykc.url.TLDList
+import edu.uci.ics.crawlerbykc.url.WebURL
+import org.apache.http.entity.ContentType
+import org.apache.http.entity.FileEntity
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class LinkOnlyHtmlParserTest extends Specification {
+
+    CrawlConfig config = new CrawlConfig()
+
+    def "finds the same links as tika in a real page"() {
+        given:
+        def url = new WebURL(url: "http://wiki.c2.com/")
+        def file = new File("src/test/resources/html/wiki.c2.com.html")
+        def entity = new FileEntity(file, new ContentType("text/html", Charset.forName("UTF-8")))
+        def page = new Page(url)
+        page.load entity, 1000000
+
+        when:
+        HtmlParseData tika = new TikaHtmlParser(config, null).parse(page, url.url)
+        HtmlParseData linkOnly = new LinkOnlyHtmlParser(config, null).parse(page, url.url)
+
+        then:
+        !linkOnly.outgoingUrls.isEmpty()
+        linkOnly.outgoingUrls*.URL as Set == tika.outgoingUrls*.URL as Set
+        linkOnly.title == tika.title
+        // Tika adds the content type and the charset it detected as meta tags
+        linkOnly.metaTags == tika.metaTags.findAll { !(it.key in ["content-type", "content-encoding"]) }
+        linkOnly.text == ""
+        linkOnly.html == null
+    }
+
+    def "extracts links, anchors, title and meta tags"() {
+        given:
+        String html = '''<!DOCTYPE html>
+            <html><head>
+            <META http-equiv="Content-Type" content="text/html; charset=ISO-8859-1">
+            <title>A &amp; B</title>
+            <meta name="Robots" content="noindex">
+            <base href="http://example.com/base/">
+            <base href="http://example.com/ignored/">
+            <script src="/app.js"></script>
+            <script>document.write('<a href="/in-script.html">x</a>')</script>
+            <style>a > b { color: red }</style>
+            </head><body>
+            <!-- <a href="/in-comment.html">x</a> -->
+            <A HREF="page.html?a=1&amp;b=2" class='nav' data-x>The  <b>page</b></a>
+            <a href=/unquoted.html>unquoted</a>
+            <img src="/image.png" alt="a > b">
+            <iframe src="/frame.html"></iframe>
+            <a href="/caf\u00e9.html">caf\u00e9 &#233;&#xE9;</a>
+            <a href="javascript:void(0)">js</a>
+            1 < 2
+            </body></html>'''
+        Page page = page(html.getBytes("ISO-8859-1"), "text/html")
+
+        when:
+        HtmlParseData data = new LinkOnlyHtmlParser(config, null).parse(page, "http://example.com/")
+
+        then:
+        data.title == "A & B"
+        data.contentCharset == "ISO-8859-1"
+        data.metaTags == ["content-type": "text/html; charset=ISO-8859-1", "robots": "noindex"]
+        data.outgoingUrls*.URL as Set == [
+                "http://example.com/app.js",
+                "http://example.com/base/page.html?a=1&b=2",
+                "http://example.com/unquoted.html",
+                "http://example.com/image.png",
+                "http://example.com/frame.html",
+                "http://example.com/caf\u00e9.html"] as Set
+
+        and:
+        WebURL link = data.outgoingUrls.find { it.URL.contains("page.html") }
+        link.tag == "a"
+        link.anchor == "The  page"
+        link.attributes == ["href": "page.html?a=1&b=2", "class": "nav", "data-x": ""]
+        data.outgoingUrls.find { it.URL.contains("caf") }.anchor == "caf\u00e9 \u00e9\u00e9"
+        data.outgoingUrls.find { it.URL.contains("image") }.tag == "img"
+    }
+
+    def "meta refresh and location are followed"() {
+        given:
+        Page page = page('''<html><head>
+            <meta http-equiv="refresh" content="0;URL=http://example.com/refresh.html">
+            <meta http-equiv="location" content="http://example.com/location.html">
+            </head></html>'''.getBytes("UTF-8"), "text/html; charset=UTF-8")
+
+        when:
+        HtmlParseData data = new LinkOnlyHtmlParser(config, null).parse(page, "http://example.com/")
+
+        then:
+        data.outgoingUrls*.URL as Set == ["http://example.com/refresh.html", "http://example.com/location.html"] as Set
+        data.outgoingUrls*.tag as Set == ["meta"] as Set
+    }
+
+    @Unroll
+    def "truncated markup does not fail: #html"() {
+        when:
+        HtmlParseData data = new LinkOnlyHtmlParser(config, null).parse(page(html.getBytes("UTF-8"), "text/html"),
+                                                                        "http://example.com/")
+
+        then:
+        data.outgoingUrls*.URL == urls
+
+        where:
+        html                        || urls
+        ''                          || []
+        '<'                         || []
+        '<a href="/a.html'          || ["http://example.com/a.html"]
+        '<a href=/a.html'           || ["http://example.com/a.html"]
+        '<a href="/a.html">text'    || ["http://example.com/a.html"]
+        '<script>'                  || []
+        '<!-- <a href="/a.html">'   || []
+        '</'                        || []
+    }
+
+    def "the parser is chosen by the config"() {
+        given:
+        TLDList tldList = new TLDList(config)
+
+        expect:
+        new Parser(new CrawlConfig(linkOnlyParsing: true), tldList).htmlContentParser instanceof LinkOnlyHtmlParser
+        new Parser(new CrawlConfig(), tldList).htmlContentParser instanceof TikaHtmlParser
+    }
+
+    private static Page page(byte[] content, String contentType) {
+        Page page = new Page(new WebURL(url: "http://example.com/"))
+        page.setContentData(content)
+        page.setContentType(contentType)
+        return page
+    }
+}
@@ -0,0 +1,93 @@
+package edu.uci.ics.crawlerbykc.robotstxt
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static edu.uci.ics.crawlerbykc.robotstxt.HostDirectives.ALLOWED
+import static edu.uci.ics.crawlerbykc.robotstxt.HostDirectives.DISALLOWED
+import static edu.uci.ics.crawlerbykc.robotstxt.HostDirectives.UNDEFINED
+
+class PathRuleMatcherTest extends Specification {
+
+    @Unroll
+    def "#path is #expected"() {
+        given:
+        PathRuleMatcher matcher = new PathRuleMatcher([
+                new PathRule(DISALLOWED, "/private/"),
+                new PathRule(ALLOWED, "/private/public/"),
+                new PathRule(DISALLOWED, "/*.pdf\$"),
+                new PathRule(DISALLOWED, "/search*q="),
+                new PathRule(ALLOWED, "/index.html\$"),
+                new PathRule(DISALLOWED, "/index"),
+        ])
+
+        expect:
+        matcher.checkAccess(path) == expected
+
+        where:
+        path                        | expected
+        "/"                         | UNDEFINED
+        "/private/"                 | DISALLOWED
+        "/private/page.html"        | DISALLOWED
+        "/private/public/page.html" | ALLOWED
+        "/docs/file.pdf"            | DISALLOWED
+        "/docs/file.pdf.html"       | UNDEFINED
+        "/.pdf"                     | UNDEFINED
+        "/search?q=crawler"         | DISALLOWED
+        "/searchq="                 | UNDEFINED
+        "/index.html"               | ALLOWED
+        "/index.html?page=2"        | DISALLOWED
+    }
+
+    def "an allow rule wins over a disallow rule with the same pattern"() {
+        given:
+        PathRuleMatcher matcher = new PathRuleMatcher([
+                new PathRule(DISALLOWED, "/page"),
+                new PathRule(ALLOWED, "/page"),
+        ])
+
+        expect:
+        matcher.checkAccess("/page.html") == ALLOWED
+    }
+
+    def "the verdict is the one of the first matching rule in the order of the regular expressions"() {
+        given:
+        Random random = new Random(42)
+
+        expect:
+        (1..2000).every {
+            List<PathRule> rules = (0..<random.nextInt(8)).collect {
+                new PathRule(random.nextBoolean() ? ALLOWED : DISALLOWED, randomString(random, "/ab*\$\\", 6))
+            }
+            PathRuleMatcher matcher = new PathRuleMatcher(rules)
+            (1..20).every {
+                String path = randomString(random, "/ab*\$\\\n", 8)
+                int expected = checkAccessWithRegexps(rules, path)
+                assert matcher.checkAccess(path) == expected: "$path with ${rules*.robotsPattern}"
+                true
+            }
+        }
+    }
+
+    /**
+     * The matching of the rules before they were compiled: the matching rule with the longest,
+     * then the alphabetically first regular expression decides.
+     */
+    private static int checkAccessWithRegexps(List<PathRule> rules, String path) {
+        PathRule first = rules.findAll { it.matches(path) }.sort { lhs, rhs ->
+            String p1 = lhs.pattern.toString()
+            String p2 = rhs.pattern.toString()
+            p2.length() <=> p1.length() ?: p1 <=> p2 ?: (lhs.type == ALLOWED ? -1 : 1) <=> (rhs.type == ALLOWED ? -1 : 1)
+        }.find()
+        return first == null ? UNDEFINED : first.type
+    }
+
+    private static String randomString(Random random, String alphabet, int maxLength) {
+        int length = random.nextInt(maxLength + 1)
+        StringBuilder sb = new StringBuilder()
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())))
+        }
+        return sb.toString()
+    }
+}
@@ -0,0 +1,204 @@
+package edu.uci.ics.crawlerbykc.robotstxt
+
+import java.net.InetAddress
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig
+import edu.uci.ics.crawlerbykc.fetcher.PageFetcher
+import edu.uci.ics.crawlerbykc.url.WebURL
+import org.apache.http.conn.DnsResolver
+import org.junit.Rule
+import spock.lang.Specification
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*
+
+class RobotstxtServerTest extends Specification {
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(new WireMockConfiguration().dynamicPort())
+
+    // Every host name is resolved to the loopback address, so that it reaches the mock server
+    CrawlConfig config = new CrawlConfig(politenessDelay: 0,
+            dnsResolver: { String host -> [InetAddress.getLoopbackAddress()] as InetAddress[] } as DnsResolver)
+    PageFetcher pageFetcher
+
+    def setup() {
+        pageFetcher = new PageFetcher(config)
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/plain")
+                .withBody("User-agent: *\nDisallow: /private/\n")))
+    }
+
+    def cleanup() {
+        pageFetcher.shutDown()
+    }
+
+    def "directives are fetched once and then answered from the cache"() {
+        given:
+        RobotstxtServer server = newServer(new RobotstxtConfig())
+
+        expect:
+        server.allows(url("localhost", "/public.html"))
+        !server.allows(url("localhost", "/private/page.html"))
+        server.allows(url("localhost", "/other.html"))
+
+        and:
+        verify(exactly(1), getRequestedFor(urlEqualTo("/robots.txt")))
+        server.fetches == 1
+        server.cacheMisses == 1
+        server.cacheHits == 2
+    }
+
+    def "concurrent misses of a host wait for a single fetch"() {
+        given: "a slow robots.txt"
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/plain")
+                .withFixedDelay(500)
+                .withBody("User-agent: *\nDisallow: /private/\n")))
+        RobotstxtServer server = newServer(new RobotstxtConfig())
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        def results = executor.invokeAll((1..8).collect {
+            { -> server.allows(url("localhost", "/private/${it}.html")) } as Callable<Boolean>
+        }).collect { it.get() }
+
+        then:
+        results.every { !it }
+        verify(exactly(1), getRequestedFor(urlEqualTo("/robots.txt")))
+        server.fetches == 1
+        server.cacheMisses + server.cacheHits == 8
+        server.coalescedFetches == server.cacheMisses - 1
+        server.averageFetchMillis >= 500
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "the least recently used host is evicted when the cache is full"() {
+        given: "a cache of two hosts"
+        RobotstxtServer server = newServer(new RobotstxtConfig(cacheSize: 2))
+
+        when: "three hosts are used, the first one again before the third one"
+        server.allows(url("localhost", "/"))
+        server.allows(url("127.0.0.1", "/"))
+        server.allows(url("localhost", "/"))
+        server.allows(url("third.test", "/"))
+
+        then:
+        server.cachedHosts == 2
+        server.host2directivesCache.keySet() == [hostPort("localhost"), hostPort("third.test")] as Set
+
+        when: "the evicted host is used again"
+        server.allows(url("127.0.0.1", "/"))
+
+        then: "it is fetched again"
+        server.fetches == 4
+        verify(exactly(4), getRequestedFor(urlEqualTo("/robots.txt")))
+    }
+
+    def "the crawl delay of the most specific user agent clause sets the delay of the host"() {
+        given:
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/plain")
+                .withBody("User-agent: *\nCrawl-delay: 5\n\nUser-agent: crawlerbykc\nCrawl-delay: 1.5\nDisallow: /private/\n")))
+        RobotstxtServer server = newServer(new RobotstxtConfig())
+
+        when:
+        server.allows(url("localhost", "/"))
+
+        then:
+        server.getCrawlDelay(hostPort("localhost")) == 1500
+        pageFetcher.politenessScheduler.getDelay(hostPort("localhost")) == 1500
+
+        and: "hosts without a cached crawl delay keep the politeness delay"
+        pageFetcher.politenessScheduler.getDelay(hostPort("127.0.0.1")) == config.politenessDelay
+    }
+
+    def "the crawl delay of a host is dropped when it is evicted from the cache"() {
+        given: "a cache of one host, whose robots.txt has a crawl delay"
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/plain")
+                .withBody("User-agent: *\nCrawl-delay: 5\n")))
+        RobotstxtServer server = newServer(new RobotstxtConfig(cacheSize: 1))
+        server.allows(url("localhost", "/"))
+
+        when: "another host is used"
+        server.allows(url("127.0.0.1", "/"))
+
+        then:
+        pageFetcher.politenessScheduler.getDelay(hostPort("localhost")) == config.politenessDelay
+        pageFetcher.politenessScheduler.getDelay(hostPort("127.0.0.1")) == 5000
+    }
+
+    def "the crawl delay is kept between the fetches of the urls of the host"() {
+        given:
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/plain")
+                .withBody("User-agent: *\nCrawl-delay: 0.3\n")))
+        RobotstxtServer server = newServer(new RobotstxtConfig())
+
+        when: "two pages of the host are fetched after its robots.txt was checked"
+        server.allows(url("localhost", "/"))
+        pageFetcher.politenessScheduler.acquire(url("localhost", "/a.html"))
+        long waited = pageFetcher.politenessScheduler.acquire(url("localhost", "/b.html"))
+
+        then: "the second one waits for the crawl delay"
+        waited > 200
+    }
+
+    def "the crawl delay is capped at the maximum crawl delay"() {
+        given:
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/plain")
+                .withBody("User-agent: *\nCrawl-delay: 86400\n")))
+        RobotstxtServer server = newServer(new RobotstxtConfig(maxCrawlDelay: 2000))
+
+        when:
+        server.allows(url("localhost", "/"))
+
+        then:
+        server.getCrawlDelay(hostPort("localhost")) == 2000
+        pageFetcher.politenessScheduler.getDelay(hostPort("localhost")) == 2000
+    }
+
+    def "the crawl delay is ignored when not honored"() {
+        given:
+        stubFor(get(urlEqualTo("/robots.txt")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/plain")
+                .withBody("User-agent: *\nCrawl-delay: 5\n")))
+        RobotstxtServer server = newServer(new RobotstxtConfig(honorCrawlDelay: false))
+
+        when:
+        server.allows(url("localhost", "/"))
+
+        then:
+        pageFetcher.politenessScheduler.getDelay(hostPort("localhost")) == config.politenessDelay
+    }
+
+    private RobotstxtServer newServer(RobotstxtConfig robotstxtConfig) {
+        RobotstxtServer server = new RobotstxtServer(robotstxtConfig, pageFetcher)
+        server.setCrawlConfig(config)
+        return server
+    }
+
+    private WebURL url(String host, String path) {
+        WebURL webUrl = new WebURL()
+        webUrl.setURL("http://" + hostPort(host) + path)
+        return webUrl
+    }
+
+    private String hostPort(String host) {
+        return host + ":" + wireMockRule.port()
+    }
+}
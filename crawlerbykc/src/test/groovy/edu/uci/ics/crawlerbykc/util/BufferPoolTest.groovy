@@ -0,0 +1,54 @@
+package edu.uci.ics.crawlerbykc.util
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class BufferPoolTest extends Specification {
+
+    @Unroll
+    def "a buffer of at least #minLength bytes is #length bytes long"() {
+        expect:
+        new BufferPool(1 << 20, 1 << 20).acquire(minLength).length == length
+
+        where:
+        minLength   | length
+        0           | 4096
+        4096        | 4096
+        4097        | 8192
+        1000000     | 1 << 20
+        1 << 20     | 1 << 20
+        (1 << 20) + 1 | (1 << 20) + 1
+    }
+
+    def "released buffers are reused up to the number of bytes per size"() {
+        given: "a pool keeping two buffers of 8 KB"
+        BufferPool pool = new BufferPool(1 << 20, 16384)
+        List<byte[]> buffers = (1..3).collect { pool.acquire(8000) }
+
+        when:
+        buffers.each { pool.release(it) }
+
+        then:
+        pool.pooled == 2
+
+        when:
+        byte[] buffer = pool.acquire(5000)
+
+        then:
+        buffers.any { it.is(buffer) }
+        pool.reused == 1
+        pool.allocated == 3
+    }
+
+    def "buffers which were not taken from the pool are not kept"() {
+        given:
+        BufferPool pool = new BufferPool(1 << 20, 1 << 20)
+
+        when:
+        pool.release(new byte[5000])
+        pool.release(new byte[2 << 20])
+
+        then:
+        pool.pooled == 0
+    }
+}
@@ -0,0 +1,55 @@
+package edu.uci.ics.crawlerbykc.util
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class LimitedInputStreamTest extends Specification {
+
+    @Unroll
+    def "#length bytes read with a limit of #maxBytes"() {
+        given:
+        byte[] data = (0..<length).collect { it as byte } as byte[]
+        ByteArrayOutputStream tee = new ByteArrayOutputStream()
+        LimitedInputStream stream = new LimitedInputStream(new ByteArrayInputStream(data), maxBytes, tee)
+
+        when:
+        byte[] read = readAll(stream)
+
+        then:
+        read == data[0..<expected] as byte[]
+        tee.toByteArray() == read
+        stream.count == expected
+        stream.truncated == truncated
+
+        where:
+        length | maxBytes || expected | truncated
+        0      | 10       || 0        | false
+        10     | 10       || 10       | false
+        11     | 10       || 10       | true
+        5000   | 4097     || 4097     | true
+        5000   | 0        || 5000     | false
+    }
+
+    def "single bytes are limited and copied too"() {
+        given:
+        ByteArrayOutputStream tee = new ByteArrayOutputStream()
+        LimitedInputStream stream = new LimitedInputStream(new ByteArrayInputStream([1, 2, 3] as byte[]), 2, tee)
+
+        expect:
+        stream.read() == 1
+        stream.skip(5) == 1
+        stream.read() == -1
+        stream.truncated
+        tee.toByteArray() == [1, 2] as byte[]
+    }
+
+    private static byte[] readAll(InputStream stream) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+        byte[] buffer = new byte[1000]
+        int read
+        while ((read = stream.read(buffer)) != -1) {
+            out.write(buffer, 0, read)
+        }
+        return out.toByteArray()
+    }
+}
@@ -0,0 +1,148 @@
+package edu.uci.ics.crawlerbykc.tests.crawler;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.crawler.CrawlController;
+import edu.uci.ics.crawlerbykc.crawler.Page;
+import edu.uci.ics.crawlerbykc.crawler.WebCrawler;
+import edu.uci.ics.crawlerbykc.fetcher.PageFetcher;
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtConfig;
+import edu.uci.ics.crawlerbykc.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawlerbykc.url.WebURL;
+
+/**
+ * Crawls a local site whose pages take a fixed time to be served, with platform or with virtual
+ * crawler threads, and reports the throughput and the peak number of live platform threads.
+ * While the crawl is bound by the server latency, the throughput grows with the number of
+ * crawlers as long as the threads keep up. Run each mode in its own JVM, so that neither gets
+ * the JIT warm-up of the other. Virtual threads need Java 21 or later. Not run as part of the
+ * tests.
+ *
+ * Usage: CrawlerThreadsBenchmark [platform|virtual] [number of crawlers] [number of pages] [latency in ms]
+ */
+public class CrawlerThreadsBenchmark {
+
+    private static final int LINKS_PER_PAGE = 20;
+
+    public static void main(String[] args) throws Exception {
+        boolean virtual = args.length > 0 && args[0].equals("virtual");
+        int numCrawlers = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int numPages = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        int latencyMs = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        HttpServer server = startServer(numPages, latencyMs);
+        try {
+            crawl(server, numCrawlers, numPages, virtual);
+        } finally {
+            server.stop(0);
+            System.exit(0);
+        }
+    }
+
+    private static void crawl(HttpServer server, int numCrawlers, int numPages, boolean virtual)
+        throws Exception {
+        CrawlConfig config = new CrawlConfig();
+        config.setCrawlStorageFolder(Files.createTempDirectory("crawler-threads").toString());
+        config.setInMemoryStorage(true);
+        config.setVirtualCrawlerThreads(virtual);
+        config.setPolitenessDelay(0);
+        config.setMaxConnectionsPerHost(numCrawlers);
+        config.setMaxTotalConnections(numCrawlers);
+        config.setBatchReadSize(1);
+        config.setThreadMonitoringDelaySeconds(1);
+        config.setThreadShutdownDelaySeconds(1);
+        config.setCleanupDelaySeconds(1);
+        try {
+            config.validate();
+        } catch (Exception e) {
+            System.out.println((virtual ? "virtual" : "platform") + " threads: " + e.getMessage());
+            return;
+        }
+
+        PageFetcher pageFetcher = new PageFetcher(config);
+        RobotstxtConfig robotstxtConfig = new RobotstxtConfig();
+        robotstxtConfig.setEnabled(false);
+        RobotstxtServer robotstxtServer = new RobotstxtServer(robotstxtConfig, pageFetcher);
+        CrawlController controller = new CrawlController(config, pageFetcher, robotstxtServer);
+        controller.addSeed("http://localhost:" + server.getAddress().getPort() + "/0");
+
+        long start = System.nanoTime();
+        controller.startNonBlocking(QuietCrawler.class, numCrawlers);
+        int peakThreads = 0;
+        while (controller.getFrontier().getNumberOfProcessedPages() < numPages &&
+               System.nanoTime() - start < 300_000_000_000L) {
+            peakThreads = Math.max(peakThreads, Thread.activeCount());
+            Thread.sleep(10);
+        }
+        long elapsed = System.nanoTime() - start;
+        long processed = controller.getFrontier().getNumberOfProcessedPages();
+        controller.shutdown();
+        controller.waitUntilFinish();
+
+        System.out.printf("%s threads, %d crawlers: %d pages in %,d ms, %,.0f pages/s, " +
+                          "peak %d live platform threads%n", virtual ? "virtual" : "platform", numCrawlers,
+                          processed, elapsed / 1_000_000, processed * 1e9 / elapsed, peakThreads);
+    }
+
+    /**
+     * Serves pages /0 to /numPages-1, each linking to the next LINKS_PER_PAGE pages of a tree,
+     * after the given latency. The responses are sent from a scheduler, so that waiting
+     * requests hold no server threads.
+     */
+    private static HttpServer startServer(int numPages, int latencyMs) throws Exception {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4, r -> {
+            Thread thread = new Thread(r, "Server responder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // By default the server closes all but 200 idle keep-alive connections
+        System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(Integer.MAX_VALUE));
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 8192);
+        server.createContext("/", exchange -> scheduler.schedule(() -> respond(exchange, numPages), latencyMs,
+                                                                 TimeUnit.MILLISECONDS));
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange, int numPages) {
+        try {
+            int page = Integer.parseInt(exchange.getRequestURI().getPath().substring(1));
+            StringBuilder body = new StringBuilder("<html><body>");
+            for (int i = page * LINKS_PER_PAGE + 1; i <= (page + 1) * LINKS_PER_PAGE && i < numPages; i++) {
+                body.append("<a href=\"/").append(i).append("\">").append(i).append("</a>");
+            }
+            byte[] bytes = body.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (Exception e) {
+            exchange.close();
+        }
+    }
+
+    public static class QuietCrawler extends WebCrawler {
+
+        @Override
+        public boolean shouldVisit(Page referringPage, WebURL url) {
+            return true;
+        }
+
+        @Override
+        public void visit(Page page) {
+            // Only the fetching is measured
+        }
+    }
+}
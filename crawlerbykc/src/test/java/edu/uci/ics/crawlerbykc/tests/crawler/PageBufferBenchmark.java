@@ -0,0 +1,105 @@
+package edu.uci.ics.crawlerbykc.tests.crawler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.util.ByteArrayBuffer;
+
+import edu.uci.ics.crawlerbykc.crawler.Page;
+import edu.uci.ics.crawlerbykc.url.WebURL;
+import edu.uci.ics.crawlerbykc.util.BufferPool;
+
+/**
+ * Measures the bytes allocated to read the content of pages: the way it was done before, through
+ * a 4 KB buffer into a growing buffer which was copied once more, then straight into an array
+ * sized by the Content-Length, then into pooled buffers which are released after every page.
+ * Half of the pages have no Content-Length, as with chunked responses. Not run as part of the
+ * tests.
+ *
+ * Usage: PageBufferBenchmark [number of pages] [max page size]
+ */
+public class PageBufferBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int numPages = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int maxPageSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024 * 1024;
+
+        Random random = new Random(42);
+        byte[][] pages = new byte[numPages][];
+        long totalBytes = 0;
+        for (int i = 0; i < numPages; i++) {
+            // Mostly small pages, some close to the maximum
+            int size = (int) Math.min(maxPageSize, Math.exp(random.nextDouble() * Math.log(maxPageSize)));
+            pages[i] = new byte[size];
+            random.nextBytes(pages[i]);
+            totalBytes += size;
+        }
+        System.out.printf("%d pages, %,d bytes on average%n", numPages, totalBytes / numPages);
+
+        BufferPool pool = new BufferPool(maxPageSize, 8 * 1024 * 1024);
+        for (int round = 0; round < ROUNDS; round++) {
+            long copied = measure(pages, maxPageSize, "copied");
+            long exact = measure(pages, maxPageSize, null);
+            long pooled = measure(pages, maxPageSize, pool);
+            System.out.printf("  allocated per page: copied %,9d B, exact %,9d B, pooled %,9d B%n",
+                              copied / numPages, exact / numPages, pooled / numPages);
+        }
+    }
+
+    private static long measure(byte[][] pages, int maxBytes, Object mode) throws IOException {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(threadId);
+        long checksum = 0;
+        for (int i = 0; i < pages.length; i++) {
+            BasicHttpEntity entity = new BasicHttpEntity();
+            entity.setContent(new ByteArrayInputStream(pages[i]));
+            entity.setContentLength(i % 2 == 0 ? pages[i].length : -1);
+            if ("copied".equals(mode)) {
+                checksum += copiedByteArray(entity, maxBytes).length;
+            } else {
+                Page page = new Page(new WebURL());
+                page.setBufferPool((BufferPool) mode);
+                page.load(entity, maxBytes);
+                checksum += page.getContentLength();
+                page.releaseContent();
+            }
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - start;
+        if (checksum < 0) {
+            System.out.println(checksum);
+        }
+        return allocated;
+    }
+
+    /**
+     * Reads the content the way Page did before.
+     */
+    private static byte[] copiedByteArray(BasicHttpEntity entity, int maxBytes) throws IOException {
+        try (InputStream is = entity.getContent()) {
+            int readBufferLength = (int) entity.getContentLength();
+            if (readBufferLength <= 0) {
+                readBufferLength = 4096;
+            }
+            readBufferLength = Math.min(readBufferLength, maxBytes);
+            ByteArrayBuffer buffer = new ByteArrayBuffer(readBufferLength);
+            byte[] tmpBuff = new byte[4096];
+            int dataLength;
+            while ((dataLength = is.read(tmpBuff)) != -1) {
+                if (maxBytes > 0 && (buffer.length() + dataLength) > maxBytes) {
+                    buffer.append(tmpBuff, 0, maxBytes - buffer.length());
+                    break;
+                }
+                buffer.append(tmpBuff, 0, dataLength);
+            }
+            return buffer.toByteArray();
+        }
+    }
+}
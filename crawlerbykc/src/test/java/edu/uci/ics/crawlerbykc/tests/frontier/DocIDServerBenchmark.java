@@ -0,0 +1,78 @@
+package edu.uci.ics.crawlerbykc.tests.frontier;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.frontier.DocIDServer;
+import edu.uci.ics.crawlerbykc.util.IO;
+
+/**
+ * Compares the size of the DocIDs database and the lookup latency of url keys and
+ * fingerprint keys. Not run as part of the tests.
+ *
+ * Usage: DocIDServerBenchmark [number of urls]
+ */
+public class DocIDServerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numUrls = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        run("url keys", numUrls, false);
+        run("fingerprint keys", numUrls, true);
+    }
+
+    private static void run(String name, int numUrls, boolean fingerprintKeys) throws Exception {
+        File folder = Files.createTempDirectory("docids").toFile();
+        try {
+            CrawlConfig config = new CrawlConfig();
+            config.setCrawlStorageFolder(folder.getAbsolutePath());
+            config.setDocIdFingerprintKeys(fingerprintKeys);
+            // Measure the database, not the filter in front of it
+            config.setDocIdFilterSize(0);
+
+            EnvironmentConfig envConfig = new EnvironmentConfig();
+            envConfig.setAllowCreate(true);
+            Environment env = new Environment(folder, envConfig);
+            DocIDServer docIdServer = new DocIDServer(env, config);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < numUrls; i++) {
+                docIdServer.getNewDocID(url(i));
+            }
+            long insertNanos = System.nanoTime() - start;
+
+            Random random = new Random(42);
+            start = System.nanoTime();
+            for (int i = 0; i < numUrls; i++) {
+                // Half of the lookups are for seen urls, half for new ones
+                docIdServer.getDocId(url(random.nextInt(numUrls * 2)));
+            }
+            long lookupNanos = System.nanoTime() - start;
+
+            docIdServer.close();
+            env.sync();
+            env.close();
+
+            long size = 0;
+            File[] files = folder.listFiles((dir, fileName) -> fileName.endsWith(".jdb"));
+            if (files != null) {
+                for (File file : files) {
+                    size += file.length();
+                }
+            }
+            System.out.printf("%-16s %,d urls: database %,d bytes, insert %,d ns/url, lookup %,d ns/url%n",
+                              name, numUrls, size, insertNanos / numUrls, lookupNanos / numUrls);
+        } finally {
+            IO.deleteFolder(folder);
+        }
+    }
+
+    private static String url(int i) {
+        return "https://www.example" + (i % 1000) + ".com/some/fairly/long/path/to/a/page?id=" + i +
+               "&session=" + Integer.toHexString(i * 31);
+    }
+}
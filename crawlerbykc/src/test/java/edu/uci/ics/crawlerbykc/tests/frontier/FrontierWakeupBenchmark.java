@@ -0,0 +1,86 @@
+package edu.uci.ics.crawlerbykc.tests.frontier;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.frontier.Frontier;
+import edu.uci.ics.crawlerbykc.url.WebURL;
+
+/**
+ * Measures how long it takes for a scheduled url to be handed to one of many idle crawler
+ * threads, and the CPU time the threads spend meanwhile. Urls trickle in one at a time, as at
+ * the start of a crawl or when the queue has run dry. Not run as part of the tests.
+ *
+ * Usage: FrontierWakeupBenchmark [number of threads] [number of urls]
+ */
+public class FrontierWakeupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int numUrls = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        CrawlConfig config = new CrawlConfig();
+        config.setInMemoryStorage(true);
+        Frontier frontier = new Frontier(null, config);
+
+        ConcurrentMap<Integer, Long> scheduledAt = new ConcurrentHashMap<>();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong cpuNanos = new AtomicLong();
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            Thread thread = new Thread(() -> {
+                while (!frontier.isFinished()) {
+                    List<WebURL> urls = new ArrayList<>();
+                    frontier.getNextURLs(50, urls);
+                    long now = System.nanoTime();
+                    for (WebURL url : urls) {
+                        latencies.add(now - scheduledAt.get(url.getDocid()));
+                    }
+                }
+                cpuNanos.addAndGet(threadBean.getCurrentThreadCpuTime());
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        Thread.sleep(500);
+
+        long start = System.nanoTime();
+        for (int i = 1; i <= numUrls; i++) {
+            WebURL url = new WebURL();
+            url.setURL("http://www.example.com/" + i);
+            url.setDocid(i);
+            scheduledAt.put(i, System.nanoTime());
+            frontier.scheduleAll(Collections.singletonList(url));
+            Thread.sleep(1);
+        }
+        while (latencies.size() < numUrls && System.nanoTime() - start < 60_000_000_000L) {
+            Thread.sleep(10);
+        }
+        long elapsed = System.nanoTime() - start;
+        frontier.finish();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("%d threads, %d urls handed out of %d in %,d ms%n", numThreads, sorted.size(),
+                          numUrls, elapsed / 1_000_000);
+        if (!sorted.isEmpty()) {
+            System.out.printf("latency: median %,d us, p99 %,d us, max %,d us%n",
+                              sorted.get(sorted.size() / 2) / 1000,
+                              sorted.get(sorted.size() * 99 / 100) / 1000,
+                              sorted.get(sorted.size() - 1) / 1000);
+        }
+        System.out.printf("CPU time of the crawler threads: %,d ms%n", cpuNanos.get() / 1_000_000);
+    }
+}
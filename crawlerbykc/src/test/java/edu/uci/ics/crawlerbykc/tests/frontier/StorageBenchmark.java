@@ -0,0 +1,104 @@
+package edu.uci.ics.crawlerbykc.tests.frontier;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.frontier.DocIDServer;
+import edu.uci.ics.crawlerbykc.frontier.Frontier;
+import edu.uci.ics.crawlerbykc.frontier.InMemoryDocIDServer;
+import edu.uci.ics.crawlerbykc.url.WebURL;
+import edu.uci.ics.crawlerbykc.util.IO;
+
+/**
+ * Compares the sleepycat DB storage of a crawl which is not resumable with the in memory
+ * storage: assigning docids to the outgoing links of pages, scheduling the new ones and
+ * handing them out to crawlers. Not run as part of the tests.
+ *
+ * Usage: StorageBenchmark [number of pages] [links per page]
+ */
+public class StorageBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numPages = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int linksPerPage = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        for (int round = 0; round < 2; round++) {
+            // The first round warms up the JIT
+            run("sleepycat DB", numPages, linksPerPage, false);
+            run("in memory", numPages, linksPerPage, true);
+        }
+    }
+
+    private static void run(String name, int numPages, int linksPerPage, boolean inMemory)
+        throws Exception {
+        File folder = Files.createTempDirectory("storage").toFile();
+        try {
+            CrawlConfig config = new CrawlConfig();
+            config.setCrawlStorageFolder(folder.getAbsolutePath());
+            config.setInMemoryStorage(inMemory);
+
+            Environment env = null;
+            DocIDServer docIdServer;
+            if (inMemory) {
+                docIdServer = new InMemoryDocIDServer(config);
+            } else {
+                EnvironmentConfig envConfig = new EnvironmentConfig();
+                envConfig.setAllowCreate(true);
+                env = new Environment(folder, envConfig);
+                docIdServer = new DocIDServer(env, config);
+            }
+            Frontier frontier = new Frontier(env, config);
+
+            long start = System.nanoTime();
+            List<WebURL> batch = new ArrayList<>();
+            for (int page = 0; page < numPages; page++) {
+                // Half of the links of a page point to pages linked before
+                List<String> links = new ArrayList<>(linksPerPage);
+                for (int i = 0; i < linksPerPage; i++) {
+                    int target = (i % 2 == 0) ? page * linksPerPage / 2 + i : i * 7 + page / 10;
+                    links.add("https://www.example" + (target % 997) + ".com/path/to/page?id=" + target);
+                }
+                List<WebURL> toSchedule = new ArrayList<>();
+                for (String link : links) {
+                    if (docIdServer.getDocId(link) == -1) {
+                        WebURL webUrl = new WebURL();
+                        webUrl.setURL(link);
+                        webUrl.setDepth((short) 1);
+                        toSchedule.add(webUrl);
+                    }
+                }
+                List<String> newUrls = new ArrayList<>();
+                for (WebURL webUrl : toSchedule) {
+                    newUrls.add(webUrl.getURL());
+                }
+                Map<String, Integer> docIds = docIdServer.getOrCreateDocIds(newUrls);
+                for (WebURL webUrl : toSchedule) {
+                    webUrl.setDocid(docIds.get(webUrl.getURL()));
+                }
+                frontier.scheduleAll(toSchedule);
+
+                batch.clear();
+                frontier.getNextURLs(1, batch);
+            }
+            long nanos = System.nanoTime() - start;
+
+            System.out.printf("%-13s %,d pages with %d links: %,d ns/page, %,d docids, %,d queued%n",
+                              name, numPages, linksPerPage, nanos / numPages,
+                              docIdServer.getDocCount(), frontier.getQueueLength());
+
+            frontier.close();
+            docIdServer.close();
+            if (env != null) {
+                env.close();
+            }
+        } finally {
+            IO.deleteFolder(folder);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package edu.uci.ics.crawlerbykc.tests.parser;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.uci.ics.crawlerbykc.crawler.CrawlConfig;
+import edu.uci.ics.crawlerbykc.crawler.Page;
+import edu.uci.ics.crawlerbykc.parser.HtmlParseData;
+import edu.uci.ics.crawlerbykc.parser.HtmlParser;
+import edu.uci.ics.crawlerbykc.parser.LinkOnlyHtmlParser;
+import edu.uci.ics.crawlerbykc.parser.TikaHtmlParser;
+import edu.uci.ics.crawlerbykc.url.WebURL;
+
+/**
+ * Compares the time and the bytes allocated to parse pages with the TikaHtmlParser and with the
+ * LinkOnlyHtmlParser, along with the number of links they find. Not run as part of the tests.
+ *
+ * Usage: HtmlParserBenchmark [html files or directories of them...], by default the page of
+ * wiki.c2.com from the test resources. The pages are taken to be in UTF-8; pages saved from a
+ * crawl make a more telling corpus.
+ */
+public class HtmlParserBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private static final int MIN_PARSES_PER_ROUND = 2000;
+
+    public static void main(String[] args) throws Exception {
+        List<File> files = new ArrayList<>();
+        if (args.length == 0) {
+            URL resource = HtmlParserBenchmark.class.getClassLoader().getResource("html/wiki.c2.com.html");
+            files.add(new File(resource.toURI()));
+        }
+        for (String arg : args) {
+            addFiles(new File(arg), files);
+        }
+
+        List<Page> pages = new ArrayList<>();
+        long totalBytes = 0;
+        for (File file : files) {
+            WebURL url = new WebURL();
+            url.setURL("http://example.com/" + file.getName());
+            Page page = new Page(url);
+            page.setContentData(Files.readAllBytes(file.toPath()));
+            page.setContentType("text/html; charset=UTF-8");
+            page.setContentCharset("UTF-8");
+            pages.add(page);
+            totalBytes += page.getContentLength();
+        }
+        System.out.printf("%d pages, %,d bytes on average%n", pages.size(), totalBytes / pages.size());
+
+        CrawlConfig config = new CrawlConfig();
+        HtmlParser tika = new TikaHtmlParser(config, null);
+        HtmlParser linkOnly = new LinkOnlyHtmlParser(config, null);
+        int repeat = Math.max(1, MIN_PARSES_PER_ROUND / pages.size());
+        for (int round = 0; round < ROUNDS; round++) {
+            Result tikaResult = measure(tika, pages, repeat);
+            Result linkOnlyResult = measure(linkOnly, pages, repeat);
+            System.out.printf("  tika: %,9d ns/page, %,9d B/page, %d links;"
+                              + " link only: %,9d ns/page, %,9d B/page, %d links%n",
+                              tikaResult.nanos, tikaResult.bytes, tikaResult.links, linkOnlyResult.nanos,
+                              linkOnlyResult.bytes, linkOnlyResult.links);
+        }
+    }
+
+    private static void addFiles(File file, List<File> files) {
+        File[] children = file.listFiles();
+        if (children == null) {
+            files.add(file);
+        } else {
+            for (File child : children) {
+                addFiles(child, files);
+            }
+        }
+    }
+
+    private static Result measure(HtmlParser parser, List<Page> pages, int repeat) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int links = 0;
+        for (int i = 0; i < repeat; i++) {
+            links = 0;
+            for (Page page : pages) {
+                HtmlParseData parseData = parser.parse(page, page.getWebURL().getURL());
+                links += parseData.getOutgoingUrls().size();
+            }
+        }
+        Result result = new Result();
+        int parses = repeat * pages.size();
+        result.nanos = (System.nanoTime() - start) / parses;
+        result.bytes = (threads.getThreadAllocatedBytes(threadId) - startBytes) / parses;
+        result.links = links;
+        return result;
+    }
+
+    private static class Result {
+        long nanos;
+        long bytes;
+        int links;
+    }
+}
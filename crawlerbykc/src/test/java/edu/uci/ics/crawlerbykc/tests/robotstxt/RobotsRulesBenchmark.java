@@ -0,0 +1,139 @@
+package edu.uci.ics.crawlerbykc.tests.robotstxt;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.uci.ics.crawlerbykc.robotstxt.HostDirectives;
+import edu.uci.ics.crawlerbykc.robotstxt.PathRule;
+import edu.uci.ics.crawlerbykc.robotstxt.UserAgentDirectives;
+
+/**
+ * Compares the time of robots.txt checks with the compiled rules against ordering the rules
+ * with their regular expressions on every check, as was done before. The allow and disallow
+ * rules of a robots.txt file, except the ones for the whole site, are used as the rules of one
+ * user agent. The paths are derived from the rules, so that many of them match. Not run as
+ * part of the tests.
+ *
+ * Usage: RobotsRulesBenchmark [robots.txt files...], by default the robots.txt of
+ * he.wikipedia.org from the test resources
+ */
+public class RobotsRulesBenchmark {
+
+    private static final Pattern RULE = Pattern.compile("(?im)^\\s*(allow|disallow):\\s*([^#\\s]*)");
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        List<File> files = new ArrayList<>();
+        if (args.length == 0) {
+            URL resource = RobotsRulesBenchmark.class.getClassLoader()
+                                                     .getResource("robotstxt/he.wikipedia.org_robots.txt");
+            files.add(new File(resource.toURI()));
+        }
+        for (String arg : args) {
+            files.add(new File(arg));
+        }
+        for (File file : files) {
+            run(file);
+        }
+    }
+
+    private static void run(File file) throws Exception {
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        UserAgentDirectives directives = new UserAgentDirectives(Collections.singleton("*"));
+        List<PathRule> rules = new ArrayList<>();
+        Matcher m = RULE.matcher(content);
+        while (m.find()) {
+            if (m.group(2).equals("/")) {
+                // The blocked user agents would make almost every path disallowed
+                continue;
+            }
+            String rule = m.group(1).toLowerCase();
+            directives.add(rule, m.group(2));
+            rules.add(new PathRule(rule.equals("allow") ? HostDirectives.ALLOWED : HostDirectives.DISALLOWED,
+                                   m.group(2)));
+        }
+        List<String> paths = paths(rules, 10000);
+
+        System.out.println(file.getName() + ": " + rules.size() + " rules, " + paths.size() + " paths");
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            int disallowed = 0;
+            for (String path : paths) {
+                if (directives.checkAccess(path, "crawlerbykc") == HostDirectives.DISALLOWED) {
+                    disallowed++;
+                }
+            }
+            long compiledNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int regexpDisallowed = 0;
+            for (String path : paths) {
+                if (checkAccessWithRegexps(rules, path) == HostDirectives.DISALLOWED) {
+                    regexpDisallowed++;
+                }
+            }
+            long regexpNanos = System.nanoTime() - start;
+
+            System.out.printf("  compiled: %,8d ns/check, regexps: %,8d ns/check, disallowed %d / %d%n",
+                              compiledNanos / paths.size(), regexpNanos / paths.size(), disallowed,
+                              regexpDisallowed);
+        }
+    }
+
+    /**
+     * Checks a path the way it was done before the rules were compiled: the rules are sorted on
+     * their match with the path, then matched again.
+     */
+    private static int checkAccessWithRegexps(List<PathRule> rules, String path) {
+        Set<PathRule> sorted = new TreeSet<>(new Comparator<PathRule>() {
+            @Override
+            public int compare(PathRule lhs, PathRule rhs) {
+                boolean p1Match = lhs.matches(path);
+                boolean p2Match = rhs.matches(path);
+                if (p1Match != p2Match) {
+                    return p1Match ? -1 : 1;
+                }
+                String p1 = lhs.pattern.toString();
+                String p2 = rhs.pattern.toString();
+                if (p1.length() != p2.length()) {
+                    return Integer.compare(p2.length(), p1.length());
+                }
+                return p1.compareTo(p2);
+            }
+        });
+        sorted.addAll(rules);
+        for (PathRule rule : sorted) {
+            if (rule.matches(path)) {
+                return rule.type;
+            }
+        }
+        return HostDirectives.UNDEFINED;
+    }
+
+    private static List<String> paths(List<PathRule> rules, int count) {
+        Random random = new Random(42);
+        List<String> paths = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (rules.isEmpty() || random.nextInt(4) == 0) {
+                paths.add("/wiki/Page_" + random.nextInt(100000));
+            } else {
+                String pattern = rules.get(random.nextInt(rules.size())).robotsPattern;
+                String path = pattern.replace("*", "x").replace("$", "");
+                paths.add(random.nextBoolean() ? path : path + "/sub_" + random.nextInt(100));
+            }
+        }
+        return paths;
+    }
+}